@@ -23,11 +23,14 @@
  */
 package fr.bmartel.protocol.radiotap;
 
+import java.nio.ByteBuffer;
+
 import fr.bmartel.protocol.radiotap.inter.IRadioTapFrame;
 import fr.bmartel.protocol.radiotap.inter.IRadiotapData;
 import fr.bmartel.protocol.radiotap.inter.IRadiotapFlags;
-import fr.bmartel.utils.ByteUtils;
+import fr.bmartel.utils.LittleEndianReader;
 import fr.bmartel.utils.RadioTapException;
+import fr.bmartel.utils.RadioTapStatus;
 
 /**
  * Define radio tap header values (total Radio Tap length : 2 Bytes)
@@ -53,8 +56,8 @@ public class RadioTap implements IRadioTapFrame {
 
 	private IRadiotapFlags flagList = null;
 	
-	/** * bitmask for values that will be present in radio tap payload */
-	private byte[] presentFlags = null;
+	/** * first bitmask for values that will be present in radio tap payload */
+	private int presentFlags = 0;
 
 	/** object containing all properties decoded from radio tap payload */
 	private RadioTapData radioTapData = null;
@@ -66,41 +69,299 @@ public class RadioTap implements IRadioTapFrame {
 	 * @param frame
 	 */
 	public RadioTap(byte[] frame) throws RadioTapException{
+		this(frame, 0, frame.length);
+	}
+
+	/**
+	 * Parse radio tap headers in place from a region of a larger array (no
+	 * copy of the frame is made)
+	 * 
+	 * @param frame
+	 *            array containing the frame
+	 * @param offset
+	 *            position of radiotap header in array
+	 * @param length
+	 *            number of bytes available for this frame
+	 */
+	public RadioTap(byte[] frame, int offset, int length) throws RadioTapException{
+		this(frame, offset, length, false);
+	}
+
+	/**
+	 * Parse radio tap headers in place from a region of a larger array (no
+	 * copy of the frame is made)
+	 * 
+	 * @param frame
+	 *            array containing the frame
+	 * @param offset
+	 *            position of radiotap header in array
+	 * @param length
+	 *            number of bytes available for this frame
+	 * @param lazy
+	 *            only locate fields, each field being decoded the first time
+	 *            it is retrieved (frame must not be modified until then)
+	 */
+	public RadioTap(byte[] frame, int offset, int length, boolean lazy) throws RadioTapException{
+		this(frame, offset, length, RadioTapFlags.ALL_FIELDS, lazy);
+	}
+
+	/**
+	 * Parse only a projection of radio tap fields, other fields being skipped
+	 * 
+	 * @param frame
+	 *            array containing the frame
+	 * @param offset
+	 *            position of radiotap header
+	 * @param length
+	 *            number of bytes available for this frame
+	 * @param fieldMask
+	 *            bitmask of fields to decode built from RadioTapFlags.INDEX_*
+	 *            (see RadioTapFlags.mask())
+	 */
+	public RadioTap(byte[] frame, int offset, int length, int fieldMask) throws RadioTapException{
+		this(frame, offset, length, fieldMask, false);
+	}
+
+	/**
+	 * Parse only a projection of radio tap fields, other fields being skipped.
+	 * Flag list only reports fields that are both present and requested.
+	 * 
+	 * @param frame
+	 *            array containing the frame
+	 * @param offset
+	 *            position of radiotap header
+	 * @param length
+	 *            number of bytes available for this frame
+	 * @param fieldMask
+	 *            bitmask of fields to decode built from RadioTapFlags.INDEX_*
+	 *            (see RadioTapFlags.mask())
+	 * @param lazy
+	 *            only locate fields, each field being decoded the first time
+	 *            it is retrieved (frame must not be modified until then)
+	 */
+	public RadioTap(byte[] frame, int offset, int length, int fieldMask, boolean lazy) throws RadioTapException{
 		try
 		{
-			if (frame.length > 7) {
-				headerRevision = frame[0];
-	
-				headerLength = ByteUtils.convertByteArrayToInt(new byte[] { frame[3], frame[2] });
-				
-				presentFlags = new byte[] { frame[7], frame[6], frame[5], frame[4] };
-	
-				if (frame.length >= headerLength + 8) {
-					// fill radio tap header payload according to header length
-					byte[] radioTapPayload = new byte[headerLength - 8];
-	
-					if (headerLength > 8) {
-						for (int i = 8; i < headerLength; i++) {
-							radioTapPayload[i - 8] = frame[i];
-						}
-					}
-					RadioTapFlags flags = new RadioTapFlags();
-					radioTapData = flags.decode(presentFlags, radioTapPayload);
-					this.flagList=flags;
-				} else {
-					throw new RadioTapException("An error occured while decoding radio tap frame");
-				}
-			} else {
-				throw new RadioTapException("An error occured while decoding radio tap frame");
-			}
+			check(checkBounds(frame.length, offset, length));
+			headerRevision = frame[offset];
+			headerLength = LittleEndianReader.readUInt16(frame, offset + 2);
+			presentFlags = LittleEndianReader.readInt32(frame, offset + 4);
+			check(RadioTapLayout.checkHeader(headerRevision & 0xFF, headerLength, length));
+
+			RadioTapLayout layout = RadioTapLayoutCache.getDefaultCache().getLayout(frame, offset, headerLength);
+			check(RadioTapLayout.checkLayout(layout, headerLength));
+			decodePayload(layout, new RadioTapData(frame, offset + layout.getPayloadOffset(), headerLength - layout.getPayloadOffset()), fieldMask, lazy);
+		}
+		catch (RuntimeException e)
+		{
+			throw new RadioTapException("An error occured while decoding radio tap frame", e);
+		}
+	}
+
+	/**
+	 * Parse radio tap headers in place from the remaining bytes of a heap or
+	 * direct buffer (buffer position is left untouched)
+	 * 
+	 * @param buffer
+	 *            buffer positioned on radiotap header
+	 */
+	public RadioTap(ByteBuffer buffer) throws RadioTapException{
+		this(buffer, buffer.position(), buffer.remaining());
+	}
+
+	/**
+	 * Parse radio tap headers in place from a region of a heap or direct
+	 * buffer (buffer position is left untouched)
+	 * 
+	 * @param buffer
+	 *            buffer containing the frame
+	 * @param offset
+	 *            absolute position of radiotap header in buffer
+	 * @param length
+	 *            number of bytes available for this frame
+	 */
+	public RadioTap(ByteBuffer buffer, int offset, int length) throws RadioTapException{
+		this(buffer, offset, length, false);
+	}
+
+	/**
+	 * Parse radio tap headers in place from a region of a heap or direct
+	 * buffer (buffer position is left untouched)
+	 * 
+	 * @param buffer
+	 *            buffer containing the frame
+	 * @param offset
+	 *            absolute position of radiotap header in buffer
+	 * @param length
+	 *            number of bytes available for this frame
+	 * @param lazy
+	 *            only locate fields, each field being decoded the first time
+	 *            it is retrieved (buffer must not be modified until then)
+	 */
+	public RadioTap(ByteBuffer buffer, int offset, int length, boolean lazy) throws RadioTapException{
+		this(buffer, offset, length, RadioTapFlags.ALL_FIELDS, lazy);
+	}
+
+	/**
+	 * Parse only a projection of radio tap fields, other fields being skipped
+	 * 
+	 * @param buffer
+	 *            buffer containing the frame
+	 * @param offset
+	 *            absolute position of radiotap header
+	 * @param length
+	 *            number of bytes available for this frame
+	 * @param fieldMask
+	 *            bitmask of fields to decode built from RadioTapFlags.INDEX_*
+	 *            (see RadioTapFlags.mask())
+	 */
+	public RadioTap(ByteBuffer buffer, int offset, int length, int fieldMask) throws RadioTapException{
+		this(buffer, offset, length, fieldMask, false);
+	}
+
+	/**
+	 * Parse only a projection of radio tap fields, other fields being skipped.
+	 * Flag list only reports fields that are both present and requested.
+	 * 
+	 * @param buffer
+	 *            buffer containing the frame
+	 * @param offset
+	 *            absolute position of radiotap header
+	 * @param length
+	 *            number of bytes available for this frame
+	 * @param fieldMask
+	 *            bitmask of fields to decode built from RadioTapFlags.INDEX_*
+	 *            (see RadioTapFlags.mask())
+	 * @param lazy
+	 *            only locate fields, each field being decoded the first time
+	 *            it is retrieved (buffer must not be modified until then)
+	 */
+	public RadioTap(ByteBuffer buffer, int offset, int length, int fieldMask, boolean lazy) throws RadioTapException{
+		try
+		{
+			check(checkBounds(buffer.limit(), offset, length));
+			headerRevision = buffer.get(offset);
+			headerLength = LittleEndianReader.readUInt16(buffer, offset + 2);
+			presentFlags = LittleEndianReader.readInt32(buffer, offset + 4);
+			check(RadioTapLayout.checkHeader(headerRevision & 0xFF, headerLength, length));
+
+			RadioTapLayout layout = RadioTapLayoutCache.getDefaultCache().getLayout(buffer, offset, headerLength);
+			check(RadioTapLayout.checkLayout(layout, headerLength));
+			decodePayload(layout, new RadioTapData(buffer, offset + layout.getPayloadOffset(), headerLength - layout.getPayloadOffset()), fieldMask, lazy);
 		}
-		catch (Exception e )
+		catch (RuntimeException e)
 		{
-			e.printStackTrace();
-			throw new RadioTapException();
+			throw new RadioTapException("An error occured while decoding radio tap frame", e);
+		}
+	}
+
+	/**
+	 * Check a radiotap frame without decoding it nor throwing any exception,
+	 * so that malformed frames can be counted and skipped cheaply
+	 * 
+	 * @param frame
+	 *            array containing the frame
+	 * @param offset
+	 *            position of radiotap header
+	 * @param length
+	 *            number of bytes available for this frame
+	 * @return decoding status (see RadioTapStatus)
+	 */
+	public static int validate(byte[] frame, int offset, int length) {
+		int status = checkBounds(frame.length, offset, length);
+		if (status != RadioTapStatus.SUCCESS_STATUS) {
+			return status;
+		}
+		int headerLength = LittleEndianReader.readUInt16(frame, offset + 2);
+		status = RadioTapLayout.checkHeader(frame[offset] & 0xFF, headerLength, length);
+		if (status != RadioTapStatus.SUCCESS_STATUS) {
+			return status;
+		}
+		return RadioTapLayout.checkLayout(RadioTapLayoutCache.getDefaultCache().getLayout(frame, offset, headerLength), headerLength);
+	}
+
+	/**
+	 * Check a radiotap frame in a heap or direct buffer without decoding it
+	 * nor throwing any exception
+	 * 
+	 * @param buffer
+	 *            buffer containing the frame
+	 * @param offset
+	 *            absolute position of radiotap header
+	 * @param length
+	 *            number of bytes available for this frame
+	 * @return decoding status (see RadioTapStatus)
+	 */
+	public static int validate(ByteBuffer buffer, int offset, int length) {
+		int status = checkBounds(buffer.limit(), offset, length);
+		if (status != RadioTapStatus.SUCCESS_STATUS) {
+			return status;
+		}
+		int headerLength = LittleEndianReader.readUInt16(buffer, offset + 2);
+		status = RadioTapLayout.checkHeader(buffer.get(offset) & 0xFF, headerLength, length);
+		if (status != RadioTapStatus.SUCCESS_STATUS) {
+			return status;
+		}
+		return RadioTapLayout.checkLayout(RadioTapLayoutCache.getDefaultCache().getLayout(buffer, offset, headerLength), headerLength);
+	}
+
+	/**
+	 * Throw an exception describing status if frame can't be decoded
+	 * 
+	 * @param status
+	 *            decoding status (see RadioTapStatus)
+	 */
+	private static void check(int status) throws RadioTapException {
+		if (!RadioTapStatus.isDecoded(status)) {
+			throw new RadioTapException(RadioTapStatus.getReason(status));
+		}
+	}
+
+	/**
+	 * Decode radiotap payload once header fixed part has been read
+	 * 
+	 * @param layout
+	 *            layout of this frame
+	 * @param data
+	 *            radiotap data pointing to payload
+	 * @param fieldMask
+	 *            bitmask of fields to decode
+	 * @param lazy
+	 *            defer field decoding until retrieval
+	 */
+	private void decodePayload(RadioTapLayout layout, RadioTapData data, int fieldMask, boolean lazy) {
+		RadioTapFlags flags = new RadioTapFlags();
+		radioTapData = flags.decode(layout, data, fieldMask, lazy);
+		this.flagList = flags;
+	}
+
+	/**
+	 * Check that requested region is inside its container and holds header
+	 * fixed part
+	 * 
+	 * @param capacity
+	 *            number of bytes in container
+	 * @param offset
+	 *            region start
+	 * @param length
+	 *            region length
+	 * @return decoding status (see RadioTapStatus)
+	 */
+	private static int checkBounds(int capacity, int offset, int length) {
+		if (offset < 0 || length < RadioTapLayout.HEADER_FIXED_LENGTH || offset + length > capacity) {
+			return RadioTapStatus.TRUNCATED_HEADER_STATUS;
 		}
+		return RadioTapStatus.SUCCESS_STATUS;
 	}
 
+	/**
+	 * First it_present bitmask of this frame
+	 * 
+	 * @return
+	 */
+	public int getPresentFlags() {
+		return presentFlags;
+	}
 
 	@Override
 	public int getRadiotapVersion() {
@@ -109,7 +370,7 @@ public class RadioTap implements IRadioTapFrame {
 
 	@Override
 	public int getRadioTapDataLength() {
-		return (headerLength & 0xFF);
+		return headerLength;
 	}
 
 	@Override
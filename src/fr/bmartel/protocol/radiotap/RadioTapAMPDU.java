@@ -0,0 +1,88 @@
+package fr.bmartel.protocol.radiotap;
+
+/**
+ * Define A-MPDU status extracted from radio tap headers : all subframes of an
+ * aggregate share the same reference number
+ *
+ * @author Bertrand Martel
+ *
+ */
+public class RadioTapAMPDU {
+
+	public final static int FLAG_REPORT_ZERO_LENGTH = 0x0001;
+	public final static int FLAG_ZERO_LENGTH = 0x0002;
+	public final static int FLAG_LAST_KNOWN = 0x0004;
+	public final static int FLAG_LAST = 0x0008;
+	public final static int FLAG_DELIMITER_CRC_ERROR = 0x0010;
+	public final static int FLAG_DELIMITER_CRC_KNOWN = 0x0020;
+	public final static int FLAG_EOF = 0x0040;
+	public final static int FLAG_EOF_KNOWN = 0x0080;
+
+	/** A-MPDU reference number (unsigned 32 bits) */
+	private final int reference;
+
+	/** flags (bits 0-15), delimiter CRC value (bits 16-23) */
+	private final int status;
+
+	/**
+	 * Build an A-MPDU status object
+	 *
+	 * @param reference
+	 *            reference number
+	 * @param flags
+	 *            flags (see FLAG_*)
+	 * @param delimiterCrc
+	 *            delimiter CRC value
+	 */
+	public RadioTapAMPDU(int reference, int flags, int delimiterCrc) {
+		this.reference = reference;
+		this.status = (flags & 0xFFFF) | ((delimiterCrc & 0xFF) << 16);
+	}
+
+	/**
+	 * Reference number
+	 *
+	 * @return unsigned 32 bits reference stored in an int
+	 */
+	public int getReference() {
+		return reference;
+	}
+
+	public int getFlags() {
+		return status & 0xFFFF;
+	}
+
+	/**
+	 * Check if this subframe is known to be the last one of its aggregate
+	 *
+	 * @return
+	 */
+	public boolean isLast() {
+		return (status & (FLAG_LAST_KNOWN | FLAG_LAST)) == (FLAG_LAST_KNOWN | FLAG_LAST);
+	}
+
+	public boolean isLastKnown() {
+		return (status & FLAG_LAST_KNOWN) != 0;
+	}
+
+	public boolean isZeroLength() {
+		return (status & FLAG_ZERO_LENGTH) != 0;
+	}
+
+	public boolean isDelimiterCrcError() {
+		return (status & FLAG_DELIMITER_CRC_ERROR) != 0;
+	}
+
+	public boolean isDelimiterCrcKnown() {
+		return (status & FLAG_DELIMITER_CRC_KNOWN) != 0;
+	}
+
+	/**
+	 * Delimiter CRC value (valid if isDelimiterCrcKnown())
+	 *
+	 * @return
+	 */
+	public int getDelimiterCrc() {
+		return (status >> 16) & 0xFF;
+	}
+}
@@ -0,0 +1,331 @@
+package fr.bmartel.protocol.radiotap;
+
+import fr.bmartel.protocol.radiotap.inter.IAmpduListener;
+
+/**
+ * Group A-MPDU subframes by reference number into aggregate records using a
+ * fixed capacity table keyed by primitive reference numbers.<br/>
+ *
+ * Aggregates not updated for longer than timeout are evicted. When table is
+ * full, least recently updated of a few aggregates sampled from sweep position
+ * is evicted so that memory and work per update stay bounded whatever the
+ * number of references seen. Time unit is up to caller (capture
+ * timestamp, TSFT...).<br/>
+ *
+ * A tracker is not thread safe.
+ *
+ * @author Bertrand Martel
+ *
+ */
+public class RadioTapAMPDUTracker {
+
+	/** number of slots checked for expiration on each update */
+	private final static int SWEEP_STEP = 2;
+
+	/** number of aggregates compared when one must be evicted from full table */
+	private final static int EVICTION_SAMPLES = 4;
+
+	private final int[] references;
+
+	private final int[] subframeCounts;
+
+	private final int[] crcErrorCounts;
+
+	private final boolean[] lastSeen;
+
+	private final boolean[] used;
+
+	private final long[] firstTimes;
+
+	private final long[] lastTimes;
+
+	/** slot index mask (table length is a power of 2) */
+	private final int mask;
+
+	/** maximum number of aggregates tracked at once */
+	private final int capacity;
+
+	private final long timeout;
+
+	private IAmpduListener listener = null;
+
+	private int size = 0;
+
+	/** next slot checked for expiration */
+	private int sweepIndex = 0;
+
+	private long evictedCount = 0;
+
+	/**
+	 * Build an A-MPDU tracker
+	 *
+	 * @param capacity
+	 *            maximum number of aggregates tracked at once
+	 * @param timeout
+	 *            time after which an aggregate without new subframe is
+	 *            evicted
+	 */
+	public RadioTapAMPDUTracker(int capacity, long timeout) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		int length = Integer.highestOneBit(capacity * 2 - 1) * 2;
+		this.capacity = capacity;
+		this.timeout = timeout;
+		this.mask = length - 1;
+		references = new int[length];
+		subframeCounts = new int[length];
+		crcErrorCounts = new int[length];
+		lastSeen = new boolean[length];
+		used = new boolean[length];
+		firstTimes = new long[length];
+		lastTimes = new long[length];
+	}
+
+	/**
+	 * Set listener notified of evicted aggregates
+	 *
+	 * @param listener
+	 */
+	public void setListener(IAmpduListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Account a subframe
+	 *
+	 * @param time
+	 *            time of this subframe
+	 * @param ampdu
+	 *            A-MPDU status of this subframe
+	 */
+	public void update(long time, RadioTapAMPDU ampdu) {
+		update(time, ampdu.getReference(), ampdu.getFlags());
+	}
+
+	/**
+	 * Account a subframe
+	 *
+	 * @param time
+	 *            time of this subframe
+	 * @param reference
+	 *            A-MPDU reference number
+	 * @param flags
+	 *            A-MPDU flags (see RadioTapAMPDU.FLAG_*)
+	 */
+	public void update(long time, int reference, int flags) {
+		sweep(time);
+
+		int slot = find(reference);
+		if (!used[slot]) {
+			if (size >= capacity) {
+				evictOldest();
+				slot = find(reference);
+			}
+			used[slot] = true;
+			references[slot] = reference;
+			subframeCounts[slot] = 0;
+			crcErrorCounts[slot] = 0;
+			lastSeen[slot] = false;
+			firstTimes[slot] = time;
+			size++;
+		}
+		subframeCounts[slot]++;
+		if ((flags & RadioTapAMPDU.FLAG_DELIMITER_CRC_ERROR) != 0) {
+			crcErrorCounts[slot]++;
+		}
+		int last = RadioTapAMPDU.FLAG_LAST_KNOWN | RadioTapAMPDU.FLAG_LAST;
+		if ((flags & last) == last) {
+			lastSeen[slot] = true;
+		}
+		lastTimes[slot] = time;
+	}
+
+	/**
+	 * Evict all aggregates not updated since timeout
+	 *
+	 * @param time
+	 *            current time
+	 */
+	public void expire(long time) {
+		int slot = 0;
+		while (slot <= mask) {
+			if (used[slot] && time - lastTimes[slot] > timeout) {
+				// an entry may be shifted into this slot, check it again
+				evict(slot);
+			} else {
+				slot++;
+			}
+		}
+	}
+
+	/**
+	 * Evict all aggregates
+	 */
+	public void flush() {
+		for (int slot = 0; slot <= mask; slot++) {
+			if (used[slot]) {
+				report(slot);
+				used[slot] = false;
+				evictedCount++;
+			}
+		}
+		size = 0;
+	}
+
+	/**
+	 * Number of subframes seen for an aggregate still tracked
+	 *
+	 * @param reference
+	 *            A-MPDU reference number
+	 * @return number of subframes (0 if not tracked)
+	 */
+	public int getSubframeCount(int reference) {
+		int slot = find(reference);
+		return used[slot] ? subframeCounts[slot] : 0;
+	}
+
+	/**
+	 * Number of subframes with a delimiter CRC error for an aggregate still
+	 * tracked
+	 *
+	 * @param reference
+	 *            A-MPDU reference number
+	 * @return number of CRC errors (0 if not tracked)
+	 */
+	public int getCrcErrorCount(int reference) {
+		int slot = find(reference);
+		return used[slot] ? crcErrorCounts[slot] : 0;
+	}
+
+	/**
+	 * Check if last subframe of an aggregate still tracked has been seen
+	 *
+	 * @param reference
+	 *            A-MPDU reference number
+	 * @return
+	 */
+	public boolean isLastSeen(int reference) {
+		int slot = find(reference);
+		return used[slot] && lastSeen[slot];
+	}
+
+	public boolean contains(int reference) {
+		return used[find(reference)];
+	}
+
+	/**
+	 * Number of aggregates currently tracked
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Number of aggregates evicted since creation
+	 *
+	 * @return
+	 */
+	public long getEvictedCount() {
+		return evictedCount;
+	}
+
+	private static int hash(int reference) {
+		int h = reference * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Slot holding reference or free slot where it would be inserted
+	 */
+	private int find(int reference) {
+		int slot = hash(reference) & mask;
+		while (used[slot] && references[slot] != reference) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Check a few slots for expired aggregates so that expiration cost is
+	 * spread over updates
+	 */
+	private void sweep(long time) {
+		for (int i = 0; i < SWEEP_STEP; i++) {
+			if (used[sweepIndex] && time - lastTimes[sweepIndex] > timeout) {
+				evict(sweepIndex);
+			} else {
+				sweepIndex = (sweepIndex + 1) & mask;
+			}
+		}
+	}
+
+	/**
+	 * Evict least recently updated of next aggregates found from sweep position
+	 * (table being at least a quarter full, only a few slots are read)
+	 */
+	private void evictOldest() {
+		int oldest = -1;
+		int samples = 0;
+		int slot = sweepIndex;
+		for (int i = 0; i <= mask && samples < EVICTION_SAMPLES; i++) {
+			if (used[slot]) {
+				if (oldest < 0 || lastTimes[slot] < lastTimes[oldest]) {
+					oldest = slot;
+				}
+				samples++;
+			}
+			slot = (slot + 1) & mask;
+		}
+		sweepIndex = slot;
+		if (oldest >= 0) {
+			evict(oldest);
+		}
+	}
+
+	/**
+	 * Remove a slot shifting back following entries of its probe sequence
+	 * (table has no tombstone)
+	 */
+	private void evict(int slot) {
+		report(slot);
+		evictedCount++;
+		size--;
+
+		int free = slot;
+		int next = (slot + 1) & mask;
+		while (used[next]) {
+			int home = hash(references[next]) & mask;
+			// move entry if its home slot is not between free and next
+			if (((next - home) & mask) >= ((next - free) & mask)) {
+				move(next, free);
+				free = next;
+			}
+			next = (next + 1) & mask;
+		}
+		used[free] = false;
+	}
+
+	private void move(int from, int to) {
+		references[to] = references[from];
+		subframeCounts[to] = subframeCounts[from];
+		crcErrorCounts[to] = crcErrorCounts[from];
+		lastSeen[to] = lastSeen[from];
+		firstTimes[to] = firstTimes[from];
+		lastTimes[to] = lastTimes[from];
+		used[to] = true;
+	}
+
+	private void report(int slot) {
+		if (listener != null) {
+			listener.onAggregate(references[slot], subframeCounts[slot], crcErrorCounts[slot], lastSeen[slot],
+					firstTimes[slot], lastTimes[slot]);
+		}
+	}
+}
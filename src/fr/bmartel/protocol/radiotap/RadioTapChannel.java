@@ -29,69 +29,131 @@ import fr.bmartel.utils.ByteUtils;
 /**
  * Define radio type channel for tx characteristic
  * 
+ * Channels are immutable, valueOf() returning a shared instance for each
+ * (frequency, flags) pair.
+ * 
  * @author Bertrand Martel
  * 
  */
 public class RadioTapChannel implements IRadiotapChannel{
 
+	public final static int FLAG_TURBO = 0x0010;
+	public final static int FLAG_CCK = 0x0020;
+	public final static int FLAG_OFDM = 0x0040;
+	public final static int FLAG_2GHZ = 0x0080;
+	public final static int FLAG_5GHZ = 0x0100;
+	public final static int FLAG_PASSIVE = 0x0200;
+	public final static int FLAG_DYNAMIC_CCK_OFDM = 0x0400;
+	public final static int FLAG_GFSK = 0x0800;
+
+	/** tx characteristics bits kept by a channel */
+	private final static int FLAG_MASK = 0x0FF0;
+
+	/** lowest frequency in channel table (MHz) */
+	private final static int MIN_FREQUENCY = 2400;
+
+	/** highest frequency in channel table (MHz) */
+	private final static int MAX_FREQUENCY = 7125;
+
+	/** channel number indexed by frequency - MIN_FREQUENCY (-1 if none) */
+	private final static short[] CHANNEL_TABLE = buildChannelTable();
+
+	/** number of slots in channel cache (power of 2) */
+	private final static int CACHE_SIZE = 256;
+
+	/**
+	 * shared channel instances, a slot being overwritten on collision. Channel
+	 * being immutable, racy reads and writes are safe.
+	 */
+	private final static RadioTapChannel[] CACHE = new RadioTapChannel[CACHE_SIZE];
+
 	/** Tx/Rx frequency in MHz */
-	private int frequency = 0x00;
+	private final int frequency;
 
 	/** channel number */
-	private int channelNum = 0x00;
+	private final int channelNum;
 
 	/** tx characteristics */
-	private boolean turboChannel = false;
-	private boolean cckChannel = false;
-	private boolean ofdmChannel = false;
-	private boolean spectrumChannel2GHZ = false;
-	private boolean spectrumChannel5GHZ = false;
-	private boolean onlyPassiveScanAllowed = false;
-	private boolean dynamicCckOfdmChannel = false;
-	private boolean gfskChannel = false;
+	private final int flags;
 
 	/**
 	 * Build a radio channel object
 	 * 
 	 * @param frequency
-	 * @param turboChannel
-	 * @param cckChannel
-	 * @param ofdmChannel
-	 * @param spectrumChannel2GHZ
-	 * @param spectrumChannel5GHZ
-	 * @param onlyPassiveScanAllowed
-	 * @param dynamicCckOfdmChannel
-	 * @param gfskChannel
+	 *            Tx/Rx frequency most significant byte first
+	 * @param bitmask
+	 *            channel flags most significant byte first
 	 */
 	public RadioTapChannel(byte[] frequency, byte[] bitmask) {
+		this(ByteUtils.convertByteArrayToInt(frequency), ByteUtils.convertByteArrayToInt(bitmask));
+	}
 
-		this.frequency = ByteUtils.convertByteArrayToInt(frequency);
+	/**
+	 * Build a radio channel object from values read in place
+	 * 
+	 * @param frequency
+	 *            Tx/Rx frequency in MHz
+	 * @param bitmask
+	 *            16 bit channel flags
+	 */
+	public RadioTapChannel(int frequency, int bitmask) {
+		this.frequency = frequency;
+		this.flags = bitmask & FLAG_MASK;
+		this.channelNum = chooseChannelNum(frequency);
+	}
 
-		if ((bitmask[1] & 0x10) != 0) {
-			turboChannel = true;
-		}
-		if ((bitmask[1] & 0x20) != 0) {
-			cckChannel = true;
+	/**
+	 * Shared channel object for a frequency and flags pair : no object is
+	 * allocated once a pair has been seen
+	 * 
+	 * @param frequency
+	 *            Tx/Rx frequency in MHz
+	 * @param bitmask
+	 *            16 bit channel flags
+	 * @return
+	 */
+	public static RadioTapChannel valueOf(int frequency, int bitmask) {
+		int channelFlags = bitmask & FLAG_MASK;
+		int h = (frequency * 31 + (channelFlags >> 4)) * 0x9E3779B9;
+		int slot = (h ^ (h >>> 16)) & (CACHE_SIZE - 1);
+
+		RadioTapChannel channel = CACHE[slot];
+		if (channel != null && channel.frequency == frequency && channel.flags == channelFlags) {
+			return channel;
 		}
-		if ((bitmask[1] & 0x40) != 0) {
-			ofdmChannel = true;
+		channel = new RadioTapChannel(frequency, channelFlags);
+		CACHE[slot] = channel;
+		return channel;
+	}
+
+	private static short[] buildChannelTable() {
+		short[] table = new short[MAX_FREQUENCY - MIN_FREQUENCY + 1];
+		for (int i = 0; i < table.length; i++) {
+			table[i] = -1;
 		}
-		if ((bitmask[1] & 0x80) != 0) {
-			spectrumChannel2GHZ = true;
+		// 2.4Ghz Bandwidth 802.11b/g/n/ax
+		for (int frequency = 2412; frequency <= 2472; frequency += 5) {
+			table[frequency - MIN_FREQUENCY] = (short) ((frequency - 2407) / 5);
 		}
-		if ((bitmask[0] & 0x01) != 0) {
-			spectrumChannel5GHZ = true;
+		table[2484 - MIN_FREQUENCY] = 14;
+
+		// 4.9Ghz and 5Ghz bandwidth 802.11a/h/j/n/ac/ax
+		for (int frequency = 4910; frequency <= 4990; frequency += 5) {
+			table[frequency - MIN_FREQUENCY] = (short) ((frequency - 4000) / 5);
 		}
-		if ((bitmask[0] & 0x02) != 0) {
-			onlyPassiveScanAllowed = true;
+		for (int frequency = 5035; frequency <= 5080; frequency += 5) {
+			table[frequency - MIN_FREQUENCY] = (short) ((frequency - 5000) / 5);
 		}
-		if ((bitmask[0] & 0x04) != 0) {
-			dynamicCckOfdmChannel = true;
+		for (int frequency = 5160; frequency <= 5885; frequency += 5) {
+			table[frequency - MIN_FREQUENCY] = (short) ((frequency - 5000) / 5);
 		}
-		if ((bitmask[0] & 0x08) != 0) {
-			gfskChannel = true;
+
+		// 6Ghz bandwidth 802.11ax/be
+		table[5935 - MIN_FREQUENCY] = 2;
+		for (int frequency = 5955; frequency <= 7115; frequency += 5) {
+			table[frequency - MIN_FREQUENCY] = (short) ((frequency - 5950) / 5);
 		}
-		channelNum = chooseChannelNum();
+		return table;
 	}
 
 	/**
@@ -103,207 +165,71 @@ public class RadioTapChannel implements IRadiotapChannel{
 	 * @return
 	 */
 	public int chooseChannelNum() {
+		return chooseChannelNum(frequency);
+	}
 
-		// 2.4Ghz Bandwidth 802.11b/g/n
-		switch (frequency) {
-		case 2412:
-			return 1;
-		case 2417:
-			return 2;
-		case 2422:
-			return 3;
-		case 2427:
-			return 4;
-		case 2432:
-			return 5;
-		case 2437:
-			return 6;
-		case 2442:
-			return 7;
-		case 2447:
-			return 8;
-		case 2452:
-			return 9;
-		case 2457:
-			return 10;
-		case 2462:
-			return 11;
-		case 2467:
-			return 12;
-		case 2472:
-			return 13;
-		case 2484:
-			return 14;
+	/**
+	 * 
+	 * Choose channel number according to frequency (2.4Ghz, 4.9Ghz, 5Ghz and
+	 * 6Ghz bands)
+	 * 
+	 * @param frequency
+	 *            Tx/Rx frequency in MHz
+	 * @return channel number or -1 if frequency is unknown
+	 */
+	public static int chooseChannelNum(int frequency) {
+		if (frequency < MIN_FREQUENCY || frequency > MAX_FREQUENCY) {
+			return -1;
 		}
+		return CHANNEL_TABLE[frequency - MIN_FREQUENCY];
+	}
 
-		// 5Ghz bandwidth 802.11a/h/j/n/ac
-		switch (frequency) {
-		case 4915:
-			return 183;
-		case 4920:
-			return 184;
-		case 4925:
-			return 185;
-		case 4935:
-			return 187;
-		case 4940:
-			return 188;
-		case 4945:
-			return 189;
-		case 4960:
-			return 192;
-		case 4980:
-			return 196;
-		case 5035:
-			return 7;
-		case 5040:
-			return 8;
-		case 5045:
-			return 9;
-		case 5055:
-			return 11;
-		case 5060:
-			return 12;
-		case 5080:
-			return 16;
-		case 5170:
-			return 34;
-		case 5180:
-			return 36;
-		case 5190:
-			return 38;
-		case 5200:
-			return 40;
-		case 5210:
-			return 42;
-		case 5220:
-			return 44;
-		case 5230:
-			return 46;
-		case 5240:
-			return 48;
-		case 5260:
-			return 52;
-		case 5280:
-			return 56;
-		case 5300:
-			return 60;
-		case 5320:
-			return 64;
-		case 5500:
-			return 100;
-		case 5520:
-			return 104;
-		case 5540:
-			return 108;
-		case 5560:
-			return 112;
-		case 5580:
-			return 116;
-		case 5600:
-			return 120;
-		case 5620:
-			return 124;
-		case 5640:
-			return 128;
-		case 5660:
-			return 132;
-		case 5680:
-			return 136;
-		case 5700:
-			return 140;
-		case 5745:
-			return 149;
-		case 5765:
-			return 153;
-		case 5785:
-			return 157;
-		case 5805:
-			return 161;
-		case 5825:
-			return 165;
-		}
-		return -1;
+	/**
+	 * Channel flags
+	 * 
+	 * @return tx characteristics bits (see FLAG_*)
+	 */
+	public int getFlags() {
+		return flags;
 	}
-	
 	@Override
 	public boolean isTurboChannel() {
-		return turboChannel;
-	}
-
-	public void setTurboChannel(boolean turboChannel) {
-		this.turboChannel = turboChannel;
+		return (flags & FLAG_TURBO) != 0;
 	}
 	@Override
 	public boolean isCckChannel() {
-		return cckChannel;
-	}
-
-	public void setCckChannel(boolean cckChannel) {
-		this.cckChannel = cckChannel;
+		return (flags & FLAG_CCK) != 0;
 	}
 	@Override
 	public boolean isOfdmChannel() {
-		return ofdmChannel;
-	}
-
-	public void setOfdmChannel(boolean ofdmChannel) {
-		this.ofdmChannel = ofdmChannel;
+		return (flags & FLAG_OFDM) != 0;
 	}
 	@Override
 	public boolean isSpectrumChannel2GHZ() {
-		return spectrumChannel2GHZ;
-	}
-
-	public void setSpectrumChannel2GHZ(boolean spectrumChannel2GHZ) {
-		this.spectrumChannel2GHZ = spectrumChannel2GHZ;
+		return (flags & FLAG_2GHZ) != 0;
 	}
 	@Override
 	public boolean isSpectrumChannel5GHZ() {
-		return spectrumChannel5GHZ;
-	}
-
-	public void setSpectrumChannel5GHZ(boolean spectrumChannel5GHZ) {
-		this.spectrumChannel5GHZ = spectrumChannel5GHZ;
+		return (flags & FLAG_5GHZ) != 0;
 	}
 	@Override
 	public boolean isOnlyPassiveScanAllowed() {
-		return onlyPassiveScanAllowed;
-	}
-
-	public void setOnlyPassiveScanAllowed(boolean onlyPassiveScanAllowed) {
-		this.onlyPassiveScanAllowed = onlyPassiveScanAllowed;
+		return (flags & FLAG_PASSIVE) != 0;
 	}
 	@Override
 	public boolean isDynamicCckOfdmChannel() {
-		return dynamicCckOfdmChannel;
-	}
-
-	public void setDynamicCckOfdmChannel(boolean dynamicCckOfdmChannel) {
-		this.dynamicCckOfdmChannel = dynamicCckOfdmChannel;
+		return (flags & FLAG_DYNAMIC_CCK_OFDM) != 0;
 	}
 	@Override
 	public boolean isGfskChannel() {
-		return gfskChannel;
-	}
-
-	public void setGfskChannel(boolean gfskChannel) {
-		this.gfskChannel = gfskChannel;
+		return (flags & FLAG_GFSK) != 0;
 	}
 	@Override
 	public int getFrequency() {
 		return frequency;
 	}
-
-	public void setFrequency(byte frequency) {
-		this.frequency = frequency;
-	}
-
+	@Override
 	public int getChannelNum() {
 		return channelNum;
 	}
-
-	public void setChannelNum(int channelNum) {
-		this.channelNum = channelNum;
-	}
 }
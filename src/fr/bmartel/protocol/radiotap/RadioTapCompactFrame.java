@@ -0,0 +1,613 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.protocol.radiotap;
+
+import fr.bmartel.protocol.radiotap.inter.IRadioTapFrame;
+import fr.bmartel.protocol.radiotap.inter.IRadiotapChannel;
+import fr.bmartel.protocol.radiotap.inter.IRadiotapData;
+import fr.bmartel.protocol.radiotap.inter.IRadiotapFlags;
+import fr.bmartel.protocol.radiotap.inter.IRadiotapPackedData;
+
+/**
+ * Immutable decoded radiotap frame packing every standard field of the first
+ * namespace in a few primitive fields, to retain a large number of frames
+ * with a single small object each.<br/>
+ * 
+ * Like RadioTapCursor, it is its own flag list, data and channel object.
+ * Radiotap payload bytes are not retained. A frame takes 72 bytes of heap on
+ * a 64-bit JVM with compressed oops, against 168 bytes for the RadioTap,
+ * RadioTapFlags and RadioTapData objects of an eagerly decoded frame.
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class RadioTapCompactFrame implements IRadioTapFrame, IRadiotapFlags,
+		IRadiotapPackedData, IRadiotapChannel {
+
+	/** bits of first it_present word for standard fields this frame retains */
+	public final static int RETAINED_FIELDS = RadioTapFlags.mask(RadioTapFlags.INDEX_TFST,
+			RadioTapFlags.INDEX_FLAGS, RadioTapFlags.INDEX_DATA_RATE, RadioTapFlags.INDEX_CHANNEL,
+			RadioTapFlags.INDEX_FHSS, RadioTapFlags.INDEX_DBM_ANT_SIGNAL, RadioTapFlags.INDEX_DBM_ANT_NOISE,
+			RadioTapFlags.INDEX_LOCK_QUALITY, RadioTapFlags.INDEX_TX_ATTENUATION,
+			RadioTapFlags.INDEX_DB_TX_ATTENUATION, RadioTapFlags.INDEX_DBM_TX_POWER, RadioTapFlags.INDEX_ANTENNA,
+			RadioTapFlags.INDEX_DB_ANTENNA_SIGNAL, RadioTapFlags.INDEX_DB_ANTENNA_NOISE,
+			RadioTapFlags.INDEX_RX_FLAGS, RadioTapFlags.INDEX_MCS, RadioTapFlags.INDEX_AMPDU,
+			RadioTapFlags.INDEX_VHT);
+
+	/** fields present in this frame (bit position from RadioTapFlags.INDEX_*) */
+	private final int present;
+
+	/** version (bits 0-7), FHSS (bits 8-15), it_len (bits 16-31) */
+	private final int header;
+
+	private final long tsft;
+
+	/**
+	 * flags, rate, dbm signal, dbm noise, antenna, db signal, db noise and dbm
+	 * tx power (one byte each from least significant byte)
+	 */
+	private final long radio;
+
+	/**
+	 * lock quality, tx attenuation, db tx attenuation and rx flags (16 bits
+	 * each from least significant bits)
+	 */
+	private final long quality;
+
+	/** frequency (bits 0-15), channel flags (bits 16-31) */
+	private final int channel;
+
+	/** MCS field packed (see RadioTapMCS.pack()) */
+	private final int mcs;
+
+	/** VHT field packed (see RadioTapVHT) */
+	private final long vht;
+
+	private final int vhtExt;
+
+	/** A-MPDU reference (bits 0-31), flags (bits 32-47), delimiter CRC (bits 48-55) */
+	private final long ampdu;
+
+	/**
+	 * Pack a decoded radiotap frame (RadioTap or wrapped RadioTapCursor)
+	 * 
+	 * @param frame
+	 *            decoded frame
+	 */
+	public RadioTapCompactFrame(IRadioTapFrame frame) {
+		IRadiotapFlags flagList = frame.getRadioTapFlagList();
+		IRadiotapData data = frame.getRadioTapData();
+
+		int fields = 0;
+		long packedRadio = 0;
+		long packedQuality = 0;
+		int fhss = 0;
+		long tsftValue = 0;
+		int packedChannel = 0;
+		int packedMcs = 0;
+		long packedVht = 0;
+		int packedVhtExt = 0;
+		long packedAmpdu = 0;
+
+		if (flagList.isTFST()) {
+			fields |= 1 << RadioTapFlags.INDEX_TFST;
+			tsftValue = data.getTFST();
+		}
+		if (flagList.isFlags()) {
+			fields |= 1 << RadioTapFlags.INDEX_FLAGS;
+			packedRadio |= data.getFlags() & 0xFFL;
+		}
+		if (flagList.isDataRate()) {
+			fields |= 1 << RadioTapFlags.INDEX_DATA_RATE;
+			packedRadio |= ((data.getDataRate() / 500) & 0xFFL) << 8;
+		}
+		if (flagList.isDbmAntSignal()) {
+			fields |= 1 << RadioTapFlags.INDEX_DBM_ANT_SIGNAL;
+			packedRadio |= (data.getDbmAntSignal() & 0xFFL) << 16;
+		}
+		if (flagList.isDbmAntNoise()) {
+			fields |= 1 << RadioTapFlags.INDEX_DBM_ANT_NOISE;
+			packedRadio |= (data.getDbmAntNoise() & 0xFFL) << 24;
+		}
+		if (flagList.isAntenna()) {
+			fields |= 1 << RadioTapFlags.INDEX_ANTENNA;
+			packedRadio |= (data.getAntenna() & 0xFFL) << 32;
+		}
+		if (flagList.isDbAntennaSignal()) {
+			fields |= 1 << RadioTapFlags.INDEX_DB_ANTENNA_SIGNAL;
+			packedRadio |= (data.getDbAntennaSignal() & 0xFFL) << 40;
+		}
+		if (flagList.isDbAntennaNoise()) {
+			fields |= 1 << RadioTapFlags.INDEX_DB_ANTENNA_NOISE;
+			packedRadio |= (data.getDbAntennaNoise() & 0xFFL) << 48;
+		}
+		if (flagList.isDbmTxPower()) {
+			fields |= 1 << RadioTapFlags.INDEX_DBM_TX_POWER;
+			packedRadio |= (data.getDbmTxPower() & 0xFFL) << 56;
+		}
+		if (flagList.isLockQuality()) {
+			fields |= 1 << RadioTapFlags.INDEX_LOCK_QUALITY;
+			packedQuality |= data.getLockQuality() & 0xFFFFL;
+		}
+		if (flagList.isTxAttenuation()) {
+			fields |= 1 << RadioTapFlags.INDEX_TX_ATTENUATION;
+			packedQuality |= (data.getTxAttenuation() & 0xFFFFL) << 16;
+		}
+		if (flagList.isDbTxAttenuation()) {
+			fields |= 1 << RadioTapFlags.INDEX_DB_TX_ATTENUATION;
+			packedQuality |= (data.getDbTxAttenuation() & 0xFFFFL) << 32;
+		}
+		if (flagList.isRxFlags()) {
+			fields |= 1 << RadioTapFlags.INDEX_RX_FLAGS;
+			packedQuality |= (long) rxFlags(data) << 48;
+		}
+		if (flagList.isFHSS()) {
+			fields |= 1 << RadioTapFlags.INDEX_FHSS;
+			fhss = data.getFHSS() & 0xFF;
+		}
+		if (flagList.isChannel() && data.getChannel() != null) {
+			fields |= 1 << RadioTapFlags.INDEX_CHANNEL;
+			IRadiotapChannel frameChannel = data.getChannel();
+			packedChannel = (frameChannel.getFrequency() & 0xFFFF) | (channelFlags(frameChannel) << 16);
+		}
+		if (data instanceof IRadiotapPackedData) {
+			// read composite fields without building any object
+			IRadiotapPackedData packed = (IRadiotapPackedData) data;
+			if (flagList.isMcs()) {
+				fields |= 1 << RadioTapFlags.INDEX_MCS;
+				packedMcs = packed.getMcsPacked();
+			}
+			if (flagList.isVht()) {
+				fields |= 1 << RadioTapFlags.INDEX_VHT;
+				packedVht = packed.getVhtPacked();
+				packedVhtExt = packed.getVhtPackedExt();
+			}
+			if (flagList.isAmpdu()) {
+				fields |= 1 << RadioTapFlags.INDEX_AMPDU;
+				packedAmpdu = (packed.getAmpduReference() & 0xFFFFFFFFL) | ((long) packed.getAmpduFlags() << 32)
+						| ((long) packed.getAmpduDelimiterCrc() << 48);
+			}
+		} else {
+			if (flagList.isMcs() && data.getMcs() != null) {
+				fields |= 1 << RadioTapFlags.INDEX_MCS;
+				packedMcs = data.getMcs().getPacked();
+			}
+			if (flagList.isVht() && data.getVht() != null) {
+				fields |= 1 << RadioTapFlags.INDEX_VHT;
+				RadioTapVHT frameVht = data.getVht();
+				packedVht = frameVht.getPacked();
+				packedVhtExt = frameVht.getPackedExt();
+			}
+			if (flagList.isAmpdu() && data.getAmpdu() != null) {
+				fields |= 1 << RadioTapFlags.INDEX_AMPDU;
+				RadioTapAMPDU frameAmpdu = data.getAmpdu();
+				packedAmpdu = (frameAmpdu.getReference() & 0xFFFFFFFFL) | ((long) frameAmpdu.getFlags() << 32)
+						| ((long) frameAmpdu.getDelimiterCrc() << 48);
+			}
+		}
+
+		this.present = fields & RETAINED_FIELDS;
+		this.header = (frame.getRadiotapVersion() & 0xFF) | (fhss << 8) | ((frame.getRadioTapDataLength() & 0xFFFF) << 16);
+		this.tsft = tsftValue;
+		this.radio = packedRadio;
+		this.quality = packedQuality;
+		this.channel = packedChannel;
+		this.mcs = packedMcs;
+		this.vht = packedVht;
+		this.vhtExt = packedVhtExt;
+		this.ampdu = packedAmpdu;
+	}
+
+	static int channelFlags(IRadiotapChannel channel) {
+		if (channel instanceof RadioTapChannel) {
+			return ((RadioTapChannel) channel).getFlags();
+		}
+		if (channel instanceof RadioTapCursor) {
+			return ((RadioTapCursor) channel).getChannelFlags();
+		}
+		int flags = 0;
+		if (channel.isTurboChannel())
+			flags |= RadioTapChannel.FLAG_TURBO;
+		if (channel.isCckChannel())
+			flags |= RadioTapChannel.FLAG_CCK;
+		if (channel.isOfdmChannel())
+			flags |= RadioTapChannel.FLAG_OFDM;
+		if (channel.isSpectrumChannel2GHZ())
+			flags |= RadioTapChannel.FLAG_2GHZ;
+		if (channel.isSpectrumChannel5GHZ())
+			flags |= RadioTapChannel.FLAG_5GHZ;
+		if (channel.isOnlyPassiveScanAllowed())
+			flags |= RadioTapChannel.FLAG_PASSIVE;
+		if (channel.isDynamicCckOfdmChannel())
+			flags |= RadioTapChannel.FLAG_DYNAMIC_CCK_OFDM;
+		if (channel.isGfskChannel())
+			flags |= RadioTapChannel.FLAG_GFSK;
+		return flags;
+	}
+
+	/**
+	 * Whole rx flags of RadioTap, RadioTapCursor and compact frames, only PLCP
+	 * CRC error bit being exposed by IRadiotapData
+	 */
+	static int rxFlags(IRadiotapData data) {
+		if (data instanceof IRadiotapPackedData) {
+			return ((IRadiotapPackedData) data).getRxFlags();
+		}
+		if (data instanceof RadioTapData) {
+			return ((RadioTapData) data).getRxFlags();
+		}
+		return data.isPlcpCrcErrors() ? 0x02 : 0;
+	}
+
+	private boolean isPresent(int index) {
+		return (present & (1 << index)) != 0;
+	}
+
+	/**
+	 * Fields retained for this frame
+	 * 
+	 * @return bitmask of RadioTapFlags.INDEX_* positions
+	 */
+	public int getPresentFlags() {
+		return present;
+	}
+
+	@Override
+	public int getRadiotapVersion() {
+		return header & 0xFF;
+	}
+
+	@Override
+	public int getRadioTapDataLength() {
+		return header >>> 16;
+	}
+
+	@Override
+	public IRadiotapFlags getRadioTapFlagList() {
+		return this;
+	}
+
+	@Override
+	public IRadiotapData getRadioTapData() {
+		return this;
+	}
+
+	@Override
+	public boolean isTFST() {
+		return isPresent(RadioTapFlags.INDEX_TFST);
+	}
+
+	@Override
+	public boolean isFlags() {
+		return isPresent(RadioTapFlags.INDEX_FLAGS);
+	}
+
+	@Override
+	public boolean isDataRate() {
+		return isPresent(RadioTapFlags.INDEX_DATA_RATE);
+	}
+
+	@Override
+	public boolean isChannel() {
+		return isPresent(RadioTapFlags.INDEX_CHANNEL);
+	}
+
+	@Override
+	public boolean isFHSS() {
+		return isPresent(RadioTapFlags.INDEX_FHSS);
+	}
+
+	@Override
+	public boolean isDbmAntSignal() {
+		return isPresent(RadioTapFlags.INDEX_DBM_ANT_SIGNAL);
+	}
+
+	@Override
+	public boolean isDbmAntNoise() {
+		return isPresent(RadioTapFlags.INDEX_DBM_ANT_NOISE);
+	}
+
+	@Override
+	public boolean isLockQuality() {
+		return isPresent(RadioTapFlags.INDEX_LOCK_QUALITY);
+	}
+
+	@Override
+	public boolean isTxAttenuation() {
+		return isPresent(RadioTapFlags.INDEX_TX_ATTENUATION);
+	}
+
+	@Override
+	public boolean isDbTxAttenuation() {
+		return isPresent(RadioTapFlags.INDEX_DB_TX_ATTENUATION);
+	}
+
+	@Override
+	public boolean isDbmTxPower() {
+		return isPresent(RadioTapFlags.INDEX_DBM_TX_POWER);
+	}
+
+	@Override
+	public boolean isAntenna() {
+		return isPresent(RadioTapFlags.INDEX_ANTENNA);
+	}
+
+	@Override
+	public boolean isDbAntennaSignal() {
+		return isPresent(RadioTapFlags.INDEX_DB_ANTENNA_SIGNAL);
+	}
+
+	@Override
+	public boolean isDbAntennaNoise() {
+		return isPresent(RadioTapFlags.INDEX_DB_ANTENNA_NOISE);
+	}
+
+	@Override
+	public boolean isRxFlags() {
+		return isPresent(RadioTapFlags.INDEX_RX_FLAGS);
+	}
+
+	@Override
+	public boolean isMcs() {
+		return isPresent(RadioTapFlags.INDEX_MCS);
+	}
+
+	@Override
+	public boolean isAmpdu() {
+		return isPresent(RadioTapFlags.INDEX_AMPDU);
+	}
+
+	@Override
+	public boolean isVht() {
+		return isPresent(RadioTapFlags.INDEX_VHT);
+	}
+
+	@Override
+	public int getFlags() {
+		return (byte) radio;
+	}
+
+	@Override
+	public int getDataRate() {
+		return (int) ((radio >> 8) & 0xFF) * 500;
+	}
+
+	/**
+	 * Compact frame is its own channel object
+	 */
+	@Override
+	public IRadiotapChannel getChannel() {
+		if (!isChannel()) {
+			return null;
+		}
+		return this;
+	}
+
+	@Override
+	public byte getFHSS() {
+		return (byte) (header >> 8);
+	}
+
+	@Override
+	public byte getDbmAntSignal() {
+		return (byte) (radio >> 16);
+	}
+
+	@Override
+	public byte getDbmAntNoise() {
+		return (byte) (radio >> 24);
+	}
+
+	@Override
+	public int getLockQuality() {
+		return (int) (quality & 0xFFFF);
+	}
+
+	@Override
+	public int getDbTxAttenuation() {
+		return (int) ((quality >> 32) & 0xFFFF);
+	}
+
+	/**
+	 * Radiotap payload is not retained
+	 * 
+	 * @return empty array
+	 */
+	@Override
+	public byte[] getPayload() {
+		return new byte[] {};
+	}
+
+	@Override
+	public long getTFST() {
+		if (!isTFST()) {
+			return -1l;
+		}
+		return tsft;
+	}
+
+	@Override
+	public byte getDbmTxPower() {
+		return (byte) (radio >> 56);
+	}
+
+	@Override
+	public byte getAntenna() {
+		return (byte) (radio >> 32);
+	}
+
+	@Override
+	public byte getDbAntennaSignal() {
+		return (byte) (radio >> 40);
+	}
+
+	@Override
+	public byte getDbAntennaNoise() {
+		return (byte) (radio >> 48);
+	}
+
+	@Override
+	public boolean isPlcpCrcErrors() {
+		return ((quality >> 48) & 0x02) != 0;
+	}
+
+	/**
+	 * 16 bit rx flags (only PLCP CRC error bit for frames other than
+	 * RadioTap, RadioTapCursor and compact frames)
+	 * 
+	 * @return
+	 */
+	@Override
+	public int getRxFlags() {
+		return (int) ((quality >> 48) & 0xFFFF);
+	}
+
+	/**
+	 * A new MCS object is built on each call
+	 */
+	@Override
+	public RadioTapMCS getMcs() {
+		if (!isMcs()) {
+			return null;
+		}
+		return new RadioTapMCS(mcs);
+	}
+
+	@Override
+	public int getMcsPacked() {
+		return mcs;
+	}
+
+	/**
+	 * A new VHT object is built on each call
+	 */
+	@Override
+	public RadioTapVHT getVht() {
+		if (!isVht()) {
+			return null;
+		}
+		return new RadioTapVHT(vht, vhtExt);
+	}
+
+	@Override
+	public long getVhtPacked() {
+		return vht;
+	}
+
+	@Override
+	public int getVhtPackedExt() {
+		return vhtExt;
+	}
+
+	/**
+	 * A new A-MPDU object is built on each call
+	 */
+	@Override
+	public RadioTapAMPDU getAmpdu() {
+		if (!isAmpdu()) {
+			return null;
+		}
+		return new RadioTapAMPDU(getAmpduReference(), getAmpduFlags(), getAmpduDelimiterCrc());
+	}
+
+	@Override
+	public int getAmpduReference() {
+		return (int) ampdu;
+	}
+
+	@Override
+	public int getAmpduFlags() {
+		return (int) (ampdu >> 32) & 0xFFFF;
+	}
+
+	@Override
+	public int getAmpduDelimiterCrc() {
+		return (int) (ampdu >> 48) & 0xFF;
+	}
+
+	@Override
+	public int getTxAttenuation() {
+		return (int) ((quality >> 16) & 0xFFFF);
+	}
+
+	/**
+	 * 16 bit channel flags
+	 * 
+	 * @return
+	 */
+	@Override
+	public int getChannelFlags() {
+		return channel >>> 16;
+	}
+
+	@Override
+	public int getChannelNum() {
+		return RadioTapChannel.chooseChannelNum(getFrequency());
+	}
+
+	@Override
+	public int getFrequency() {
+		return channel & 0xFFFF;
+	}
+
+	@Override
+	public boolean isTurboChannel() {
+		return (getChannelFlags() & RadioTapChannel.FLAG_TURBO) != 0;
+	}
+
+	@Override
+	public boolean isCckChannel() {
+		return (getChannelFlags() & RadioTapChannel.FLAG_CCK) != 0;
+	}
+
+	@Override
+	public boolean isOfdmChannel() {
+		return (getChannelFlags() & RadioTapChannel.FLAG_OFDM) != 0;
+	}
+
+	@Override
+	public boolean isSpectrumChannel2GHZ() {
+		return (getChannelFlags() & RadioTapChannel.FLAG_2GHZ) != 0;
+	}
+
+	@Override
+	public boolean isSpectrumChannel5GHZ() {
+		return (getChannelFlags() & RadioTapChannel.FLAG_5GHZ) != 0;
+	}
+
+	@Override
+	public boolean isOnlyPassiveScanAllowed() {
+		return (getChannelFlags() & RadioTapChannel.FLAG_PASSIVE) != 0;
+	}
+
+	@Override
+	public boolean isDynamicCckOfdmChannel() {
+		return (getChannelFlags() & RadioTapChannel.FLAG_DYNAMIC_CCK_OFDM) != 0;
+	}
+
+	@Override
+	public boolean isGfskChannel() {
+		return (getChannelFlags() & RadioTapChannel.FLAG_GFSK) != 0;
+	}
+}
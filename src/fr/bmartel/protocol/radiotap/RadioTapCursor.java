@@ -0,0 +1,801 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.protocol.radiotap;
+
+import java.nio.ByteBuffer;
+
+import fr.bmartel.protocol.radiotap.inter.IRadioTapFrame;
+import fr.bmartel.protocol.radiotap.inter.IRadiotapChannel;
+import fr.bmartel.protocol.radiotap.inter.IRadiotapData;
+import fr.bmartel.protocol.radiotap.inter.IRadiotapFlags;
+import fr.bmartel.protocol.radiotap.inter.IRadiotapPackedData;
+import fr.bmartel.utils.LittleEndianReader;
+import fr.bmartel.utils.RadioTapException;
+import fr.bmartel.utils.RadioTapStatus;
+
+/**
+ * Reusable radiotap decoder reading every field in place from the frame it is
+ * currently wrapped on.<br/>
+ * 
+ * Wrapping a new frame only computes field positions : no object is allocated
+ * per frame so that a single cursor can scan a whole capture. Cursor is its
+ * own flag list, data and channel object.<br/>
+ * 
+ * Malformed frames can be reported through a status code instead of an
+ * exception with decode() so that they cost as much as valid ones.<br/>
+ * 
+ * A cursor is not thread safe, use one cursor per thread.
+ * 
+ * @author Bertrand Martel
+ * 
+ */
+public class RadioTapCursor implements IRadioTapFrame, IRadiotapFlags,
+		IRadiotapPackedData, IRadiotapChannel {
+
+	/** layout used when cursor is not wrapped on any frame */
+	private final static RadioTapLayout EMPTY_LAYOUT = new RadioTapLayout(0);
+
+	/** array frame is read from */
+	private byte[] array = null;
+
+	/** buffer frame is read from when not backed by an accessible array */
+	private ByteBuffer buffer = null;
+
+	/** absolute position of radiotap header */
+	private int offset = 0;
+
+	/** entire length of the radiotap data */
+	private int headerLength = 0;
+
+	/** bitmask for values present in radio tap payload */
+	private int presentFlags = 0;
+
+	/** layouts used to locate fields */
+	private final RadioTapLayoutCache layoutCache;
+
+	/** layout cache hit counter of the thread that last used this cursor */
+	private RadioTapLayoutCache.HitCounter hitCounter = null;
+
+	/** layout of current frame */
+	private RadioTapLayout layout = null;
+
+	/** status of last decoding (see RadioTapStatus) */
+	private int status = RadioTapStatus.TRUNCATED_HEADER_STATUS;
+
+	/**
+	 * position of each field relative to radiotap header indexed by bit
+	 * position (-1 if absent)
+	 */
+	private int[] fieldOffsets = EMPTY_LAYOUT.getFieldOffsets();
+
+	/**
+	 * Build a cursor not wrapped on any frame yet using default layout cache
+	 */
+	public RadioTapCursor() {
+		this(RadioTapLayoutCache.getDefaultCache());
+	}
+
+	/**
+	 * Build a cursor not wrapped on any frame yet
+	 * 
+	 * @param layoutCache
+	 *            cache used to locate fields from it_present bitmask
+	 */
+	public RadioTapCursor(RadioTapLayoutCache layoutCache) {
+		this.layoutCache = layoutCache;
+		clear();
+	}
+
+	/**
+	 * Wrap cursor on the radiotap frame starting at offset in array
+	 * 
+	 * @param array
+	 *            array containing the frame
+	 * @param offset
+	 *            position of radiotap header
+	 * @param length
+	 *            number of bytes available for this frame
+	 * @return this cursor
+	 */
+	public RadioTapCursor wrap(byte[] array, int offset, int length) throws RadioTapException {
+		return check(decode(array, offset, length));
+	}
+
+	/**
+	 * Wrap cursor on the radiotap frame starting at offset in a heap or direct
+	 * buffer (buffer position is left untouched)
+	 * 
+	 * @param buffer
+	 *            buffer containing the frame
+	 * @param offset
+	 *            absolute position of radiotap header
+	 * @param length
+	 *            number of bytes available for this frame
+	 * @return this cursor
+	 */
+	public RadioTapCursor wrap(ByteBuffer buffer, int offset, int length) throws RadioTapException {
+		return check(decode(buffer, offset, length));
+	}
+
+	/**
+	 * Wrap cursor on the radiotap frame starting at offset in array without
+	 * throwing any exception : a malformed frame leaves the cursor empty
+	 * (see RadioTapStatus.isDecoded())
+	 * 
+	 * @param array
+	 *            array containing the frame
+	 * @param offset
+	 *            position of radiotap header
+	 * @param length
+	 *            number of bytes available for this frame
+	 * @return decoding status (see RadioTapStatus)
+	 */
+	public int decode(byte[] array, int offset, int length) {
+		this.array = array;
+		this.buffer = null;
+		return reset(array.length, offset, length);
+	}
+
+	/**
+	 * Wrap cursor on the radiotap frame starting at offset in a heap or direct
+	 * buffer without throwing any exception : a malformed frame leaves the
+	 * cursor empty
+	 * 
+	 * @param buffer
+	 *            buffer containing the frame
+	 * @param offset
+	 *            absolute position of radiotap header
+	 * @param length
+	 *            number of bytes available for this frame
+	 * @return decoding status (see RadioTapStatus)
+	 */
+	public int decode(ByteBuffer buffer, int offset, int length) {
+		if (buffer.hasArray()) {
+			this.array = buffer.array();
+			this.buffer = null;
+			return reset(buffer.arrayOffset() + buffer.limit(), buffer.arrayOffset() + offset, length);
+		}
+		this.array = null;
+		this.buffer = buffer;
+		return reset(buffer.limit(), offset, length);
+	}
+
+	private RadioTapCursor check(int status) throws RadioTapException {
+		if (!RadioTapStatus.isDecoded(status)) {
+			throw new RadioTapException(RadioTapStatus.getReason(status));
+		}
+		return this;
+	}
+
+	/**
+	 * Read header fixed part and compute field positions
+	 * 
+	 * @return decoding status (see RadioTapStatus)
+	 */
+	private int reset(int capacity, int offset, int length) {
+		clear();
+		if (offset < 0 || length < 0 || offset + length > capacity) {
+			return status = RadioTapStatus.TRUNCATED_HEADER_STATUS;
+		}
+		if (length < RadioTapLayout.HEADER_FIXED_LENGTH) {
+			return status = RadioTapStatus.TRUNCATED_HEADER_STATUS;
+		}
+		int frameLength = readUInt16(offset + 2);
+		status = RadioTapLayout.checkHeader(readUInt8(offset), frameLength, length);
+		if (status != RadioTapStatus.SUCCESS_STATUS) {
+			return status;
+		}
+
+		Thread thread = Thread.currentThread();
+		if (hitCounter == null || !hitCounter.isOwner(thread)) {
+			hitCounter = layoutCache.getHitCounter();
+		}
+		RadioTapLayout frameLayout = layoutCache.getLayout(array, buffer, offset, frameLength, hitCounter);
+		status = RadioTapLayout.checkLayout(frameLayout, frameLength);
+		if (!RadioTapStatus.isDecoded(status)) {
+			return status;
+		}
+		this.offset = offset;
+		headerLength = frameLength;
+		presentFlags = frameLayout.getPresentFlags();
+		layout = frameLayout;
+		fieldOffsets = frameLayout.getFieldOffsets();
+		return status;
+	}
+
+	/**
+	 * Status of last decoding
+	 * 
+	 * @return decoding status (see RadioTapStatus)
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * Unwrap cursor from current frame
+	 */
+	private void clear() {
+		offset = 0;
+		headerLength = 0;
+		presentFlags = 0;
+		layout = EMPTY_LAYOUT;
+		fieldOffsets = EMPTY_LAYOUT.getFieldOffsets();
+	}
+
+	private int readUInt8(int position) {
+		if (array != null) {
+			return LittleEndianReader.readUInt8(array, position);
+		}
+		return LittleEndianReader.readUInt8(buffer, position);
+	}
+
+	private int readUInt16(int position) {
+		if (array != null) {
+			return LittleEndianReader.readUInt16(array, position);
+		}
+		return LittleEndianReader.readUInt16(buffer, position);
+	}
+
+	private int readInt32(int position) {
+		if (array != null) {
+			return LittleEndianReader.readInt32(array, position);
+		}
+		return LittleEndianReader.readInt32(buffer, position);
+	}
+
+	private long readUInt64(int position) {
+		if (array != null) {
+			return LittleEndianReader.readUInt64(array, position);
+		}
+		return LittleEndianReader.readUInt64(buffer, position);
+	}
+
+	private boolean isPresent(int index) {
+		return fieldOffsets[index] >= 0;
+	}
+
+	/**
+	 * Layout of current frame
+	 * 
+	 * @return
+	 */
+	public RadioTapLayout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Number of radiotap namespaces in current frame (one per antenna for
+	 * multi-antenna frames)
+	 * 
+	 * @return
+	 */
+	public int getNamespaceCount() {
+		return layout.getNamespaceCount();
+	}
+
+	/**
+	 * RF signal power at the antenna in dBm reported in a given radiotap
+	 * namespace
+	 * 
+	 * @param namespace
+	 *            radiotap namespace number (0 for the first one)
+	 * @return signal power or 0 if absent from this namespace
+	 */
+	public byte getDbmAntSignal(int namespace) {
+		if (namespace < 0 || namespace >= layout.getNamespaceCount()) {
+			return 0;
+		}
+		int position = layout.getFieldOffset(namespace, RadioTapFlags.INDEX_DBM_ANT_SIGNAL);
+		if (position < 0) {
+			return 0;
+		}
+		return (byte) readUInt8(offset + position);
+	}
+
+	/**
+	 * Antenna index reported in a given radiotap namespace
+	 * 
+	 * @param namespace
+	 *            radiotap namespace number (0 for the first one)
+	 * @return antenna index or 0 if absent from this namespace
+	 */
+	public byte getAntenna(int namespace) {
+		if (namespace < 0 || namespace >= layout.getNamespaceCount()) {
+			return 0;
+		}
+		int position = layout.getFieldOffset(namespace, RadioTapFlags.INDEX_ANTENNA);
+		if (position < 0) {
+			return 0;
+		}
+		return (byte) readUInt8(offset + position);
+	}
+
+	/**
+	 * first it_present bitmask of current frame
+	 * 
+	 * @return
+	 */
+	public int getPresentFlags() {
+		return presentFlags;
+	}
+
+	@Override
+	public int getRadiotapVersion() {
+		if (headerLength == 0) {
+			// not wrapped on a decoded frame
+			return 0;
+		}
+		return readUInt8(offset);
+	}
+
+	@Override
+	public int getRadioTapDataLength() {
+		return headerLength;
+	}
+
+	@Override
+	public IRadiotapFlags getRadioTapFlagList() {
+		return this;
+	}
+
+	@Override
+	public IRadiotapData getRadioTapData() {
+		return this;
+	}
+
+	@Override
+	public boolean isTFST() {
+		return isPresent(RadioTapFlags.INDEX_TFST);
+	}
+
+	@Override
+	public boolean isFlags() {
+		return isPresent(RadioTapFlags.INDEX_FLAGS);
+	}
+
+	@Override
+	public boolean isDataRate() {
+		return isPresent(RadioTapFlags.INDEX_DATA_RATE);
+	}
+
+	@Override
+	public boolean isChannel() {
+		return isPresent(RadioTapFlags.INDEX_CHANNEL);
+	}
+
+	@Override
+	public boolean isFHSS() {
+		return isPresent(RadioTapFlags.INDEX_FHSS);
+	}
+
+	@Override
+	public boolean isDbmAntSignal() {
+		return isPresent(RadioTapFlags.INDEX_DBM_ANT_SIGNAL);
+	}
+
+	@Override
+	public boolean isDbmAntNoise() {
+		return isPresent(RadioTapFlags.INDEX_DBM_ANT_NOISE);
+	}
+
+	@Override
+	public boolean isLockQuality() {
+		return isPresent(RadioTapFlags.INDEX_LOCK_QUALITY);
+	}
+
+	@Override
+	public boolean isTxAttenuation() {
+		return isPresent(RadioTapFlags.INDEX_TX_ATTENUATION);
+	}
+
+	@Override
+	public boolean isDbTxAttenuation() {
+		return isPresent(RadioTapFlags.INDEX_DB_TX_ATTENUATION);
+	}
+
+	@Override
+	public boolean isDbmTxPower() {
+		return isPresent(RadioTapFlags.INDEX_DBM_TX_POWER);
+	}
+
+	@Override
+	public boolean isAntenna() {
+		return isPresent(RadioTapFlags.INDEX_ANTENNA);
+	}
+
+	@Override
+	public boolean isDbAntennaSignal() {
+		return isPresent(RadioTapFlags.INDEX_DB_ANTENNA_SIGNAL);
+	}
+
+	@Override
+	public boolean isDbAntennaNoise() {
+		return isPresent(RadioTapFlags.INDEX_DB_ANTENNA_NOISE);
+	}
+
+	@Override
+	public boolean isRxFlags() {
+		return isPresent(RadioTapFlags.INDEX_RX_FLAGS);
+	}
+
+	@Override
+	public boolean isMcs() {
+		return isPresent(RadioTapFlags.INDEX_MCS);
+	}
+
+	@Override
+	public boolean isAmpdu() {
+		return isPresent(RadioTapFlags.INDEX_AMPDU);
+	}
+
+	@Override
+	public boolean isVht() {
+		return isPresent(RadioTapFlags.INDEX_VHT);
+	}
+
+	@Override
+	public int getFlags() {
+		if (!isFlags()) {
+			return 0;
+		}
+		return (byte) readUInt8(offset + fieldOffsets[RadioTapFlags.INDEX_FLAGS]);
+	}
+
+	@Override
+	public int getDataRate() {
+		if (!isDataRate()) {
+			return 0;
+		}
+		return readUInt8(offset + fieldOffsets[RadioTapFlags.INDEX_DATA_RATE]) * 500;
+	}
+
+	/**
+	 * Cursor is its own channel object
+	 */
+	@Override
+	public IRadiotapChannel getChannel() {
+		if (!isChannel()) {
+			return null;
+		}
+		return this;
+	}
+
+	@Override
+	public byte getFHSS() {
+		if (!isFHSS()) {
+			return 0;
+		}
+		return (byte) readUInt8(offset + fieldOffsets[RadioTapFlags.INDEX_FHSS]);
+	}
+
+	/**
+	 * FHSS hop pattern (getFHSS() being the hop set)
+	 * 
+	 * @return hop pattern (0 if absent)
+	 */
+	public byte getFhssPattern() {
+		if (!isFHSS()) {
+			return 0;
+		}
+		return (byte) readUInt8(offset + fieldOffsets[RadioTapFlags.INDEX_FHSS] + 1);
+	}
+
+	@Override
+	public byte getDbmAntSignal() {
+		if (!isDbmAntSignal()) {
+			return 0;
+		}
+		return (byte) readUInt8(offset + fieldOffsets[RadioTapFlags.INDEX_DBM_ANT_SIGNAL]);
+	}
+
+	@Override
+	public byte getDbmAntNoise() {
+		if (!isDbmAntNoise()) {
+			return 0;
+		}
+		return (byte) readUInt8(offset + fieldOffsets[RadioTapFlags.INDEX_DBM_ANT_NOISE]);
+	}
+
+	@Override
+	public int getLockQuality() {
+		if (!isLockQuality()) {
+			return 0;
+		}
+		return readUInt16(offset + fieldOffsets[RadioTapFlags.INDEX_LOCK_QUALITY]);
+	}
+
+	@Override
+	public int getDbTxAttenuation() {
+		if (!isDbTxAttenuation()) {
+			return 0;
+		}
+		return readUInt16(offset + fieldOffsets[RadioTapFlags.INDEX_DB_TX_ATTENUATION]);
+	}
+
+	/**
+	 * Payload is copied out of the frame on each call
+	 */
+	@Override
+	public byte[] getPayload() {
+		int payloadOffset = layout.getPayloadOffset();
+		byte[] payload = new byte[Math.max(headerLength - payloadOffset, 0)];
+		for (int i = 0; i < payload.length; i++) {
+			payload[i] = (byte) readUInt8(offset + payloadOffset + i);
+		}
+		return payload;
+	}
+
+	@Override
+	public long getTFST() {
+		if (!isTFST()) {
+			return -1l;
+		}
+		return readUInt64(offset + fieldOffsets[RadioTapFlags.INDEX_TFST]);
+	}
+
+	@Override
+	public byte getDbmTxPower() {
+		if (!isDbmTxPower()) {
+			return 0;
+		}
+		return (byte) readUInt8(offset + fieldOffsets[RadioTapFlags.INDEX_DBM_TX_POWER]);
+	}
+
+	@Override
+	public byte getAntenna() {
+		if (!isAntenna()) {
+			return 0;
+		}
+		return (byte) readUInt8(offset + fieldOffsets[RadioTapFlags.INDEX_ANTENNA]);
+	}
+
+	@Override
+	public byte getDbAntennaSignal() {
+		if (!isDbAntennaSignal()) {
+			return 0;
+		}
+		return (byte) readUInt8(offset + fieldOffsets[RadioTapFlags.INDEX_DB_ANTENNA_SIGNAL]);
+	}
+
+	@Override
+	public byte getDbAntennaNoise() {
+		if (!isDbAntennaNoise()) {
+			return 0;
+		}
+		return (byte) readUInt8(offset + fieldOffsets[RadioTapFlags.INDEX_DB_ANTENNA_NOISE]);
+	}
+
+	@Override
+	public boolean isPlcpCrcErrors() {
+		if (!isRxFlags()) {
+			return false;
+		}
+		return (readUInt16(offset + fieldOffsets[RadioTapFlags.INDEX_RX_FLAGS]) & 0x02) != 0;
+	}
+
+	/**
+	 * 16 bit rx flags of current frame
+	 * 
+	 * @return rx flags (0 if absent)
+	 */
+	public int getRxFlags() {
+		if (!isRxFlags()) {
+			return 0;
+		}
+		return readUInt16(offset + fieldOffsets[RadioTapFlags.INDEX_RX_FLAGS]);
+	}
+
+	/**
+	 * MCS field read without building any object
+	 * 
+	 * @return MCS field packed as RadioTapMCS.pack() does (0 if absent)
+	 */
+	public int getMcsPacked() {
+		if (!isMcs()) {
+			return 0;
+		}
+		int position = offset + fieldOffsets[RadioTapFlags.INDEX_MCS];
+		return readUInt8(position) | (readUInt8(position + 1) << 8) | (readUInt8(position + 2) << 16);
+	}
+
+	/**
+	 * A new MCS object is built on each call
+	 */
+	@Override
+	public RadioTapMCS getMcs() {
+		if (!isMcs()) {
+			return null;
+		}
+		int position = offset + fieldOffsets[RadioTapFlags.INDEX_MCS];
+		return new RadioTapMCS((byte) readUInt8(position), (byte) readUInt8(position + 1), (byte) readUInt8(position + 2));
+	}
+
+	/**
+	 * A new A-MPDU object is built on each call
+	 */
+	@Override
+	public RadioTapAMPDU getAmpdu() {
+		if (!isAmpdu()) {
+			return null;
+		}
+		int position = offset + fieldOffsets[RadioTapFlags.INDEX_AMPDU];
+		return new RadioTapAMPDU(readInt32(position), readUInt16(position + 4), readUInt8(position + 6));
+	}
+
+	/**
+	 * A-MPDU reference number read without building any object
+	 * 
+	 * @return reference number (0 if absent)
+	 */
+	public int getAmpduReference() {
+		if (!isAmpdu()) {
+			return 0;
+		}
+		return readInt32(offset + fieldOffsets[RadioTapFlags.INDEX_AMPDU]);
+	}
+
+	/**
+	 * A-MPDU flags read without building any object
+	 * 
+	 * @return flags (see RadioTapAMPDU.FLAG_*), 0 if absent
+	 */
+	public int getAmpduFlags() {
+		if (!isAmpdu()) {
+			return 0;
+		}
+		return readUInt16(offset + fieldOffsets[RadioTapFlags.INDEX_AMPDU] + 4);
+	}
+
+	/**
+	 * A-MPDU delimiter CRC read without building any object
+	 * 
+	 * @return delimiter CRC value (0 if absent)
+	 */
+	public int getAmpduDelimiterCrc() {
+		if (!isAmpdu()) {
+			return 0;
+		}
+		return readUInt8(offset + fieldOffsets[RadioTapFlags.INDEX_AMPDU] + 6);
+	}
+
+	/**
+	 * VHT known, flags, bandwidth and mcs_nss read without building any object
+	 * 
+	 * @return packed as RadioTapVHT.getPacked() (0 if absent)
+	 */
+	public long getVhtPacked() {
+		if (!isVht()) {
+			return 0;
+		}
+		int position = offset + fieldOffsets[RadioTapFlags.INDEX_VHT];
+		return readUInt16(position) | ((long) readUInt8(position + 2) << 16) | ((long) readUInt8(position + 3) << 24)
+				| ((readInt32(position + 4) & 0xFFFFFFFFL) << 32);
+	}
+
+	/**
+	 * VHT coding, group_id and partial_aid read without building any object
+	 * 
+	 * @return packed as RadioTapVHT.getPackedExt() (0 if absent)
+	 */
+	public int getVhtPackedExt() {
+		if (!isVht()) {
+			return 0;
+		}
+		int position = offset + fieldOffsets[RadioTapFlags.INDEX_VHT];
+		return readUInt8(position + 8) | (readUInt8(position + 9) << 8) | (readUInt16(position + 10) << 16);
+	}
+
+	/**
+	 * A new VHT object is built on each call
+	 */
+	@Override
+	public RadioTapVHT getVht() {
+		if (!isVht()) {
+			return null;
+		}
+		int position = offset + fieldOffsets[RadioTapFlags.INDEX_VHT];
+		return new RadioTapVHT(readUInt16(position), readUInt8(position + 2),
+				readUInt8(position + 3), readInt32(position + 4),
+				readUInt8(position + 8), readUInt8(position + 9),
+				readUInt16(position + 10));
+	}
+
+	@Override
+	public int getTxAttenuation() {
+		if (!isTxAttenuation()) {
+			return 0;
+		}
+		return readUInt16(offset + fieldOffsets[RadioTapFlags.INDEX_TX_ATTENUATION]);
+	}
+
+	/**
+	 * 16 bit channel flags of current frame
+	 * 
+	 * @return
+	 */
+	public int getChannelFlags() {
+		if (!isChannel()) {
+			return 0;
+		}
+		return readUInt16(offset + fieldOffsets[RadioTapFlags.INDEX_CHANNEL] + 2);
+	}
+
+	/**
+	 * channel number matching current frame frequency
+	 * 
+	 * @return
+	 */
+	public int getChannelNum() {
+		return RadioTapChannel.chooseChannelNum(getFrequency());
+	}
+
+	@Override
+	public int getFrequency() {
+		if (!isChannel()) {
+			return 0;
+		}
+		return readUInt16(offset + fieldOffsets[RadioTapFlags.INDEX_CHANNEL]);
+	}
+
+	@Override
+	public boolean isTurboChannel() {
+		return (getChannelFlags() & 0x0010) != 0;
+	}
+
+	@Override
+	public boolean isCckChannel() {
+		return (getChannelFlags() & 0x0020) != 0;
+	}
+
+	@Override
+	public boolean isOfdmChannel() {
+		return (getChannelFlags() & 0x0040) != 0;
+	}
+
+	@Override
+	public boolean isSpectrumChannel2GHZ() {
+		return (getChannelFlags() & 0x0080) != 0;
+	}
+
+	@Override
+	public boolean isSpectrumChannel5GHZ() {
+		return (getChannelFlags() & 0x0100) != 0;
+	}
+
+	@Override
+	public boolean isOnlyPassiveScanAllowed() {
+		return (getChannelFlags() & 0x0200) != 0;
+	}
+
+	@Override
+	public boolean isDynamicCckOfdmChannel() {
+		return (getChannelFlags() & 0x0400) != 0;
+	}
+
+	@Override
+	public boolean isGfskChannel() {
+		return (getChannelFlags() & 0x0800) != 0;
+	}
+}
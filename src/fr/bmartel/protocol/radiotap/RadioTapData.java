@@ -23,11 +23,11 @@
  */
 package fr.bmartel.protocol.radiotap;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 
 import fr.bmartel.protocol.radiotap.inter.IRadiotapChannel;
 import fr.bmartel.protocol.radiotap.inter.IRadiotapData;
-import fr.bmartel.utils.ByteUtils;
+import fr.bmartel.utils.LittleEndianReader;
 
 /**
  * Object containing all implementations of various prperties that may be
@@ -43,7 +43,7 @@ public class RadioTapData implements IRadiotapData{
 	 * Function timer when the first bit of the MPDU arrived at the MAC. For
 	 * received frames only.
 	 */
-	private Long TFST = -1l;
+	private long TFST = -1l;
 
 	/** Properties of transmitted and received frames. */
 	private byte flags = 0;
@@ -54,6 +54,9 @@ public class RadioTapData implements IRadiotapData{
 	/** The hop set and pattern for frequency-hopping radios. */
 	private byte FHSS = 0x00;
 
+	/** FHSS hop pattern */
+	private byte fhssPattern = 0x00;
+
 	/**
 	 * RF signal power at the antenna. This field contains a single signed 8-bit
 	 * value, which indicates the RF signal power at the antenna, in decibels
@@ -113,7 +116,7 @@ public class RadioTapData implements IRadiotapData{
 	private byte dbAntennaNoise = 0x00;
 
 	/** Properties of received frames. */
-	private byte[] rxFlags = new byte[] {};
+	private int rxFlags = 0;
 
 	/**
 	 * Modulation coding scheme
@@ -134,109 +137,324 @@ public class RadioTapData implements IRadiotapData{
 	 */
 	private RadioTapVHT vht = null;
 
-	/** data payload extracted from radio tap header */
-	private byte[] payload = new byte[] {};
+	/**
+	 * A-MPDU status
+	 */
+	private RadioTapAMPDU ampdu = null;
+
+	/** data payload extracted from radio tap header (built on demand) */
+	private byte[] payload = null;
+
+	/** array the radiotap payload is read from in place */
+	private byte[] frame = null;
+
+	/** buffer the radiotap payload is read from in place when it is not backed by an accessible array */
+	private ByteBuffer buffer = null;
+
+	/** absolute position of the radiotap payload in frame array or buffer */
+	private int payloadOffset = 0;
+
+	/** length of the radiotap payload */
+	private int payloadLength = 0;
+
+	/** field positions of the frame this data is decoded from */
+	private RadioTapLayout layout = null;
 
 	/**
-	 * define flag field
+	 * bitmask of fields located but not decoded yet : each one is decoded the
+	 * first time it is retrieved (lazy decoding)
 	 */
-	private boolean flagsFieldDefined = false;
+	private int pendingFields = 0;
 
 	/**
-	 * Define current position in payload data
+	 * Define current position in payload data (set from radiotap layout before
+	 * each field is decoded)
 	 */
 	private int currentIndex = 0;
 
 	public RadioTapData(byte[] payload) {
-		this.payload = payload;
+		this(payload, 0, payload.length);
+	}
+
+	/**
+	 * Build radiotap data reading payload in place from a larger array
+	 * 
+	 * @param frame
+	 *            array containing the radiotap payload
+	 * @param payloadOffset
+	 *            position of the first byte following it_present fields
+	 * @param payloadLength
+	 *            number of payload bytes
+	 */
+	public RadioTapData(byte[] frame, int payloadOffset, int payloadLength) {
+		this.frame = frame;
+		this.payloadOffset = payloadOffset;
+		this.payloadLength = payloadLength;
+	}
+
+	/**
+	 * Build radiotap data reading payload in place from a heap or direct
+	 * buffer (buffer position is left untouched)
+	 * 
+	 * @param buffer
+	 *            buffer containing the radiotap payload
+	 * @param payloadOffset
+	 *            absolute position of the first byte following it_present
+	 *            fields
+	 * @param payloadLength
+	 *            number of payload bytes
+	 */
+	public RadioTapData(ByteBuffer buffer, int payloadOffset, int payloadLength) {
+		if (buffer.hasArray()) {
+			this.frame = buffer.array();
+			this.payloadOffset = buffer.arrayOffset() + payloadOffset;
+		} else {
+			this.buffer = buffer;
+			this.payloadOffset = payloadOffset;
+		}
+		this.payloadLength = payloadLength;
+	}
+
+	/**
+	 * Check that a field is inside payload
+	 * 
+	 * @param index
+	 *            position relative to payload start
+	 * @param length
+	 *            field length
+	 * @return absolute position of field
+	 */
+	private int checkField(int index, int length) {
+		if (index < 0 || index + length > payloadLength) {
+			throw new IndexOutOfBoundsException("radiotap field exceeds payload length");
+		}
+		return payloadOffset + index;
+	}
+
+	private byte getByte(int index) {
+		int position = checkField(index, 1);
+		if (frame != null) {
+			return (byte) LittleEndianReader.readUInt8(frame, position);
+		}
+		return (byte) LittleEndianReader.readUInt8(buffer, position);
+	}
+
+	private int getUInt16(int index) {
+		int position = checkField(index, 2);
+		if (frame != null) {
+			return LittleEndianReader.readUInt16(frame, position);
+		}
+		return LittleEndianReader.readUInt16(buffer, position);
+	}
+
+	private int getInt32(int index) {
+		int position = checkField(index, 4);
+		if (frame != null) {
+			return LittleEndianReader.readInt32(frame, position);
+		}
+		return LittleEndianReader.readInt32(buffer, position);
+	}
+
+	private long getUInt64(int index) {
+		int position = checkField(index, 8);
+		if (frame != null) {
+			return LittleEndianReader.readUInt64(frame, position);
+		}
+		return LittleEndianReader.readUInt64(buffer, position);
+	}
+
+	/**
+	 * Set field positions of the frame this data is decoded from
+	 * 
+	 * @param layout
+	 */
+	public void setLayout(RadioTapLayout layout) {
+		this.layout = layout;
+	}
+
+	/**
+	 * Decode now a list of fields located by layout
+	 * 
+	 * @param fields
+	 *            bitmask of fields to decode
+	 */
+	public void decodeFields(int fields) {
+		while (fields != 0) {
+			int index = Integer.numberOfTrailingZeros(fields);
+			fields &= fields - 1;
+			decodeField(index);
+		}
+	}
+
+	/**
+	 * Defer decoding of a list of fields located by layout until they are
+	 * retrieved. Frame content must not be modified until then.
+	 * 
+	 * @param fields
+	 *            bitmask of fields to decode on demand
+	 */
+	public void setPendingFields(int fields) {
+		this.pendingFields = fields;
+	}
+
+	/**
+	 * Decode a field if its decoding has been deferred
+	 * 
+	 * @param index
+	 *            field bit position
+	 */
+	private void decodePending(int index) {
+		if ((pendingFields & (1 << index)) != 0) {
+			pendingFields &= ~(1 << index);
+			decodeField(index);
+		}
+	}
+
+	/**
+	 * Decode a field located by layout
+	 * 
+	 * @param index
+	 *            field bit position
+	 */
+	private void decodeField(int index) {
+		currentIndex = layout.getFieldOffset(index) - layout.getPayloadOffset();
+
+		switch (index) {
+		case RadioTapFlags.INDEX_TFST:
+			setTFST();
+			break;
+		case RadioTapFlags.INDEX_FLAGS:
+			setFlags();
+			break;
+		case RadioTapFlags.INDEX_DATA_RATE:
+			setDataRate();
+			break;
+		case RadioTapFlags.INDEX_CHANNEL:
+			setChannel();
+			break;
+		case RadioTapFlags.INDEX_FHSS:
+			setFHSS();
+			break;
+		case RadioTapFlags.INDEX_DBM_ANT_SIGNAL:
+			setDBMAntSignal();
+			break;
+		case RadioTapFlags.INDEX_DBM_ANT_NOISE:
+			setDBMAntNoise();
+			break;
+		case RadioTapFlags.INDEX_LOCK_QUALITY:
+			setLockQuality();
+			break;
+		case RadioTapFlags.INDEX_TX_ATTENUATION:
+			setTxAttenuation();
+			break;
+		case RadioTapFlags.INDEX_DB_TX_ATTENUATION:
+			setDbTxAttenuation();
+			break;
+		case RadioTapFlags.INDEX_DBM_TX_POWER:
+			setDbmTxPower();
+			break;
+		case RadioTapFlags.INDEX_ANTENNA:
+			setAntenna();
+			break;
+		case RadioTapFlags.INDEX_DB_ANTENNA_SIGNAL:
+			setDbAntennaSignal();
+			break;
+		case RadioTapFlags.INDEX_DB_ANTENNA_NOISE:
+			setDbAntennaNoise();
+			break;
+		case RadioTapFlags.INDEX_RX_FLAGS:
+			setRxFlags();
+			break;
+		case RadioTapFlags.INDEX_MCS:
+			setMcs();
+			break;
+		case RadioTapFlags.INDEX_AMPDU:
+			setAmpduStatus();
+			break;
+		case RadioTapFlags.INDEX_VHT:
+			setVHT();
+			break;
+		}
 	}
 
 	/**
 	 * TFST is the first 8 bytes
 	 */
 	public void setTFST() {
-		this.TFST = ByteUtils.convertByteArrayToLong(ByteUtils.convertLeToBe(Arrays.copyOfRange(payload, currentIndex, currentIndex+4)));
-		currentIndex = currentIndex + 4;
+		this.TFST = getUInt64(currentIndex);
+		currentIndex = currentIndex + 8;
 	}
 
 	public void setFlags() {
-		this.flags = payload[currentIndex];
-		// this is strange but a bit is added in Radiotap when flags is added
-		// without data rate following
-		currentIndex = currentIndex + 2;
-		flagsFieldDefined = true;
+		this.flags = getByte(currentIndex);
+		currentIndex++;
 	}
 
 	public void setDataRate() {
-		if (flagsFieldDefined) {
-			currentIndex = currentIndex - 1;
-		}
-		this.dataRate = (payload[currentIndex] & 0xFF) * 500;
+		this.dataRate = (getByte(currentIndex) & 0xFF) * 500;
 		currentIndex++;
 	}
 
 	public void setChannel() {
-		byte[] frequency = ByteUtils.convertLeToBe(Arrays.copyOfRange(payload, currentIndex, currentIndex+2));
-		byte[] bitmask = ByteUtils.convertLeToBe(Arrays.copyOfRange(payload, currentIndex+2, currentIndex+4));
-		this.channel = new RadioTapChannel(frequency,bitmask);
+		this.channel = RadioTapChannel.valueOf(getUInt16(currentIndex), getUInt16(currentIndex + 2));
 		
 		currentIndex = currentIndex + 4;
 	}
 
 	public void setFHSS() {
-		this.FHSS = payload[currentIndex];
-		// pattern can be extracted as an additionnal byte
+		this.FHSS = getByte(currentIndex);
+		this.fhssPattern = getByte(currentIndex + 1);
 		currentIndex = currentIndex + 2;
 	}
 
 	public void setDBMAntSignal() {
-		dbmAntSignal = payload[currentIndex];
+		dbmAntSignal = getByte(currentIndex);
 		currentIndex++;
 	}
 
 	public void setDBMAntNoise() {
-		dbmAntNoise = payload[currentIndex];
+		dbmAntNoise = getByte(currentIndex);
 		currentIndex++;
 	}
 
 	public void setLockQuality() {
-		lockQuality = ByteUtils.convertByteArrayToInt(ByteUtils.convertLeToBe(Arrays.copyOfRange(payload, currentIndex, currentIndex+2)));
+		lockQuality = getUInt16(currentIndex);
 		currentIndex = currentIndex + 2;
 	}
 
 	public void setTxAttenuation() {
-		txAttenuation = ByteUtils.convertByteArrayToInt(ByteUtils.convertLeToBe(Arrays.copyOfRange(payload, currentIndex, currentIndex+2)));
+		txAttenuation = getUInt16(currentIndex);
 		currentIndex = currentIndex + 2;
 	}
 
 	public void setDbTxAttenuation() {
-		dbTxAttenuation = ByteUtils.convertByteArrayToInt(ByteUtils.convertLeToBe(Arrays.copyOfRange(payload, currentIndex, currentIndex+2)));
+		dbTxAttenuation = getUInt16(currentIndex);
 		currentIndex = currentIndex + 2;
 	}
 
 	public void setDbmTxPower() {
-		dbmTxPower = payload[currentIndex];
+		dbmTxPower = getByte(currentIndex);
 		currentIndex++;
 	}
 
 	public void setAntenna() {
-		antenna = payload[currentIndex];
+		antenna = getByte(currentIndex);
 		currentIndex++;
 	}
 
 	public void setDbAntennaSignal() {
-		dbAntennaSignal = payload[currentIndex];
+		dbAntennaSignal = getByte(currentIndex);
 		currentIndex++;
 	}
 
 	public void setDbAntennaNoise() {
-		dbAntennaNoise = payload[currentIndex];
+		dbAntennaNoise = getByte(currentIndex);
 		currentIndex++;
 	}
 
 	public void setRxFlags() {
-		rxFlags = ByteUtils.convertLeToBe(Arrays.copyOfRange(payload, currentIndex, currentIndex+2));
-		if (rxFlags[1]==0x02)
+		rxFlags = getUInt16(currentIndex);
+		if ((rxFlags & 0x02) != 0)
 		{
 			isPlcpCrcErrors=true;
 		}
@@ -244,35 +462,51 @@ public class RadioTapData implements IRadiotapData{
 	}
 
 	public void setMcs() {
-		mcs = new RadioTapMCS(payload[currentIndex + 2], payload[currentIndex + 1],payload[currentIndex]);
+		mcs = new RadioTapMCS(getByte(currentIndex), getByte(currentIndex + 1), getByte(currentIndex + 2));
 		currentIndex = currentIndex + 3;
 	}
 
 	public void setAmpduStatus() {
-		System.out.println("AMPDU status received... Not treating...");
+		ampdu = new RadioTapAMPDU(getInt32(currentIndex), getUInt16(currentIndex + 4), getByte(currentIndex + 6));
 		currentIndex = currentIndex + 8;
 	}
 
 	public void setVHT() {
-		vht = new RadioTapVHT(new byte[] { payload[currentIndex + 1],
-				payload[currentIndex] }, payload[currentIndex + 2],
-				payload[currentIndex + 3], payload[currentIndex + 4],
-				payload[currentIndex + 5], payload[currentIndex + 6],
-				new byte[] { payload[currentIndex + 8],
-						payload[currentIndex + 7] });
-		currentIndex = currentIndex + 9;
+		vht = new RadioTapVHT(getUInt16(currentIndex), getByte(currentIndex + 2),
+				getByte(currentIndex + 3), getInt32(currentIndex + 4),
+				getByte(currentIndex + 8), getByte(currentIndex + 9),
+				getUInt16(currentIndex + 10));
+		currentIndex = currentIndex + 12;
 	}
 
 	public void setPayload(byte[] payload) {
 		this.payload = payload;
+		this.frame = payload;
+		this.buffer = null;
+		this.payloadOffset = 0;
+		this.payloadLength = payload.length;
 	}
 
+	/**
+	 * Payload is copied out of the frame only when requested
+	 */
 	@Override
 	public byte[] getPayload() {
+		if (payload == null) {
+			payload = new byte[payloadLength];
+			if (frame != null) {
+				System.arraycopy(frame, payloadOffset, payload, 0, payloadLength);
+			} else {
+				for (int i = 0; i < payloadLength; i++) {
+					payload[i] = buffer.get(payloadOffset + i);
+				}
+			}
+		}
 		return payload;
 	}
 	@Override
-	public Long getTFST() {
+	public long getTFST() {
+		decodePending(RadioTapFlags.INDEX_TFST);
 		return TFST;
 	}
 
@@ -285,34 +519,52 @@ public class RadioTapData implements IRadiotapData{
 	}
 	@Override
 	public int getFlags() {
+		decodePending(RadioTapFlags.INDEX_FLAGS);
 		return flags;
 	}
 	@Override
 	public int getDataRate() {
+		decodePending(RadioTapFlags.INDEX_DATA_RATE);
 		return dataRate;
 	}
 	@Override
 	public IRadiotapChannel getChannel() {
+		decodePending(RadioTapFlags.INDEX_CHANNEL);
 		return channel;
 	}
 	@Override
 	public byte getFHSS() {
+		decodePending(RadioTapFlags.INDEX_FHSS);
 		return FHSS;
 	}
+
+	/**
+	 * FHSS hop pattern (getFHSS() being the hop set)
+	 * 
+	 * @return
+	 */
+	public byte getFhssPattern() {
+		decodePending(RadioTapFlags.INDEX_FHSS);
+		return fhssPattern;
+	}
 	@Override
 	public byte getDbmAntSignal() {
+		decodePending(RadioTapFlags.INDEX_DBM_ANT_SIGNAL);
 		return dbmAntSignal;
 	}
 	@Override
 	public byte getDbmAntNoise() {
+		decodePending(RadioTapFlags.INDEX_DBM_ANT_NOISE);
 		return dbmAntNoise;
 	}
 	@Override
 	public int getLockQuality() {
+		decodePending(RadioTapFlags.INDEX_LOCK_QUALITY);
 		return lockQuality;
 	}
 	@Override
 	public int getDbTxAttenuation() {
+		decodePending(RadioTapFlags.INDEX_DB_TX_ATTENUATION);
 		return dbTxAttenuation;
 	}
 
@@ -321,42 +573,61 @@ public class RadioTapData implements IRadiotapData{
 	}
 	@Override
 	public byte getDbmTxPower() {
+		decodePending(RadioTapFlags.INDEX_DBM_TX_POWER);
 		return dbmTxPower;
 	}
 	@Override
 	public byte getAntenna() {
+		decodePending(RadioTapFlags.INDEX_ANTENNA);
 		return antenna;
 	}
 	@Override
 	public byte getDbAntennaSignal() {
+		decodePending(RadioTapFlags.INDEX_DB_ANTENNA_SIGNAL);
 		return dbAntennaSignal;
 	}
 	@Override
 	public byte getDbAntennaNoise() {
+		decodePending(RadioTapFlags.INDEX_DB_ANTENNA_NOISE);
 		return dbAntennaNoise;
 	}
 
 	@Override
 	public RadioTapMCS getMcs() {
+		decodePending(RadioTapFlags.INDEX_MCS);
 		return mcs;
 	}
 	@Override
 	public RadioTapVHT getVht() {
+		decodePending(RadioTapFlags.INDEX_VHT);
 		return vht;
 	}
-
-	public void setFlagsFieldDefined(boolean flagsFieldDefined) {
-		this.flagsFieldDefined = flagsFieldDefined;
+	@Override
+	public RadioTapAMPDU getAmpdu() {
+		decodePending(RadioTapFlags.INDEX_AMPDU);
+		return ampdu;
 	}
 
 	@Override
 	public int getTxAttenuation() {
+		decodePending(RadioTapFlags.INDEX_TX_ATTENUATION);
 		return txAttenuation;
 	}
 
 	@Override
 	public boolean isPlcpCrcErrors() {
+		decodePending(RadioTapFlags.INDEX_RX_FLAGS);
 		return isPlcpCrcErrors;
 	}
 
+	/**
+	 * 16 bit rx flags
+	 * 
+	 * @return rx flags (0 if absent)
+	 */
+	public int getRxFlags() {
+		decodePending(RadioTapFlags.INDEX_RX_FLAGS);
+		return rxFlags;
+	}
+
 }
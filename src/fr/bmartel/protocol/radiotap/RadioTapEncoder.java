@@ -0,0 +1,630 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.protocol.radiotap;
+
+import java.nio.ByteBuffer;
+
+import fr.bmartel.protocol.radiotap.inter.IRadioTapFrame;
+import fr.bmartel.protocol.radiotap.inter.IRadiotapData;
+import fr.bmartel.protocol.radiotap.inter.IRadiotapFlags;
+import fr.bmartel.protocol.radiotap.inter.IRadiotapPackedData;
+
+/**
+ * Write radiotap headers into a caller supplied buffer : present bitmap,
+ * field alignment and it_len are computed from fields set on this
+ * encoder.<br/>
+ * 
+ * An encoder is reused from one frame to another, field values being kept
+ * in primitive fields so that encoding a header does not allocate any
+ * object. Only standard fields of the first namespace decoded by RadioTap
+ * are supported, a header written by encode() being decoded back to the
+ * same values.<br/>
+ * 
+ * An encoder is not thread safe.
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class RadioTapEncoder {
+
+	/** radiotap header version written by this encoder */
+	public final static int VERSION = 0;
+
+	/** version, pad, it_len and a single it_present word */
+	public final static int HEADER_LENGTH = 8;
+
+	/** fields this encoder can write (bit position from RadioTapFlags.INDEX_*) */
+	public final static int SUPPORTED_FIELDS = RadioTapCompactFrame.RETAINED_FIELDS;
+
+	/** fields set on this encoder */
+	private int present = 0;
+
+	/** header length for current fields (-1 when fields have changed) */
+	private int length = HEADER_LENGTH;
+
+	private long tsft;
+
+	private int flags;
+
+	/** data rate in 500kbps unit */
+	private int rate;
+
+	private int frequency;
+
+	private int channelFlags;
+
+	/** hop set (bits 0-7), hop pattern (bits 8-15) */
+	private int fhss;
+
+	private int dbmAntSignal;
+
+	private int dbmAntNoise;
+
+	private int lockQuality;
+
+	private int txAttenuation;
+
+	private int dbTxAttenuation;
+
+	private int dbmTxPower;
+
+	private int antenna;
+
+	private int dbAntennaSignal;
+
+	private int dbAntennaNoise;
+
+	private int rxFlags;
+
+	/** MCS field packed (see RadioTapMCS.pack()) */
+	private int mcs;
+
+	private int ampduReference;
+
+	/** flags (bits 0-15), delimiter CRC (bits 16-23) */
+	private int ampduStatus;
+
+	/** VHT field packed (see RadioTapVHT) */
+	private long vht;
+
+	private int vhtExt;
+
+	/**
+	 * Remove all fields
+	 * 
+	 * @return this encoder
+	 */
+	public RadioTapEncoder clear() {
+		present = 0;
+		length = HEADER_LENGTH;
+		return this;
+	}
+
+	/**
+	 * Remove a field
+	 * 
+	 * @param index
+	 *            field bit position (RadioTapFlags.INDEX_*)
+	 * @return this encoder
+	 */
+	public RadioTapEncoder remove(int index) {
+		present &= ~(1 << index);
+		length = -1;
+		return this;
+	}
+
+	/**
+	 * Replace all fields with fields of a decoded frame (RadioTap,
+	 * RadioTapCursor or RadioTapCompactFrame)
+	 * 
+	 * Rx flags and FHSS hop pattern, not exposed by IRadiotapData, are copied
+	 * from RadioTap and RadioTapCursor (compact frames keep rx flags but not
+	 * hop pattern), other frames giving only PLCP CRC error bit and a 0 hop
+	 * pattern. Frames implementing
+	 * IRadiotapPackedData are copied without building any MCS, VHT or A-MPDU
+	 * object.
+	 * 
+	 * @param frame
+	 *            decoded frame
+	 * @return this encoder
+	 */
+	public RadioTapEncoder set(IRadioTapFrame frame) {
+		IRadiotapFlags flagList = frame.getRadioTapFlagList();
+		IRadiotapData data = frame.getRadioTapData();
+
+		clear();
+		if (flagList.isTFST()) {
+			setTsft(data.getTFST());
+		}
+		if (flagList.isFlags()) {
+			setFlags(data.getFlags());
+		}
+		if (flagList.isDataRate()) {
+			setDataRate(data.getDataRate());
+		}
+		if (flagList.isChannel() && data.getChannel() != null) {
+			setChannel(data.getChannel().getFrequency(), RadioTapCompactFrame.channelFlags(data.getChannel()));
+		}
+		if (flagList.isFHSS()) {
+			setFhss(data.getFHSS(), fhssPattern(data));
+		}
+		if (flagList.isDbmAntSignal()) {
+			setDbmAntSignal(data.getDbmAntSignal());
+		}
+		if (flagList.isDbmAntNoise()) {
+			setDbmAntNoise(data.getDbmAntNoise());
+		}
+		if (flagList.isLockQuality()) {
+			setLockQuality(data.getLockQuality());
+		}
+		if (flagList.isTxAttenuation()) {
+			setTxAttenuation(data.getTxAttenuation());
+		}
+		if (flagList.isDbTxAttenuation()) {
+			setDbTxAttenuation(data.getDbTxAttenuation());
+		}
+		if (flagList.isDbmTxPower()) {
+			setDbmTxPower(data.getDbmTxPower());
+		}
+		if (flagList.isAntenna()) {
+			setAntenna(data.getAntenna());
+		}
+		if (flagList.isDbAntennaSignal()) {
+			setDbAntennaSignal(data.getDbAntennaSignal());
+		}
+		if (flagList.isDbAntennaNoise()) {
+			setDbAntennaNoise(data.getDbAntennaNoise());
+		}
+		if (flagList.isRxFlags()) {
+			setRxFlags(RadioTapCompactFrame.rxFlags(data));
+		}
+		if (data instanceof IRadiotapPackedData) {
+			IRadiotapPackedData packed = (IRadiotapPackedData) data;
+			if (flagList.isMcs()) {
+				setMcs(packed.getMcsPacked());
+			}
+			if (flagList.isAmpdu()) {
+				setAmpdu(packed.getAmpduReference(), packed.getAmpduFlags(), packed.getAmpduDelimiterCrc());
+			}
+			if (flagList.isVht()) {
+				setVht(packed.getVhtPacked(), packed.getVhtPackedExt());
+			}
+			return this;
+		}
+		if (flagList.isMcs() && data.getMcs() != null) {
+			setMcs(data.getMcs());
+		}
+		if (flagList.isAmpdu() && data.getAmpdu() != null) {
+			setAmpdu(data.getAmpdu());
+		}
+		if (flagList.isVht() && data.getVht() != null) {
+			setVht(data.getVht());
+		}
+		return this;
+	}
+
+	/**
+	 * Hop pattern of RadioTap and RadioTapCursor, not exposed by IRadiotapData
+	 */
+	private static int fhssPattern(IRadiotapData data) {
+		if (data instanceof RadioTapCursor) {
+			return ((RadioTapCursor) data).getFhssPattern();
+		}
+		if (data instanceof RadioTapData) {
+			return ((RadioTapData) data).getFhssPattern();
+		}
+		return 0;
+	}
+
+	private void add(int index) {
+		if ((present & (1 << index)) == 0) {
+			present |= 1 << index;
+			length = -1;
+		}
+	}
+
+	/**
+	 * Fields set on this encoder
+	 * 
+	 * @return bitmask of RadioTapFlags.INDEX_* positions
+	 */
+	public int getPresentFlags() {
+		return present;
+	}
+
+	public RadioTapEncoder setTsft(long tsft) {
+		this.tsft = tsft;
+		add(RadioTapFlags.INDEX_TFST);
+		return this;
+	}
+
+	public RadioTapEncoder setFlags(int flags) {
+		this.flags = flags;
+		add(RadioTapFlags.INDEX_FLAGS);
+		return this;
+	}
+
+	/**
+	 * Set legacy data rate
+	 * 
+	 * @param dataRate
+	 *            data rate in kbps (as returned by getDataRate())
+	 * @return this encoder
+	 */
+	public RadioTapEncoder setDataRate(int dataRate) {
+		this.rate = dataRate / 500;
+		add(RadioTapFlags.INDEX_DATA_RATE);
+		return this;
+	}
+
+	/**
+	 * Set channel
+	 * 
+	 * @param frequency
+	 *            frequency in MHz
+	 * @param channelFlags
+	 *            see RadioTapChannel.FLAG_*
+	 * @return this encoder
+	 */
+	public RadioTapEncoder setChannel(int frequency, int channelFlags) {
+		this.frequency = frequency;
+		this.channelFlags = channelFlags;
+		add(RadioTapFlags.INDEX_CHANNEL);
+		return this;
+	}
+
+	public RadioTapEncoder setFhss(int hopSet, int hopPattern) {
+		this.fhss = (hopSet & 0xFF) | ((hopPattern & 0xFF) << 8);
+		add(RadioTapFlags.INDEX_FHSS);
+		return this;
+	}
+
+	public RadioTapEncoder setDbmAntSignal(int dbmAntSignal) {
+		this.dbmAntSignal = dbmAntSignal;
+		add(RadioTapFlags.INDEX_DBM_ANT_SIGNAL);
+		return this;
+	}
+
+	public RadioTapEncoder setDbmAntNoise(int dbmAntNoise) {
+		this.dbmAntNoise = dbmAntNoise;
+		add(RadioTapFlags.INDEX_DBM_ANT_NOISE);
+		return this;
+	}
+
+	public RadioTapEncoder setLockQuality(int lockQuality) {
+		this.lockQuality = lockQuality;
+		add(RadioTapFlags.INDEX_LOCK_QUALITY);
+		return this;
+	}
+
+	public RadioTapEncoder setTxAttenuation(int txAttenuation) {
+		this.txAttenuation = txAttenuation;
+		add(RadioTapFlags.INDEX_TX_ATTENUATION);
+		return this;
+	}
+
+	public RadioTapEncoder setDbTxAttenuation(int dbTxAttenuation) {
+		this.dbTxAttenuation = dbTxAttenuation;
+		add(RadioTapFlags.INDEX_DB_TX_ATTENUATION);
+		return this;
+	}
+
+	public RadioTapEncoder setDbmTxPower(int dbmTxPower) {
+		this.dbmTxPower = dbmTxPower;
+		add(RadioTapFlags.INDEX_DBM_TX_POWER);
+		return this;
+	}
+
+	public RadioTapEncoder setAntenna(int antenna) {
+		this.antenna = antenna;
+		add(RadioTapFlags.INDEX_ANTENNA);
+		return this;
+	}
+
+	public RadioTapEncoder setDbAntennaSignal(int dbAntennaSignal) {
+		this.dbAntennaSignal = dbAntennaSignal;
+		add(RadioTapFlags.INDEX_DB_ANTENNA_SIGNAL);
+		return this;
+	}
+
+	public RadioTapEncoder setDbAntennaNoise(int dbAntennaNoise) {
+		this.dbAntennaNoise = dbAntennaNoise;
+		add(RadioTapFlags.INDEX_DB_ANTENNA_NOISE);
+		return this;
+	}
+
+	/**
+	 * Set rx flags
+	 * 
+	 * @param rxFlags
+	 *            rx flags bitmask (0x02 : PLCP CRC check failed)
+	 * @return this encoder
+	 */
+	public RadioTapEncoder setRxFlags(int rxFlags) {
+		this.rxFlags = rxFlags;
+		add(RadioTapFlags.INDEX_RX_FLAGS);
+		return this;
+	}
+
+	/**
+	 * Set MCS field
+	 * 
+	 * @param packed
+	 *            known, flags and mcs bytes packed with RadioTapMCS.pack()
+	 * @return this encoder
+	 */
+	public RadioTapEncoder setMcs(int packed) {
+		this.mcs = packed;
+		add(RadioTapFlags.INDEX_MCS);
+		return this;
+	}
+
+	public RadioTapEncoder setMcs(RadioTapMCS mcs) {
+		return setMcs(mcs.getPacked());
+	}
+
+	/**
+	 * Set A-MPDU status
+	 * 
+	 * @param reference
+	 *            reference number
+	 * @param flags
+	 *            see RadioTapAMPDU.FLAG_*
+	 * @param delimiterCrc
+	 *            delimiter CRC value
+	 * @return this encoder
+	 */
+	public RadioTapEncoder setAmpdu(int reference, int flags, int delimiterCrc) {
+		this.ampduReference = reference;
+		this.ampduStatus = (flags & 0xFFFF) | ((delimiterCrc & 0xFF) << 16);
+		add(RadioTapFlags.INDEX_AMPDU);
+		return this;
+	}
+
+	public RadioTapEncoder setAmpdu(RadioTapAMPDU ampdu) {
+		return setAmpdu(ampdu.getReference(), ampdu.getFlags(), ampdu.getDelimiterCrc());
+	}
+
+	/**
+	 * Set VHT field
+	 * 
+	 * @param packed
+	 *            see RadioTapVHT.getPacked()
+	 * @param packedExt
+	 *            see RadioTapVHT.getPackedExt()
+	 * @return this encoder
+	 */
+	public RadioTapEncoder setVht(long packed, int packedExt) {
+		this.vht = packed;
+		this.vhtExt = packedExt;
+		add(RadioTapFlags.INDEX_VHT);
+		return this;
+	}
+
+	public RadioTapEncoder setVht(RadioTapVHT vht) {
+		return setVht(vht.getPacked(), vht.getPackedExt());
+	}
+
+	/**
+	 * Length of the header written by encode() for current fields (it_len)
+	 * 
+	 * @return
+	 */
+	public int getLength() {
+		if (length < 0) {
+			int position = HEADER_LENGTH;
+			int fields = present;
+			while (fields != 0) {
+				int index = Integer.numberOfTrailingZeros(fields);
+				fields &= fields - 1;
+				int align = RadioTapFlags.FIELD_ALIGN[index];
+				position = (position + align - 1) & -align;
+				position += RadioTapFlags.FIELD_SIZE[index];
+			}
+			length = position;
+		}
+		return length;
+	}
+
+	/**
+	 * Write radiotap header
+	 * 
+	 * @param array
+	 *            destination array
+	 * @param offset
+	 *            offset of the header in array
+	 * @return number of bytes written (it_len)
+	 * @throws IndexOutOfBoundsException
+	 *             if header does not fit in array
+	 */
+	public int encode(byte[] array, int offset) {
+		int headerLength = getLength();
+		if (offset < 0 || offset > array.length - headerLength) {
+			throw new IndexOutOfBoundsException("radiotap header of " + headerLength + " bytes does not fit at offset "
+					+ offset);
+		}
+		array[offset] = VERSION;
+		array[offset + 1] = 0;
+		putUInt16(array, offset + 2, headerLength);
+		putUInt32(array, offset + 4, present);
+
+		int position = HEADER_LENGTH;
+		int fields = present;
+		while (fields != 0) {
+			int index = Integer.numberOfTrailingZeros(fields);
+			fields &= fields - 1;
+			int align = RadioTapFlags.FIELD_ALIGN[index];
+			while ((position & (align - 1)) != 0) {
+				array[offset + position++] = 0;
+			}
+			putField(array, offset + position, index);
+			position += RadioTapFlags.FIELD_SIZE[index];
+		}
+		return headerLength;
+	}
+
+	/**
+	 * Write radiotap header at an absolute position of a buffer (buffer
+	 * position is not modified)
+	 * 
+	 * @param buffer
+	 *            destination buffer (heap or direct)
+	 * @param offset
+	 *            absolute offset of the header in buffer
+	 * @return number of bytes written (it_len)
+	 * @throws IndexOutOfBoundsException
+	 *             if header does not fit before buffer limit
+	 */
+	public int encode(ByteBuffer buffer, int offset) {
+		int headerLength = getLength();
+		if (offset < 0 || offset > buffer.limit() - headerLength) {
+			throw new IndexOutOfBoundsException("radiotap header of " + headerLength + " bytes does not fit at offset "
+					+ offset);
+		}
+		if (buffer.hasArray()) {
+			return encode(buffer.array(), buffer.arrayOffset() + offset);
+		}
+		buffer.put(offset, (byte) VERSION);
+		buffer.put(offset + 1, (byte) 0);
+		putUInt16(buffer, offset + 2, headerLength);
+		putUInt32(buffer, offset + 4, present);
+
+		int position = HEADER_LENGTH;
+		int fields = present;
+		while (fields != 0) {
+			int index = Integer.numberOfTrailingZeros(fields);
+			fields &= fields - 1;
+			int align = RadioTapFlags.FIELD_ALIGN[index];
+			while ((position & (align - 1)) != 0) {
+				buffer.put(offset + position++, (byte) 0);
+			}
+			putField(buffer, offset + position, index);
+			position += RadioTapFlags.FIELD_SIZE[index];
+		}
+		return headerLength;
+	}
+
+	/**
+	 * Value of a field as little endian bytes (VHT mcs_nss and A-MPDU are
+	 * written by caller as they do not fit in a long)
+	 */
+	private long fieldValue(int index) {
+		switch (index) {
+		case RadioTapFlags.INDEX_TFST:
+			return tsft;
+		case RadioTapFlags.INDEX_FLAGS:
+			return flags;
+		case RadioTapFlags.INDEX_DATA_RATE:
+			return rate;
+		case RadioTapFlags.INDEX_CHANNEL:
+			return (frequency & 0xFFFFL) | ((channelFlags & 0xFFFFL) << 16);
+		case RadioTapFlags.INDEX_FHSS:
+			return fhss;
+		case RadioTapFlags.INDEX_DBM_ANT_SIGNAL:
+			return dbmAntSignal;
+		case RadioTapFlags.INDEX_DBM_ANT_NOISE:
+			return dbmAntNoise;
+		case RadioTapFlags.INDEX_LOCK_QUALITY:
+			return lockQuality;
+		case RadioTapFlags.INDEX_TX_ATTENUATION:
+			return txAttenuation;
+		case RadioTapFlags.INDEX_DB_TX_ATTENUATION:
+			return dbTxAttenuation;
+		case RadioTapFlags.INDEX_DBM_TX_POWER:
+			return dbmTxPower;
+		case RadioTapFlags.INDEX_ANTENNA:
+			return antenna;
+		case RadioTapFlags.INDEX_DB_ANTENNA_SIGNAL:
+			return dbAntennaSignal;
+		case RadioTapFlags.INDEX_DB_ANTENNA_NOISE:
+			return dbAntennaNoise;
+		case RadioTapFlags.INDEX_RX_FLAGS:
+			return rxFlags;
+		case RadioTapFlags.INDEX_MCS:
+			return mcs;
+		case RadioTapFlags.INDEX_AMPDU:
+			return (ampduReference & 0xFFFFFFFFL) | ((ampduStatus & 0xFFFFFFL) << 32);
+		case RadioTapFlags.INDEX_VHT:
+			// known, flags, bandwidth then mcs_nss of user 0 to 3
+			return vht;
+		default:
+			return 0;
+		}
+	}
+
+	private void putField(byte[] array, int position, int index) {
+		int size = RadioTapFlags.FIELD_SIZE[index];
+		long value = fieldValue(index);
+		if (index == RadioTapFlags.INDEX_VHT) {
+			putUInt32(array, position + 8, vhtExt);
+			size = 8;
+		} else if (index == RadioTapFlags.INDEX_AMPDU) {
+			// reserved byte
+			array[position + 7] = 0;
+			size = 7;
+		}
+		for (int i = 0; i < size; i++) {
+			array[position + i] = (byte) (value >>> (8 * i));
+		}
+	}
+
+	private void putField(ByteBuffer buffer, int position, int index) {
+		int size = RadioTapFlags.FIELD_SIZE[index];
+		long value = fieldValue(index);
+		if (index == RadioTapFlags.INDEX_VHT) {
+			putUInt32(buffer, position + 8, vhtExt);
+			size = 8;
+		} else if (index == RadioTapFlags.INDEX_AMPDU) {
+			buffer.put(position + 7, (byte) 0);
+			size = 7;
+		}
+		for (int i = 0; i < size; i++) {
+			buffer.put(position + i, (byte) (value >>> (8 * i)));
+		}
+	}
+
+	private static void putUInt16(byte[] array, int position, int value) {
+		array[position] = (byte) value;
+		array[position + 1] = (byte) (value >>> 8);
+	}
+
+	private static void putUInt32(byte[] array, int position, int value) {
+		array[position] = (byte) value;
+		array[position + 1] = (byte) (value >>> 8);
+		array[position + 2] = (byte) (value >>> 16);
+		array[position + 3] = (byte) (value >>> 24);
+	}
+
+	private static void putUInt16(ByteBuffer buffer, int position, int value) {
+		buffer.put(position, (byte) value);
+		buffer.put(position + 1, (byte) (value >>> 8));
+	}
+
+	private static void putUInt32(ByteBuffer buffer, int position, int value) {
+		buffer.put(position, (byte) value);
+		buffer.put(position + 1, (byte) (value >>> 8));
+		buffer.put(position + 2, (byte) (value >>> 16));
+		buffer.put(position + 3, (byte) (value >>> 24));
+	}
+}
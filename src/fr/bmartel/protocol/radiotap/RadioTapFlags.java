@@ -33,6 +33,41 @@ public class RadioTapFlags implements IRadiotapFlags {
 	public final static byte INDEX_AMPDU = 0x14;
 	public final static byte INDEX_VHT = 0x15;
 
+	/** bitmask selecting all fields for decoding */
+	public final static int ALL_FIELDS = 0xFFFFFFFF;
+
+	/* fields not decoded into radiotap data but needed to locate the others */
+	public final static byte INDEX_TX_FLAGS = 0x0F;
+	public final static byte INDEX_RTS_RETRIES = 0x10;
+	public final static byte INDEX_DATA_RETRIES = 0x11;
+	public final static byte INDEX_XCHANNEL = 0x12;
+	public final static byte INDEX_TIMESTAMP = 0x16;
+	public final static byte INDEX_HE = 0x17;
+	public final static byte INDEX_HE_MU = 0x18;
+	public final static byte INDEX_HE_MU_OTHER_USER = 0x19;
+	public final static byte INDEX_ZERO_LENGTH_PSDU = 0x1A;
+	public final static byte INDEX_LSIG = 0x1B;
+	public final static byte INDEX_TLV = 0x1C;
+	public final static byte INDEX_RADIOTAP_NAMESPACE = 0x1D;
+	public final static byte INDEX_VENDOR_NAMESPACE = 0x1E;
+	public final static byte INDEX_EXT = 0x1F;
+
+	/**
+	 * size in bytes of each field data indexed by bit position (0 when field
+	 * has no data or has an unknown size)
+	 */
+	final static byte[] FIELD_SIZE = new byte[] { 8, 1, 1, 4, 2, 1, 1, 2,
+			2, 2, 1, 1, 1, 1, 2, 2, 1, 1, 8, 3, 8, 12, 12, 12, 12, 6, 1, 4,
+			0, 0, 6, 0 };
+
+	/**
+	 * natural alignment of each field data indexed by bit position (0 when
+	 * field has an unknown layout)
+	 */
+	final static byte[] FIELD_ALIGN = new byte[] { 8, 1, 1, 2, 1, 1, 1, 2,
+			2, 2, 1, 1, 1, 1, 2, 2, 1, 1, 4, 1, 4, 2, 8, 2, 2, 2, 1, 2, 0,
+			1, 2, 1 };
+
 	public boolean tfst = false;
 	public boolean flagsPres = false;
 	public boolean dataRate = false;
@@ -52,103 +87,152 @@ public class RadioTapFlags implements IRadiotapFlags {
 	public boolean ampdu = false;
 	public boolean vht = false;
 	
-	static byte[] radioTapList = new byte[] { INDEX_TFST, INDEX_FLAGS,
-			INDEX_DATA_RATE, INDEX_CHANNEL, INDEX_FHSS, INDEX_DBM_ANT_SIGNAL,
-			INDEX_DBM_ANT_NOISE, INDEX_LOCK_QUALITY, INDEX_TX_ATTENUATION,
-			INDEX_DB_TX_ATTENUATION, INDEX_DBM_TX_POWER, INDEX_ANTENNA,
-			INDEX_DB_ANTENNA_SIGNAL, INDEX_DB_ANTENNA_NOISE, INDEX_RX_FLAGS,
-			INDEX_MCS, INDEX_AMPDU, INDEX_VHT };
-
 	public RadioTapFlags() {
 	}
 
+	/**
+	 * Build a bitmask of fields to decode
+	 * 
+	 * @param indexes
+	 *            list of field bit positions (RadioTapFlags.INDEX_*)
+	 * @return field bitmask
+	 */
+	public static int mask(byte... indexes) {
+		int fieldMask = 0;
+		for (int i = 0; i < indexes.length; i++) {
+			fieldMask |= 1 << indexes[i];
+		}
+		return fieldMask;
+	}
+
 	/**
 	 * Decode from flags properties
 	 */
 	public RadioTapData decode(byte[] flags, byte[] payload) {
+		return decode(ByteUtils.convertByteArrayToInt(flags), new RadioTapData(payload));
+	}
+
+	/**
+	 * Decode from it_present value into a radiotap data reading its payload in
+	 * place
+	 * 
+	 * @param flagsTotal
+	 *            it_present bitmask
+	 * @param data
+	 *            radiotap data to fill
+	 * @return radiotap data filled
+	 */
+	public RadioTapData decode(int flagsTotal, RadioTapData data) {
+		return decode(RadioTapLayoutCache.getDefaultCache().getLayout(flagsTotal), data);
+	}
+
+	/**
+	 * Decode all fields located by a layout into a radiotap data reading its
+	 * payload in place
+	 * 
+	 * @param layout
+	 *            field positions for frame it_present bitmask
+	 * @param data
+	 *            radiotap data to fill
+	 * @return radiotap data filled
+	 */
+	public RadioTapData decode(RadioTapLayout layout, RadioTapData data) {
+		return decode(layout, data, ALL_FIELDS, false);
+	}
+
+	/**
+	 * Decode all fields located by a layout into a radiotap data reading its
+	 * payload in place
+	 * 
+	 * @param layout
+	 *            field positions for frame it_present bitmask
+	 * @param data
+	 *            radiotap data to fill
+	 * @param fieldMask
+	 *            bitmask of fields to decode, other fields are skipped and
+	 *            reported as absent
+	 * @param lazy
+	 *            only record field positions, each field being decoded the
+	 *            first time it is retrieved from radiotap data
+	 * @return radiotap data filled
+	 */
+	public RadioTapData decode(RadioTapLayout layout, RadioTapData data, int fieldMask, boolean lazy) {
+
+		int[] fieldOrder = layout.getFieldOrder();
+		int fields = 0;
+
+		for (int k = 0; k < fieldOrder.length; k++) {
 
-		int flagsTotal = ByteUtils.convertByteArrayToInt(flags);
-
-		RadioTapData data = new RadioTapData(payload);
-
-		for (int k = 0; k < radioTapList.length; k++) {
-
-			if ((flagsTotal & (1 << (radioTapList[k] & 0xFF))) != 0) {
-				switch (radioTapList[k]) {
-				case INDEX_TFST:
-					tfst=true;
-					data.setTFST();
-					break;
-				case INDEX_FLAGS:
-					this.flagsPres=true;
-					data.setFlags();
-					break;
-				case INDEX_DATA_RATE:
-					this.dataRate=true;
-					data.setDataRate();
-					break;
-				case INDEX_CHANNEL:
-					this.channel=true;
-					data.setChannel();
-					break;
-				case INDEX_FHSS:
-					this.fhss=true;
-					data.setFHSS();
-					break;
-				case INDEX_DBM_ANT_SIGNAL:
-					this.dbmAntSignal=true;
-					data.setDBMAntSignal();
-					break;
-				case INDEX_DBM_ANT_NOISE:
-					this.dbmAntNoise=true;
-					data.setDBMAntNoise();
-					break;
-				case INDEX_LOCK_QUALITY:
-					this.lockQuality=true;
-					data.setLockQuality();
-					break;
-				case INDEX_TX_ATTENUATION:
-					this.txAttenuation=true;
-					data.setTxAttenuation();
-					break;
-				case INDEX_DB_TX_ATTENUATION:
-					this.dbTxAttenuation=true;
-					data.setDbTxAttenuation();
-					break;
-				case INDEX_DBM_TX_POWER:
-					this.dbmTxPower=true;
-					data.setDbmTxPower();
-					break;
-				case INDEX_ANTENNA:
-					this.antenna=true;
-					data.setAntenna();
-					break;
-				case INDEX_DB_ANTENNA_SIGNAL:
-					this.dbAntennaSignal=true;
-					data.setDbAntennaSignal();
-					break;
-				case INDEX_DB_ANTENNA_NOISE:
-					this.dbAntennaNoise=true;
-					data.setDbAntennaNoise();
-					break;
-				case INDEX_RX_FLAGS:
-					this.rxFlags=true;
-					data.setRxFlags();
-					break;
-				case INDEX_MCS:
-					this.mcs=true;
-					data.setMcs();
-					break;
-				case INDEX_AMPDU:
-					this.ampdu=true;
-					data.setAmpduStatus();
-					break;
-				case INDEX_VHT:
-					this.vht=true;
-					data.setVHT();
-					break;
-				}
+			if ((fieldMask & (1 << fieldOrder[k])) == 0) {
+				continue;
 			}
+
+			switch (fieldOrder[k]) {
+			case INDEX_TFST:
+				this.tfst=true;
+				break;
+			case INDEX_FLAGS:
+				this.flagsPres=true;
+				break;
+			case INDEX_DATA_RATE:
+				this.dataRate=true;
+				break;
+			case INDEX_CHANNEL:
+				this.channel=true;
+				break;
+			case INDEX_FHSS:
+				this.fhss=true;
+				break;
+			case INDEX_DBM_ANT_SIGNAL:
+				this.dbmAntSignal=true;
+				break;
+			case INDEX_DBM_ANT_NOISE:
+				this.dbmAntNoise=true;
+				break;
+			case INDEX_LOCK_QUALITY:
+				this.lockQuality=true;
+				break;
+			case INDEX_TX_ATTENUATION:
+				this.txAttenuation=true;
+				break;
+			case INDEX_DB_TX_ATTENUATION:
+				this.dbTxAttenuation=true;
+				break;
+			case INDEX_DBM_TX_POWER:
+				this.dbmTxPower=true;
+				break;
+			case INDEX_ANTENNA:
+				this.antenna=true;
+				break;
+			case INDEX_DB_ANTENNA_SIGNAL:
+				this.dbAntennaSignal=true;
+				break;
+			case INDEX_DB_ANTENNA_NOISE:
+				this.dbAntennaNoise=true;
+				break;
+			case INDEX_RX_FLAGS:
+				this.rxFlags=true;
+				break;
+			case INDEX_MCS:
+				this.mcs=true;
+				break;
+			case INDEX_AMPDU:
+				this.ampdu=true;
+				break;
+			case INDEX_VHT:
+				this.vht=true;
+				break;
+			default:
+				continue;
+			}
+			fields |= 1 << fieldOrder[k];
+		}
+
+		data.setLayout(layout);
+		if (lazy) {
+			data.setPendingFields(fields);
+		} else {
+			data.decodeFields(fields);
 		}
 		return data;
 	}
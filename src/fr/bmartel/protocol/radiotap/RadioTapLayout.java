@@ -0,0 +1,429 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.protocol.radiotap;
+
+import java.util.Arrays;
+
+import fr.bmartel.utils.RadioTapStatus;
+
+/**
+ * Position of every field of a radiotap header for a given chain of it_present
+ * bitmasks.<br/>
+ * 
+ * Each field is aligned on its natural boundary relative to the beginning of
+ * the radiotap header as defined in http://www.radiotap.org/ so that positions
+ * only depend on the bitmasks and can be computed once for all frames sharing
+ * them.<br/>
+ * 
+ * Extended bitmasks (bit 31) and namespace switching are supported : each
+ * radiotap namespace restarts field numbering (one namespace per antenna for
+ * instance) and vendor namespaces are skipped as a whole using their
+ * skip_length. As skip_length is read from frame data, a layout stops at the
+ * first vendor namespace whose skip_length is unknown and is continued by
+ * another layout once it has been read (see RadioTapLayoutCache).
+ * 
+ * @author Bertrand Martel
+ * 
+ */
+public class RadioTapLayout {
+
+	/** size of radiotap header fixed part (version, pad, length, it_present) */
+	public final static int HEADER_FIXED_LENGTH = 8;
+
+	/** size of vendor namespace field (OUI, sub namespace, skip_length) */
+	public final static int VENDOR_NAMESPACE_LENGTH = 6;
+
+	/** maximum number of chained it_present bitmasks */
+	public final static int MAX_PRESENT_WORDS = 32;
+
+	private final static int RADIOTAP_NAMESPACE_BIT = 1 << RadioTapFlags.INDEX_RADIOTAP_NAMESPACE;
+	private final static int VENDOR_NAMESPACE_BIT = 1 << RadioTapFlags.INDEX_VENDOR_NAMESPACE;
+	private final static int EXT_BIT = 1 << RadioTapFlags.INDEX_EXT;
+
+	private final static int[] NO_SKIP_LENGTH = new int[0];
+
+	/** chain of it_present bitmasks this layout has been computed for */
+	private final int[] presentWords;
+
+	/** skip_length of each vendor namespace met so far */
+	private final int[] skipLengths;
+
+	/**
+	 * position of first occurrence of each field relative to radiotap header
+	 * start indexed by bit position (-1 if field is absent or can't be
+	 * located)
+	 */
+	private final int[] fieldOffsets;
+
+	/** field positions for each radiotap namespace */
+	private final int[][] namespaceOffsets;
+
+	/** index of located fields in payload order */
+	private final int[] fieldOrder;
+
+	/** position of first payload byte following it_present fields */
+	private final int payloadOffset;
+
+	/** minimum it_len value for all located fields to fit in header */
+	private final int dataLength;
+
+	/** first present bit with unknown size or alignment (-1 if none) */
+	private final int unknownIndex;
+
+	/** false if some present fields follow a bit with unknown layout */
+	private final boolean complete;
+
+	/**
+	 * position of vendor namespace field whose skip_length is needed to
+	 * locate following fields (-1 if layout is complete)
+	 */
+	private final int vendorHeaderOffset;
+
+	/** layouts continuing this one for each skip_length met (see RadioTapLayoutCache) */
+	volatile RadioTapLayout[] continuations = new RadioTapLayout[0];
+
+	/**
+	 * Compute layout for a single it_present bitmask
+	 * 
+	 * @param presentFlags
+	 *            it_present bitmask
+	 */
+	public RadioTapLayout(int presentFlags) {
+		this(new int[] { presentFlags }, NO_SKIP_LENGTH);
+	}
+
+	/**
+	 * Compute layout for a chain of it_present bitmasks
+	 * 
+	 * @param presentWords
+	 *            it_present bitmasks, all but the last one having bit 31 set
+	 * @param skipLengths
+	 *            skip_length of the first vendor namespaces met in the chain
+	 */
+	public RadioTapLayout(int[] presentWords, int[] skipLengths) {
+		this.presentWords = presentWords;
+		this.skipLengths = skipLengths;
+
+		int[][] namespaces = new int[presentWords.length][];
+		int[] offsets = newOffsets();
+		int[] order = new int[32];
+		int count = 0;
+		int unknown = -1;
+		boolean lostFields = false;
+		int vendorOffset = -1;
+		int skipCount = 0;
+
+		int position = HEADER_FIXED_LENGTH + 4 * (presentWords.length - 1);
+		this.payloadOffset = position;
+
+		int namespace = 0;
+		int namespaceWord = 0;
+		boolean vendor = false;
+		namespaces[0] = offsets;
+
+		walk: for (int w = 0; w < presentWords.length; w++) {
+			int word = presentWords[w];
+
+			if (!vendor) {
+				for (int bit = 0; bit < RadioTapFlags.INDEX_RADIOTAP_NAMESPACE; bit++) {
+					if ((word & (1 << bit)) == 0) {
+						continue;
+					}
+					int index = namespaceWord * 32 + bit;
+					int align = index < 32 ? RadioTapFlags.FIELD_ALIGN[index] : 0;
+					if (align == 0) {
+						// unknown field : following fields can't be located
+						unknown = index;
+						lostFields = (word & ~((2 << bit) - 1) & ~RADIOTAP_NAMESPACE_BIT) != 0;
+						break walk;
+					}
+					position = (position + align - 1) & ~(align - 1);
+					int size = RadioTapFlags.FIELD_SIZE[index];
+					if (size > 0) {
+						if (offsets[index] < 0) {
+							offsets[index] = position;
+							order[count++] = index;
+						}
+						namespaces[namespace][index] = position;
+						position += size;
+					}
+				}
+			}
+			if ((word & VENDOR_NAMESPACE_BIT) != 0) {
+				position = (position + 1) & ~1;
+				if (skipCount == skipLengths.length) {
+					// skip_length must be read from frame before going on
+					vendorOffset = position;
+					position += VENDOR_NAMESPACE_LENGTH;
+					break;
+				}
+				position += VENDOR_NAMESPACE_LENGTH + skipLengths[skipCount++];
+			}
+			if ((word & EXT_BIT) == 0) {
+				break;
+			}
+			if ((word & RADIOTAP_NAMESPACE_BIT) != 0) {
+				vendor = false;
+				namespace++;
+				namespaces[namespace] = newOffsets();
+				namespaceWord = 0;
+			} else if ((word & VENDOR_NAMESPACE_BIT) != 0) {
+				vendor = true;
+			} else {
+				namespaceWord++;
+			}
+		}
+
+		this.fieldOffsets = offsets;
+		this.namespaceOffsets = new int[namespace + 1][];
+		System.arraycopy(namespaces, 0, namespaceOffsets, 0, namespace + 1);
+		this.fieldOrder = new int[count];
+		System.arraycopy(order, 0, fieldOrder, 0, count);
+		this.dataLength = position;
+		this.unknownIndex = unknown;
+		this.complete = !lostFields;
+		this.vendorHeaderOffset = vendorOffset;
+	}
+
+	/**
+	 * Check radiotap header fixed part
+	 * 
+	 * @param version
+	 *            it_version
+	 * @param headerLength
+	 *            it_len
+	 * @param length
+	 *            number of bytes available for this frame
+	 * @return decoding status (see RadioTapStatus)
+	 */
+	static int checkHeader(int version, int headerLength, int length) {
+		if (length < HEADER_FIXED_LENGTH) {
+			return RadioTapStatus.TRUNCATED_HEADER_STATUS;
+		}
+		if (version != 0) {
+			return RadioTapStatus.BAD_VERSION_STATUS;
+		}
+		if (headerLength < HEADER_FIXED_LENGTH) {
+			return RadioTapStatus.BAD_LENGTH_STATUS;
+		}
+		if (headerLength > length) {
+			return RadioTapStatus.TRUNCATED_HEADER_STATUS;
+		}
+		return RadioTapStatus.SUCCESS_STATUS;
+	}
+
+	/**
+	 * Check that a layout can be used to decode a radiotap header
+	 * 
+	 * @param layout
+	 *            layout of this header (null if it_present chain doesn't fit
+	 *            in header)
+	 * @param headerLength
+	 *            it_len
+	 * @return decoding status (see RadioTapStatus)
+	 */
+	static int checkLayout(RadioTapLayout layout, int headerLength) {
+		if (layout == null || layout.dataLength > headerLength) {
+			return RadioTapStatus.BAD_LENGTH_STATUS;
+		}
+		if (!layout.complete) {
+			return RadioTapStatus.UNKNOWN_FIELD_STATUS;
+		}
+		return RadioTapStatus.SUCCESS_STATUS;
+	}
+
+	private static int[] newOffsets() {
+		int[] offsets = new int[32];
+		for (int index = 0; index < 32; index++) {
+			offsets[index] = -1;
+		}
+		return offsets;
+	}
+
+	/**
+	 * First it_present bitmask
+	 * 
+	 * @return
+	 */
+	public int getPresentFlags() {
+		return presentWords[0];
+	}
+
+	/**
+	 * Number of chained it_present bitmasks
+	 * 
+	 * @return
+	 */
+	public int getPresentWordCount() {
+		return presentWords.length;
+	}
+
+	/**
+	 * Retrieve one of the chained it_present bitmasks
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public int getPresentWord(int index) {
+		return presentWords[index];
+	}
+
+	/**
+	 * Number of vendor namespace skip_length this layout has been computed for
+	 * 
+	 * @return
+	 */
+	public int getSkipLengthCount() {
+		return skipLengths.length;
+	}
+
+	/**
+	 * Retrieve a vendor namespace skip_length this layout has been computed
+	 * for
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public int getSkipLength(int index) {
+		return skipLengths[index];
+	}
+
+	/**
+	 * Position of the first occurrence of a field relative to radiotap header
+	 * start
+	 * 
+	 * @param index
+	 *            field bit position (see RadioTapFlags.INDEX_*)
+	 * @return position or -1 if field is absent
+	 */
+	public int getFieldOffset(int index) {
+		return fieldOffsets[index];
+	}
+
+	/**
+	 * Position of a field in a given radiotap namespace relative to radiotap
+	 * header start
+	 * 
+	 * @param namespace
+	 *            radiotap namespace number (0 for the first one)
+	 * @param index
+	 *            field bit position (see RadioTapFlags.INDEX_*)
+	 * @return position or -1 if field is absent
+	 */
+	public int getFieldOffset(int namespace, int index) {
+		return namespaceOffsets[namespace][index];
+	}
+
+	/**
+	 * Number of radiotap namespaces (one per antenna for multi-antenna
+	 * frames)
+	 * 
+	 * @return
+	 */
+	public int getNamespaceCount() {
+		return namespaceOffsets.length;
+	}
+
+	/**
+	 * Field positions indexed by bit position (shared, must not be modified)
+	 * 
+	 * @return
+	 */
+	int[] getFieldOffsets() {
+		return fieldOffsets;
+	}
+
+	/**
+	 * Index of located fields in payload order (shared, must not be modified)
+	 * 
+	 * @return
+	 */
+	public int[] getFieldOrder() {
+		return fieldOrder;
+	}
+
+	public int getPayloadOffset() {
+		return payloadOffset;
+	}
+
+	public int getDataLength() {
+		return dataLength;
+	}
+
+	public int getUnknownIndex() {
+		return unknownIndex;
+	}
+
+	/**
+	 * Check if all present fields can be located
+	 * 
+	 * @return false if a bit with unknown layout is followed by other fields
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Position of the vendor namespace field whose skip_length is needed to
+	 * go on locating fields
+	 * 
+	 * @return position or -1 if layout is complete
+	 */
+	public int getVendorHeaderOffset() {
+		return vendorHeaderOffset;
+	}
+
+	/**
+	 * Check if this layout has been computed for a chain of bitmasks
+	 * 
+	 * @param words
+	 * @return
+	 */
+	boolean hasPresentWords(int[] words) {
+		return Arrays.equals(presentWords, words);
+	}
+
+	/**
+	 * Build skip_length list of a layout continuing this one
+	 * 
+	 * @param skipLength
+	 *            skip_length of pending vendor namespace
+	 * @return
+	 */
+	int[] appendSkipLength(int skipLength) {
+		int[] lengths = new int[skipLengths.length + 1];
+		System.arraycopy(skipLengths, 0, lengths, 0, skipLengths.length);
+		lengths[skipLengths.length] = skipLength;
+		return lengths;
+	}
+
+	/**
+	 * it_present chain (shared, must not be modified)
+	 * 
+	 * @return
+	 */
+	int[] getPresentWords() {
+		return presentWords;
+	}
+}
@@ -0,0 +1,471 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.protocol.radiotap;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.bmartel.utils.LittleEndianReader;
+
+/**
+ * Cache of radiotap layouts keyed by it_present bitmask.<br/>
+ * 
+ * A capture usually reuses a handful of distinct bitmasks : once a bitmask
+ * has been seen, locating all fields of a frame is a single table lookup.
+ * Chains of extended bitmasks are cached in a second table and vendor
+ * namespace skip_length values are cached as continuations of the layout
+ * they follow, so that all frames go through the same precomputed
+ * positions.<br/>
+ * 
+ * Lookups are lock free, insertions are serialized. The number of cached
+ * layouts is bounded so that garbage bitmasks can't grow the cache
+ * indefinitely. Hits are counted per thread and summed on demand so that
+ * decoders sharing a cache never write to the same memory on a hit.
+ * 
+ * @author Bertrand Martel
+ * 
+ */
+public class RadioTapLayoutCache {
+
+	/** initial number of slots (power of 2) */
+	private final static int INITIAL_CAPACITY = 16;
+
+	/** maximum number of layouts kept in each table */
+	private final static int MAX_SIZE = 1024;
+
+	/** maximum number of continuations kept for a layout */
+	private final static int MAX_CONTINUATIONS = 16;
+
+	private final static int EXT_BIT = 1 << RadioTapFlags.INDEX_EXT;
+
+	/** cache shared by default by all decoders */
+	private final static RadioTapLayoutCache defaultCache = new RadioTapLayoutCache();
+
+	/** open addressing table of single bitmask layouts (replaced on growth) */
+	private volatile RadioTapLayout[] table = new RadioTapLayout[INITIAL_CAPACITY];
+
+	/** open addressing table of extended bitmask layouts (replaced on growth) */
+	private volatile RadioTapLayout[] extendedTable = new RadioTapLayout[INITIAL_CAPACITY];
+
+	/** number of layouts in table */
+	private int size = 0;
+
+	/** number of layouts in extended table */
+	private int extendedSize = 0;
+
+	/** hit counter of each thread that looked up this cache (guarded by this) */
+	private final List<HitCounter> hitCounters = new ArrayList<HitCounter>();
+
+	/** hits of threads that have terminated (guarded by this) */
+	private long retiredHitCount = 0;
+
+	/** hits counted before last clear() (guarded by this) */
+	private long clearedHitCount = 0;
+
+	private final ThreadLocal<HitCounter> threadHitCounter = new ThreadLocal<HitCounter>() {
+		@Override
+		protected HitCounter initialValue() {
+			return register(Thread.currentThread());
+		}
+	};
+
+	/** number of lookups that had to compute a layout */
+	private final AtomicLong missCount = new AtomicLong();
+
+	/**
+	 * Hit counter only written by its owner thread, with ordered stores
+	 * instead of atomic increments
+	 */
+	static final class HitCounter {
+
+		private final WeakReference<Thread> owner;
+
+		private final AtomicLong hits = new AtomicLong();
+
+		HitCounter(Thread owner) {
+			this.owner = new WeakReference<Thread>(owner);
+		}
+
+		void hit() {
+			hits.lazySet(hits.get() + 1);
+		}
+
+		boolean isOwner(Thread thread) {
+			return owner.get() == thread;
+		}
+
+		boolean isRetired() {
+			Thread thread = owner.get();
+			return thread == null || !thread.isAlive();
+		}
+	}
+
+	/**
+	 * Retrieve cache shared by default by all decoders
+	 * 
+	 * @return
+	 */
+	public static RadioTapLayoutCache getDefaultCache() {
+		return defaultCache;
+	}
+
+	/**
+	 * Retrieve layout for a single it_present bitmask, computing it if not
+	 * cached
+	 * 
+	 * @param presentFlags
+	 *            it_present bitmask
+	 * @return
+	 */
+	public RadioTapLayout getLayout(int presentFlags) {
+		return getLayout(presentFlags, threadHitCounter.get());
+	}
+
+	private RadioTapLayout getLayout(int presentFlags, HitCounter counter) {
+		RadioTapLayout[] slots = table;
+		int mask = slots.length - 1;
+		int index = hash(presentFlags) & mask;
+
+		RadioTapLayout layout;
+		while ((layout = slots[index]) != null) {
+			if (layout.getPresentFlags() == presentFlags) {
+				counter.hit();
+				return layout;
+			}
+			index = (index + 1) & mask;
+		}
+		missCount.incrementAndGet();
+		return insert(new RadioTapLayout(presentFlags), false);
+	}
+
+	/**
+	 * Retrieve complete layout of a radiotap header reading its it_present
+	 * chain and vendor namespace skip_length in place
+	 * 
+	 * @param frame
+	 *            array containing the radiotap header
+	 * @param offset
+	 *            position of radiotap header
+	 * @param length
+	 *            number of header bytes available (it_len at most)
+	 * @return layout or null if it_present chain is truncated or too long
+	 */
+	public RadioTapLayout getLayout(byte[] frame, int offset, int length) {
+		return resolve(frame, null, offset, length, threadHitCounter.get());
+	}
+
+	/**
+	 * Retrieve complete layout of a radiotap header reading its it_present
+	 * chain and vendor namespace skip_length in place
+	 * 
+	 * @param buffer
+	 *            heap or direct buffer containing the radiotap header
+	 * @param offset
+	 *            absolute position of radiotap header
+	 * @param length
+	 *            number of header bytes available (it_len at most)
+	 * @return layout or null if it_present chain is truncated or too long
+	 */
+	public RadioTapLayout getLayout(ByteBuffer buffer, int offset, int length) {
+		return getLayout(null, buffer, offset, length, threadHitCounter.get());
+	}
+
+	/**
+	 * Retrieve complete layout of a radiotap header held in array or buffer,
+	 * counting hits with a counter of current thread (see getHitCounter())
+	 */
+	RadioTapLayout getLayout(byte[] array, ByteBuffer buffer, int offset, int length, HitCounter counter) {
+		if (array == null && buffer.hasArray()) {
+			return resolve(buffer.array(), null, buffer.arrayOffset() + offset, length, counter);
+		}
+		return resolve(array, buffer, offset, length, counter);
+	}
+
+	/**
+	 * Hit counter of current thread, which a decoder may keep while it is
+	 * used by this thread to avoid a thread local lookup per frame
+	 */
+	HitCounter getHitCounter() {
+		return threadHitCounter.get();
+	}
+
+	private RadioTapLayout resolve(byte[] array, ByteBuffer buffer, int offset, int length, HitCounter counter) {
+		if (length < RadioTapLayout.HEADER_FIXED_LENGTH) {
+			return null;
+		}
+		int presentFlags = readInt32(array, buffer, offset + 4);
+
+		RadioTapLayout layout;
+		if ((presentFlags & EXT_BIT) == 0) {
+			layout = getLayout(presentFlags, counter);
+		} else {
+			layout = getExtendedLayout(array, buffer, offset, length, counter);
+			if (layout == null) {
+				return null;
+			}
+		}
+		while (layout.getVendorHeaderOffset() >= 0) {
+			int position = layout.getVendorHeaderOffset();
+			if (position + RadioTapLayout.VENDOR_NAMESPACE_LENGTH > length) {
+				// truncated : reported by layout data length
+				break;
+			}
+			layout = getContinuation(layout, readUInt16(array, buffer, offset + position + 4), counter);
+		}
+		return layout;
+	}
+
+	/**
+	 * Retrieve layout for a chain of it_present bitmasks read in place
+	 */
+	private RadioTapLayout getExtendedLayout(byte[] array, ByteBuffer buffer, int offset, int length,
+			HitCounter counter) {
+		int count = 0;
+		int h = 0;
+		int word;
+		do {
+			if (count == RadioTapLayout.MAX_PRESENT_WORDS
+					|| RadioTapLayout.HEADER_FIXED_LENGTH + 4 * count > length) {
+				return null;
+			}
+			word = readInt32(array, buffer, offset + 4 + 4 * count);
+			h = hash(h * 31 + word);
+			count++;
+		} while ((word & EXT_BIT) != 0);
+
+		RadioTapLayout[] slots = extendedTable;
+		int mask = slots.length - 1;
+		int index = h & mask;
+
+		RadioTapLayout layout;
+		while ((layout = slots[index]) != null) {
+			if (matches(layout, array, buffer, offset, count)) {
+				counter.hit();
+				return layout;
+			}
+			index = (index + 1) & mask;
+		}
+		missCount.incrementAndGet();
+
+		int[] words = new int[count];
+		for (int i = 0; i < count; i++) {
+			words[i] = readInt32(array, buffer, offset + 4 + 4 * i);
+		}
+		return insert(new RadioTapLayout(words, new int[0]), true);
+	}
+
+	/**
+	 * Retrieve layout continuing a layout pending on a vendor namespace
+	 * 
+	 * @param layout
+	 *            layout whose vendor namespace skip_length is needed
+	 * @param skipLength
+	 *            skip_length read from frame
+	 * @param counter
+	 *            hit counter of current thread
+	 * @return
+	 */
+	private RadioTapLayout getContinuation(RadioTapLayout layout, int skipLength, HitCounter counter) {
+		int last = layout.getSkipLengthCount();
+		RadioTapLayout[] continuations = layout.continuations;
+		for (int i = 0; i < continuations.length; i++) {
+			if (continuations[i].getSkipLength(last) == skipLength) {
+				counter.hit();
+				return continuations[i];
+			}
+		}
+		missCount.incrementAndGet();
+
+		RadioTapLayout continuation = new RadioTapLayout(layout.getPresentWords(), layout.appendSkipLength(skipLength));
+		synchronized (layout) {
+			continuations = layout.continuations;
+			if (continuations.length < MAX_CONTINUATIONS) {
+				RadioTapLayout[] grown = new RadioTapLayout[continuations.length + 1];
+				System.arraycopy(continuations, 0, grown, 0, continuations.length);
+				grown[continuations.length] = continuation;
+				layout.continuations = grown;
+			}
+		}
+		return continuation;
+	}
+
+	private static boolean matches(RadioTapLayout layout, byte[] array, ByteBuffer buffer, int offset, int count) {
+		if (layout.getPresentWordCount() != count) {
+			return false;
+		}
+		for (int i = 0; i < count; i++) {
+			if (layout.getPresentWord(i) != readInt32(array, buffer, offset + 4 + 4 * i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int readInt32(byte[] array, ByteBuffer buffer, int position) {
+		if (array != null) {
+			return LittleEndianReader.readInt32(array, position);
+		}
+		return LittleEndianReader.readInt32(buffer, position);
+	}
+
+	private static int readUInt16(byte[] array, ByteBuffer buffer, int position) {
+		if (array != null) {
+			return LittleEndianReader.readUInt16(array, position);
+		}
+		return LittleEndianReader.readUInt16(buffer, position);
+	}
+
+	/**
+	 * Insert a layout computed after a miss
+	 * 
+	 * @param layout
+	 *            layout to insert
+	 * @param extended
+	 *            insert in extended bitmask table
+	 */
+	private synchronized RadioTapLayout insert(RadioTapLayout layout, boolean extended) {
+		int count = extended ? extendedSize : size;
+		if (count >= MAX_SIZE) {
+			return layout;
+		}
+		RadioTapLayout[] slots = extended ? extendedTable : table;
+		if ((count + 1) * 2 > slots.length) {
+			RadioTapLayout[] grown = new RadioTapLayout[slots.length * 2];
+			for (int i = 0; i < slots.length; i++) {
+				if (slots[i] != null) {
+					put(grown, slots[i]);
+				}
+			}
+			slots = grown;
+		} else {
+			slots = slots.clone();
+		}
+		RadioTapLayout existing = put(slots, layout);
+		if (existing != null) {
+			return existing;
+		}
+		if (extended) {
+			extendedSize++;
+			extendedTable = slots;
+		} else {
+			size++;
+			table = slots;
+		}
+		return layout;
+	}
+
+	/**
+	 * Put layout in table unless one exists for same bitmasks
+	 * 
+	 * @return existing layout or null if layout has been put
+	 */
+	private static RadioTapLayout put(RadioTapLayout[] slots, RadioTapLayout layout) {
+		int[] words = layout.getPresentWords();
+		int h = 0;
+		for (int i = 0; i < words.length; i++) {
+			h = hash(h * 31 + words[i]);
+		}
+		int mask = slots.length - 1;
+		int index = h & mask;
+		while (slots[index] != null) {
+			if (slots[index].hasPresentWords(words)) {
+				return slots[index];
+			}
+			index = (index + 1) & mask;
+		}
+		slots[index] = layout;
+		return null;
+	}
+
+	private static int hash(int value) {
+		int h = value * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Register hit counter of a thread, folding counters of terminated threads
+	 * so that their number stays bounded by the number of live threads
+	 */
+	private synchronized HitCounter register(Thread thread) {
+		for (int i = hitCounters.size() - 1; i >= 0; i--) {
+			HitCounter counter = hitCounters.get(i);
+			if (counter.isRetired()) {
+				retiredHitCount += counter.hits.get();
+				hitCounters.remove(i);
+			}
+		}
+		HitCounter counter = new HitCounter(thread);
+		hitCounters.add(counter);
+		return counter;
+	}
+
+	/**
+	 * Hits of all threads since cache creation
+	 */
+	private synchronized long totalHitCount() {
+		long total = retiredHitCount;
+		for (int i = 0; i < hitCounters.size(); i++) {
+			total += hitCounters.get(i).hits.get();
+		}
+		return total;
+	}
+
+	/**
+	 * Remove all cached layouts and reset counters
+	 */
+	public synchronized void clear() {
+		table = new RadioTapLayout[INITIAL_CAPACITY];
+		extendedTable = new RadioTapLayout[INITIAL_CAPACITY];
+		size = 0;
+		extendedSize = 0;
+		clearedHitCount = totalHitCount();
+		missCount.set(0);
+	}
+
+	/**
+	 * Number of cached layouts (single and extended bitmasks)
+	 * 
+	 * @return
+	 */
+	public synchronized int size() {
+		return size + extendedSize;
+	}
+
+	/**
+	 * Number of lookups that found a cached layout, summed over all threads
+	 * (hits made concurrently may not be visible yet)
+	 * 
+	 * @return
+	 */
+	public synchronized long getHitCount() {
+		return totalHitCount() - clearedHitCount;
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+}
@@ -3,75 +3,240 @@ package fr.bmartel.protocol.radiotap;
 
 /**
  * Define Modulation and coding scheme extracted from radio tape headers
- * 
+ *
+ * Known, flags and MCS index bytes are kept packed in a single int, each
+ * information being extracted on demand.<br/>
+ *
  * @author Bertrand Martel
- * 
+ *
  */
 public class RadioTapMCS {
 
+	public final static int KNOWN_BANDWIDTH = 0x01;
+	public final static int KNOWN_MCS_INDEX = 0x02;
+	public final static int KNOWN_GUARD_INTERVAL = 0x04;
+	public final static int KNOWN_HT_FORMAT = 0x08;
+	public final static int KNOWN_FEC_TYPE = 0x10;
+	public final static int KNOWN_STBC = 0x20;
+	public final static int KNOWN_NESS = 0x40;
+
+	public final static int BANDWIDTH_20 = 0;
+	public final static int BANDWIDTH_40 = 1;
+	public final static int BANDWIDTH_20L = 2;
+	public final static int BANDWIDTH_20U = 3;
+
+	/** number of MCS index with a PHY rate (0-31 + MCS 32 duplicate mode) */
+	public final static int MCS_INDEX_COUNT = 33;
+
+	private final static int FLAG_SHORT_GI = 0x04;
+	private final static int FLAG_GREENFIELD = 0x08;
+	private final static int FLAG_LDPC = 0x10;
+	private final static int FLAG_NESS_BIT0 = 0x80;
+	private final static int KNOWN_NESS_BIT1 = 0x80;
+
+	/** data bits per OFDM symbol for one spatial stream in 20MHz */
+	private final static int[] NDBPS_20 = new int[] { 26, 52, 78, 104, 156, 208, 234, 260 };
+
+	/** data bits per OFDM symbol for one spatial stream in 40MHz */
+	private final static int[] NDBPS_40 = new int[] { 54, 108, 162, 216, 324, 432, 486, 540 };
+
+	/** HT PHY rate in kbps indexed by [mcs index][20/40MHz][long/short GI] */
+	private final static int[][][] RATE_TABLE = buildRateTable();
+
 	/**
 	 * define Modulation and coding scheme according to table
-	 * 
+	 *
 	 * http://en.wikipedia.org/wiki/IEEE_802.11n-2009#Data_rates
+	 *
+	 * known byte (bits 0-7), flags byte (bits 8-15), MCS index (bits 16-23)
 	 */
-	private byte mcsRate = 0x00;
+	private int mcs = 0;
 
 	/**
 	 * Build a radio tape MCS object
-	 * 
+	 *
 	 * @param knownField
 	 * @param flagsField
 	 * @param mcsField
 	 */
 	public RadioTapMCS(byte knownField, byte flagsField, byte mcsField) {
-		mcsRate = mcsField;
-		switch (knownField) {
-		case 0x03:
-			switch (flagsField) {
-			case 0x00:
-				System.out.println("bandwidth : 20");
-			case 0x01:
-				System.out.println("bandwidth : 40");
-			case 0x02:
-				System.out.println("bandwidth : 20L");
-			case 0x03:
-				System.out.println("bandwidth : 20U");
-			}
-		case 0x04:
-			switch (flagsField) {
-			case 0x00:
-				System.out.println("guard interval : long GI");
-			case 0x01:
-				System.out.println("guard interval : short GI");
-			}
-		case 0x08:
-			switch (flagsField) {
-			case 0x00:
-				System.out.println("HT format : mixed");
-			case 0x01:
-				System.out.println("HT format : greenfield");
-			}
-		case 0x10:
-			switch (flagsField) {
-			case 0x00:
-				System.out.println("FEC type : BCC");
-			case 0x01:
-				System.out.println("FEC type : LDPC");
-			}
-		case 0x60:
-			System.out.println("Number of STBC streams : " + (flagsField & 0XFF));
+		this(pack(knownField, flagsField, mcsField));
+	}
+
+	/**
+	 * Build a radio tape MCS object from packed representation
+	 *
+	 * @param packed
+	 *            value built with pack()
+	 */
+	public RadioTapMCS(int packed) {
+		mcs = packed & 0xFFFFFF;
+	}
+
+	/**
+	 * Pack MCS field into a single int
+	 *
+	 * @param knownField
+	 * @param flagsField
+	 * @param mcsField
+	 * @return
+	 */
+	public static int pack(byte knownField, byte flagsField, byte mcsField) {
+		return (knownField & 0xFF) | ((flagsField & 0xFF) << 8) | ((mcsField & 0xFF) << 16);
+	}
+
+	private static int[][][] buildRateTable() {
+		int[][][] table = new int[MCS_INDEX_COUNT][2][2];
+		for (int index = 0; index < 32; index++) {
+			int streams = index / 8 + 1;
+			int ndbps20 = NDBPS_20[index % 8] * streams;
+			int ndbps40 = NDBPS_40[index % 8] * streams;
+			// 4us symbol for long GI, 3.6us for short GI
+			table[index][0][0] = ndbps20 * 250;
+			table[index][0][1] = ndbps20 * 2500 / 9;
+			table[index][1][0] = ndbps40 * 250;
+			table[index][1][1] = ndbps40 * 2500 / 9;
 		}
+		// MCS 32 : 40MHz duplicate BPSK 1/2 (24 data bits per symbol)
+		table[32][1][0] = 24 * 250;
+		table[32][1][1] = 24 * 2500 / 9;
+		return table;
+	}
+
+	/**
+	 * HT PHY rate
+	 *
+	 * @param mcsIndex
+	 *            MCS index
+	 * @param bandwidth
+	 *            one of BANDWIDTH_*
+	 * @param shortGuardInterval
+	 * @return PHY rate in kbps (-1 if not defined)
+	 */
+	public static int getDataRate(int mcsIndex, int bandwidth, boolean shortGuardInterval) {
+		if (mcsIndex < 0 || mcsIndex >= MCS_INDEX_COUNT) {
+			return -1;
+		}
+		int rate = RATE_TABLE[mcsIndex][bandwidth == BANDWIDTH_40 ? 1 : 0][shortGuardInterval ? 1 : 0];
+		return rate == 0 ? -1 : rate;
+	}
+
+	/**
+	 * Packed representation of this MCS field
+	 *
+	 * @return
+	 */
+	public int getPacked() {
+		return mcs;
+	}
+
+	/**
+	 * Known byte telling which information is valid (see KNOWN_*)
+	 *
+	 * @return
+	 */
+	public int getKnown() {
+		return mcs & 0xFF;
+	}
+
+	public int getFlags() {
+		return (mcs >> 8) & 0xFF;
+	}
+
+	public boolean isKnown(int knownBit) {
+		return (mcs & knownBit) != 0;
 	}
 
 	public byte getMcsRate() {
-		return mcsRate;
+		return (byte) (mcs >> 16);
 	}
 
 	public void setMcsRate(byte mcsRate) {
-		this.mcsRate = mcsRate;
+		mcs = (mcs & 0xFFFF) | ((mcsRate & 0xFF) << 16);
+	}
+
+	/**
+	 * MCS index
+	 *
+	 * @return
+	 */
+	public int getMcsIndex() {
+		return (mcs >> 16) & 0xFF;
+	}
+
+	/**
+	 * Bandwidth
+	 *
+	 * @return one of BANDWIDTH_*
+	 */
+	public int getBandwidth() {
+		return (mcs >> 8) & 0x03;
+	}
+
+	/**
+	 * Bandwidth in MHz
+	 *
+	 * @return
+	 */
+	public int getBandwidthMHz() {
+		return getBandwidth() == BANDWIDTH_40 ? 40 : 20;
+	}
+
+	public boolean isShortGuardInterval() {
+		return ((mcs >> 8) & FLAG_SHORT_GI) != 0;
+	}
+
+	/**
+	 * HT format
+	 *
+	 * @return true for greenfield, false for mixed
+	 */
+	public boolean isGreenfield() {
+		return ((mcs >> 8) & FLAG_GREENFIELD) != 0;
+	}
+
+	/**
+	 * FEC type
+	 *
+	 * @return true for LDPC, false for BCC
+	 */
+	public boolean isLdpc() {
+		return ((mcs >> 8) & FLAG_LDPC) != 0;
+	}
+
+	/**
+	 * Number of STBC streams
+	 *
+	 * @return
+	 */
+	public int getStbcStreams() {
+		return (mcs >> 13) & 0x03;
+	}
+
+	/**
+	 * Number of extension spatial streams
+	 *
+	 * @return
+	 */
+	public int getNess() {
+		return (((mcs >> 8) & FLAG_NESS_BIT0) >> 7) | ((mcs & KNOWN_NESS_BIT1) >> 6);
+	}
+
+	/**
+	 * HT PHY rate from table (bandwidth and guard interval default to 20MHz
+	 * and long GI when unknown)
+	 *
+	 * @return PHY rate in kbps (-1 if MCS index is unknown)
+	 */
+	public int getDataRate() {
+		if (!isKnown(KNOWN_MCS_INDEX)) {
+			return -1;
+		}
+		return getDataRate(getMcsIndex(), isKnown(KNOWN_BANDWIDTH) ? getBandwidth() : BANDWIDTH_20,
+				isKnown(KNOWN_GUARD_INTERVAL) && isShortGuardInterval());
 	}
 
 	public void displayInfo() {
-		System.out.println("MCS Rate : " + mcsRate);
+		System.out.println("MCS Rate : " + getMcsRate());
 	}
 }
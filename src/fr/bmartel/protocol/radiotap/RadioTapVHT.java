@@ -2,14 +2,346 @@ package fr.bmartel.protocol.radiotap;
 
 /**
  * Define Very High ThroughPut radio header type
- * 
+ *
+ * Known, flags, bandwidth and the 4 per user mcs_nss bytes are packed in a
+ * long, coding, group_id and partial_aid in an int.<br/>
+ *
  * @author Bertrand Martel
- * 
+ *
  */
 public class RadioTapVHT {
 
+	public final static int KNOWN_STBC = 0x0001;
+	public final static int KNOWN_TXOP_PS_NOT_ALLOWED = 0x0002;
+	public final static int KNOWN_GUARD_INTERVAL = 0x0004;
+	public final static int KNOWN_SHORT_GI_NSYM_DISAMBIGUATION = 0x0008;
+	public final static int KNOWN_LDPC_EXTRA_OFDM_SYMBOL = 0x0010;
+	public final static int KNOWN_BEAMFORMED = 0x0020;
+	public final static int KNOWN_BANDWIDTH = 0x0040;
+	public final static int KNOWN_GROUP_ID = 0x0080;
+	public final static int KNOWN_PARTIAL_AID = 0x0100;
+
+	public final static int FLAG_STBC = 0x01;
+	public final static int FLAG_TXOP_PS_NOT_ALLOWED = 0x02;
+	public final static int FLAG_SHORT_GI = 0x04;
+	public final static int FLAG_SHORT_GI_NSYM_DISAMBIGUATION = 0x08;
+	public final static int FLAG_LDPC_EXTRA_OFDM_SYMBOL = 0x10;
+	public final static int FLAG_BEAMFORMED = 0x20;
+
+	/** number of users in a VHT field */
+	public final static int USER_COUNT = 4;
+
+	public final static int MCS_COUNT = 10;
+
+	public final static int NSS_COUNT = 8;
+
+	/** channel width in MHz indexed by bandwidth class (see getBandwidthIndex()) */
+	private final static int[] BANDWIDTH_MHZ = new int[] { 20, 40, 80, 160 };
+
+	/** bandwidth class (20/40/80/160) indexed by radiotap bandwidth code */
+	private final static int[] BANDWIDTH_INDEX = new int[] { 0, 1, 1, 1, 2, 2, 2, 2, 2, 2, 2, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3 };
+
+	/**
+	 * bandwidth class of the PPDU indexed by radiotap bandwidth code (codes
+	 * such as 20L/20U or 40L/40U describe a narrower PPDU sent in a wider
+	 * channel)
+	 */
+	private final static int[] PPDU_BANDWIDTH_INDEX = new int[] { 0, 1, 0, 0, 2, 1, 1, 0, 0, 0, 0, 3, 2, 2, 1, 1, 1, 1, 0, 0, 0, 0, 0, 0, 0, 0 };
+
+	/** data subcarriers indexed by bandwidth class */
+	private final static int[] SUBCARRIERS = new int[] { 52, 108, 234, 468 };
+
+	/** coded bits per subcarrier indexed by MCS */
+	private final static int[] NBPSCS = new int[] { 1, 2, 2, 4, 4, 6, 6, 6, 8, 8 };
+
+	/** coding rate numerator indexed by MCS */
+	private final static int[] CODING_NUM = new int[] { 1, 1, 3, 1, 3, 2, 3, 5, 3, 5 };
+
+	/** coding rate denominator indexed by MCS */
+	private final static int[] CODING_DEN = new int[] { 2, 2, 4, 2, 4, 3, 4, 6, 4, 6 };
+
+	/**
+	 * VHT PHY rate in kbps indexed by [mcs][nss - 1][bandwidth class][long/short
+	 * GI] (0 for invalid combinations)
+	 */
+	private final static int[][][][] RATE_TABLE = buildRateTable();
+
+	/**
+	 * known (bits 0-15), flags (bits 16-23), bandwidth (bits 24-31), mcs_nss
+	 * of user 0 to 3 (bits 32-63)
+	 */
+	private final long vht;
+
+	/** coding (bits 0-7), group_id (bits 8-15), partial_aid (bits 16-31) */
+	private final int vhtExt;
+
+	/**
+	 * Build a VHT object from field values
+	 *
+	 * @param known
+	 *            known bitmask (see KNOWN_*)
+	 * @param flags
+	 *            flags (see FLAG_*)
+	 * @param bandwidth
+	 *            radiotap bandwidth code
+	 * @param mcsNss
+	 *            the 4 mcs_nss bytes, user 0 in lowest byte
+	 * @param coding
+	 * @param groupId
+	 * @param partialAid
+	 */
+	public RadioTapVHT(int known, int flags, int bandwidth, int mcsNss, int coding, int groupId, int partialAid) {
+		vht = (known & 0xFFFFL) | ((flags & 0xFFL) << 16) | ((bandwidth & 0xFFL) << 24) | ((mcsNss & 0xFFFFFFFFL) << 32);
+		vhtExt = (coding & 0xFF) | ((groupId & 0xFF) << 8) | ((partialAid & 0xFFFF) << 16);
+	}
+
+	/**
+	 * Build a single user VHT object
+	 *
+	 * @param known
+	 *            known bitmask most significant byte first
+	 * @param flags
+	 * @param bandwith
+	 * @param mcs_nss
+	 *            mcs_nss of user 0
+	 * @param coding
+	 * @param groupId
+	 * @param partialAid
+	 *            partial aid most significant byte first
+	 */
 	public RadioTapVHT(byte[] known, byte flags, byte bandwith, byte mcs_nss,
 			byte coding, byte groupId, byte[] partialAid) {
-		System.out.println("Very High ThroughPut detected... Not treating...");
+		this(((known[0] & 0xFF) << 8) | (known[1] & 0xFF), flags, bandwith, mcs_nss & 0xFF, coding, groupId,
+				((partialAid[0] & 0xFF) << 8) | (partialAid[1] & 0xFF));
+	}
+
+	/**
+	 * Build a VHT object from packed representation
+	 *
+	 * @param packed
+	 *            value returned by getPacked()
+	 * @param packedExt
+	 *            value returned by getPackedExt()
+	 */
+	public RadioTapVHT(long packed, int packedExt) {
+		vht = packed;
+		vhtExt = packedExt;
+	}
+
+	private static int[][][][] buildRateTable() {
+		int[][][][] table = new int[MCS_COUNT][NSS_COUNT][BANDWIDTH_MHZ.length][2];
+		for (int mcs = 0; mcs < MCS_COUNT; mcs++) {
+			for (int nss = 1; nss <= NSS_COUNT; nss++) {
+				for (int bw = 0; bw < BANDWIDTH_MHZ.length; bw++) {
+					int ncbps = SUBCARRIERS[bw] * nss * NBPSCS[mcs];
+					if ((ncbps * CODING_NUM[mcs]) % CODING_DEN[mcs] != 0) {
+						continue;
+					}
+					int ndbps = ncbps * CODING_NUM[mcs] / CODING_DEN[mcs];
+					// one BCC encoder per 600Mbps at short GI (3.6us symbol)
+					int nes = (ndbps + 2159) / 2160;
+					if (ndbps % nes != 0 || ncbps % nes != 0) {
+						continue;
+					}
+					table[mcs][nss - 1][bw][0] = ndbps * 250;
+					table[mcs][nss - 1][bw][1] = ndbps * 2500 / 9;
+				}
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * VHT PHY rate
+	 *
+	 * @param mcs
+	 *            MCS index (0-9)
+	 * @param nss
+	 *            number of spatial streams (1-8)
+	 * @param bandwidthIndex
+	 *            bandwidth class 0:20MHz 1:40MHz 2:80MHz 3:160MHz
+	 * @param shortGuardInterval
+	 * @return PHY rate in kbps (-1 if combination is not valid)
+	 */
+	public static int getDataRate(int mcs, int nss, int bandwidthIndex, boolean shortGuardInterval) {
+		if (mcs < 0 || mcs >= MCS_COUNT || nss < 1 || nss > NSS_COUNT || bandwidthIndex < 0
+				|| bandwidthIndex >= BANDWIDTH_MHZ.length) {
+			return -1;
+		}
+		int rate = RATE_TABLE[mcs][nss - 1][bandwidthIndex][shortGuardInterval ? 1 : 0];
+		return rate == 0 ? -1 : rate;
+	}
+
+	/**
+	 * Known, flags, bandwidth and mcs_nss packed in a long
+	 *
+	 * @return
+	 */
+	public long getPacked() {
+		return vht;
+	}
+
+	/**
+	 * Coding, group_id and partial_aid packed in an int
+	 *
+	 * @return
+	 */
+	public int getPackedExt() {
+		return vhtExt;
+	}
+
+	public int getKnown() {
+		return (int) (vht & 0xFFFF);
+	}
+
+	public boolean isKnown(int knownBit) {
+		return (vht & knownBit) != 0;
+	}
+
+	public int getFlags() {
+		return (int) ((vht >> 16) & 0xFF);
+	}
+
+	public boolean isStbc() {
+		return (getFlags() & FLAG_STBC) != 0;
+	}
+
+	public boolean isTxopPsNotAllowed() {
+		return (getFlags() & FLAG_TXOP_PS_NOT_ALLOWED) != 0;
+	}
+
+	public boolean isShortGuardInterval() {
+		return (getFlags() & FLAG_SHORT_GI) != 0;
+	}
+
+	public boolean isShortGuardIntervalNsymDisambiguation() {
+		return (getFlags() & FLAG_SHORT_GI_NSYM_DISAMBIGUATION) != 0;
+	}
+
+	public boolean isLdpcExtraOfdmSymbol() {
+		return (getFlags() & FLAG_LDPC_EXTRA_OFDM_SYMBOL) != 0;
+	}
+
+	public boolean isBeamformed() {
+		return (getFlags() & FLAG_BEAMFORMED) != 0;
+	}
+
+	/**
+	 * Radiotap bandwidth code (0-25)
+	 *
+	 * @return
+	 */
+	public int getBandwidth() {
+		return (int) ((vht >> 24) & 0xFF);
+	}
+
+	/**
+	 * Bandwidth class of the whole channel (see getPpduBandwidthIndex() for
+	 * the width actually used by the frame)
+	 *
+	 * @return 0:20MHz 1:40MHz 2:80MHz 3:160MHz (-1 if unknown code)
+	 */
+	public int getBandwidthIndex() {
+		int bandwidth = getBandwidth();
+		if (bandwidth >= BANDWIDTH_INDEX.length) {
+			return -1;
+		}
+		return BANDWIDTH_INDEX[bandwidth];
+	}
+
+	/**
+	 * Bandwidth class of the PPDU, which is narrower than the channel for
+	 * sideband codes (20L, 40U...)
+	 *
+	 * @return 0:20MHz 1:40MHz 2:80MHz 3:160MHz (-1 if unknown code)
+	 */
+	public int getPpduBandwidthIndex() {
+		int bandwidth = getBandwidth();
+		if (bandwidth >= PPDU_BANDWIDTH_INDEX.length) {
+			return -1;
+		}
+		return PPDU_BANDWIDTH_INDEX[bandwidth];
+	}
+
+	/**
+	 * Channel width in MHz
+	 *
+	 * @return (-1 if unknown code)
+	 */
+	public int getBandwidthMHz() {
+		int index = getBandwidthIndex();
+		return index < 0 ? -1 : BANDWIDTH_MHZ[index];
+	}
+
+	/**
+	 * Raw mcs_nss byte of a user
+	 *
+	 * @param user
+	 *            user number (0-3)
+	 * @return
+	 */
+	public int getMcsNss(int user) {
+		return (int) ((vht >>> (32 + 8 * user)) & 0xFF);
+	}
+
+	/**
+	 * MCS index of a user
+	 *
+	 * @param user
+	 *            user number (0-3)
+	 * @return
+	 */
+	public int getMcs(int user) {
+		return getMcsNss(user) >> 4;
+	}
+
+	/**
+	 * Number of spatial streams of a user
+	 *
+	 * @param user
+	 *            user number (0-3)
+	 * @return number of spatial streams (0 if user is not present)
+	 */
+	public int getNss(int user) {
+		return getMcsNss(user) & 0x0F;
+	}
+
+	/**
+	 * FEC type of a user
+	 *
+	 * @param user
+	 *            user number (0-3)
+	 * @return true for LDPC, false for BCC
+	 */
+	public boolean isLdpc(int user) {
+		return (vhtExt & (1 << user)) != 0;
+	}
+
+	public int getCoding() {
+		return vhtExt & 0xFF;
+	}
+
+	public int getGroupId() {
+		return (vhtExt >> 8) & 0xFF;
+	}
+
+	public int getPartialAid() {
+		return (vhtExt >>> 16) & 0xFFFF;
+	}
+
+	/**
+	 * VHT PHY rate of a user from table (guard interval defaults to long GI
+	 * when unknown)
+	 *
+	 * @param user
+	 *            user number (0-3)
+	 * @return PHY rate in kbps (-1 if user is absent or rate is unknown)
+	 */
+	public int getDataRate(int user) {
+		if (!isKnown(KNOWN_BANDWIDTH)) {
+			return -1;
+		}
+		return getDataRate(getMcs(user), getNss(user), getPpduBandwidthIndex(),
+				isKnown(KNOWN_GUARD_INTERVAL) && isShortGuardInterval());
 	}
 }
@@ -0,0 +1,190 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.protocol.radiotap.column;
+
+/**
+ * Reusable batch of decoded radiotap frames stored column by column : row i
+ * of each column holds a value of frame i.<br/>
+ * 
+ * Columns are exposed directly so that aggregation can loop over primitive
+ * arrays. Rows of frames that could not be decoded have a negative status and
+ * all their values set to 0 (-1 for TSFT).
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class RadioTapBatch {
+
+	/** maximum number of rows */
+	private final int capacity;
+
+	/** number of rows filled */
+	private int size = 0;
+
+	/** decoding status (see RadioTapStatus) */
+	private final int[] status;
+
+	/** first it_present bitmask */
+	private final int[] presentBits;
+
+	/** TSFT in microseconds (-1 if absent) */
+	private final long[] tsft;
+
+	private final byte[] flags;
+
+	/** data rate in kbps */
+	private final int[] dataRate;
+
+	/** channel frequency in MHz */
+	private final int[] frequency;
+
+	/** 16 bit channel flags */
+	private final int[] channelFlags;
+
+	private final byte[] dbmSignal;
+
+	private final byte[] dbmNoise;
+
+	private final byte[] antenna;
+
+	/** 16 bit rx flags */
+	private final int[] rxFlags;
+
+	/** MCS field packed (see RadioTapMCS.pack()) */
+	private final int[] mcs;
+
+	/** it_len */
+	private final int[] headerLength;
+
+	/**
+	 * Build an empty batch
+	 * 
+	 * @param capacity
+	 *            maximum number of rows
+	 */
+	public RadioTapBatch(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity must not be negative");
+		}
+		this.capacity = capacity;
+		status = new int[capacity];
+		presentBits = new int[capacity];
+		tsft = new long[capacity];
+		flags = new byte[capacity];
+		dataRate = new int[capacity];
+		frequency = new int[capacity];
+		channelFlags = new int[capacity];
+		dbmSignal = new byte[capacity];
+		dbmNoise = new byte[capacity];
+		antenna = new byte[capacity];
+		rxFlags = new int[capacity];
+		mcs = new int[capacity];
+		headerLength = new int[capacity];
+	}
+
+	/**
+	 * Remove all rows, columns being reused by next decoding
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Append a row
+	 * 
+	 * @return index of new row
+	 */
+	int addRow() {
+		if (size == capacity) {
+			throw new IllegalStateException("batch is full");
+		}
+		return size++;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Number of rows filled (only first size values of each column are
+	 * valid)
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int[] getStatus() {
+		return status;
+	}
+
+	public int[] getPresentBits() {
+		return presentBits;
+	}
+
+	public long[] getTsft() {
+		return tsft;
+	}
+
+	public byte[] getFlags() {
+		return flags;
+	}
+
+	public int[] getDataRate() {
+		return dataRate;
+	}
+
+	public int[] getFrequency() {
+		return frequency;
+	}
+
+	public int[] getChannelFlags() {
+		return channelFlags;
+	}
+
+	public byte[] getDbmSignal() {
+		return dbmSignal;
+	}
+
+	public byte[] getDbmNoise() {
+		return dbmNoise;
+	}
+
+	public byte[] getAntenna() {
+		return antenna;
+	}
+
+	public int[] getRxFlags() {
+		return rxFlags;
+	}
+
+	public int[] getMcs() {
+		return mcs;
+	}
+
+	public int[] getHeaderLength() {
+		return headerLength;
+	}
+}
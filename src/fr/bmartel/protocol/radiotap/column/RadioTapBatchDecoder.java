@@ -0,0 +1,149 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.protocol.radiotap.column;
+
+import java.nio.ByteBuffer;
+
+import fr.bmartel.protocol.radiotap.RadioTapCursor;
+import fr.bmartel.protocol.radiotap.RadioTapLayoutCache;
+import fr.bmartel.utils.RadioTapStatus;
+
+/**
+ * Decode a set of radiotap frames lying in a single buffer into a columnar
+ * batch, without building any object per frame.<br/>
+ * 
+ * A batch decoder is not thread safe, use one decoder per thread.
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class RadioTapBatchDecoder {
+
+	/** cursor reading each frame in place */
+	private final RadioTapCursor cursor;
+
+	/**
+	 * Build a batch decoder using default layout cache
+	 */
+	public RadioTapBatchDecoder() {
+		this(RadioTapLayoutCache.getDefaultCache());
+	}
+
+	/**
+	 * Build a batch decoder
+	 * 
+	 * @param layoutCache
+	 *            cache used to locate fields from it_present bitmask
+	 */
+	public RadioTapBatchDecoder(RadioTapLayoutCache layoutCache) {
+		cursor = new RadioTapCursor(layoutCache);
+	}
+
+	/**
+	 * Append frames of an array to a batch
+	 * 
+	 * @param array
+	 *            array containing the frames
+	 * @param offsets
+	 *            position of each radiotap header
+	 * @param lengths
+	 *            number of bytes available for each frame
+	 * @param count
+	 *            number of frames to decode
+	 * @param batch
+	 *            batch rows are appended to
+	 * @return number of frames successfully decoded
+	 */
+	public int decode(byte[] array, int[] offsets, int[] lengths, int count, RadioTapBatch batch) {
+		checkCount(count, batch);
+		int decoded = 0;
+		for (int i = 0; i < count; i++) {
+			if (fill(cursor.decode(array, offsets[i], lengths[i]), batch)) {
+				decoded++;
+			}
+		}
+		return decoded;
+	}
+
+	/**
+	 * Append frames of a heap or direct buffer to a batch (buffer position is
+	 * left untouched)
+	 * 
+	 * @param buffer
+	 *            buffer containing the frames
+	 * @param offsets
+	 *            absolute position of each radiotap header
+	 * @param lengths
+	 *            number of bytes available for each frame
+	 * @param count
+	 *            number of frames to decode
+	 * @param batch
+	 *            batch rows are appended to
+	 * @return number of frames successfully decoded
+	 */
+	public int decode(ByteBuffer buffer, int[] offsets, int[] lengths, int count, RadioTapBatch batch) {
+		checkCount(count, batch);
+		int decoded = 0;
+		for (int i = 0; i < count; i++) {
+			if (fill(cursor.decode(buffer, offsets[i], lengths[i]), batch)) {
+				decoded++;
+			}
+		}
+		return decoded;
+	}
+
+	private static void checkCount(int count, RadioTapBatch batch) {
+		if (count < 0 || count > batch.getCapacity() - batch.size()) {
+			throw new IllegalArgumentException("batch can't hold " + count + " more frames");
+		}
+	}
+
+	/**
+	 * Fill a new row with frame cursor is wrapped on
+	 * 
+	 * @param status
+	 *            decoding status of this frame
+	 * @param batch
+	 * @return true if frame has been decoded
+	 */
+	private boolean fill(int status, RadioTapBatch batch) {
+		int row = batch.addRow();
+		batch.getStatus()[row] = status;
+
+		// cursor is left empty for undecodable frames : all values are 0
+		batch.getPresentBits()[row] = cursor.getPresentFlags();
+		batch.getHeaderLength()[row] = cursor.getRadioTapDataLength();
+		batch.getTsft()[row] = cursor.getTFST();
+		batch.getFlags()[row] = (byte) cursor.getFlags();
+		batch.getDataRate()[row] = cursor.getDataRate();
+		batch.getFrequency()[row] = cursor.getFrequency();
+		batch.getChannelFlags()[row] = cursor.getChannelFlags();
+		batch.getDbmSignal()[row] = cursor.getDbmAntSignal();
+		batch.getDbmNoise()[row] = cursor.getDbmAntNoise();
+		batch.getAntenna()[row] = cursor.getAntenna();
+		batch.getRxFlags()[row] = cursor.getRxFlags();
+		batch.getMcs()[row] = cursor.getMcsPacked();
+		return RadioTapStatus.isDecoded(status);
+	}
+}
@@ -0,0 +1,493 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.protocol.radiotap.column;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+import fr.bmartel.protocol.radiotap.RadioTapCompactFrame;
+import fr.bmartel.protocol.radiotap.RadioTapCursor;
+import fr.bmartel.protocol.radiotap.inter.IRadioTapFrame;
+import fr.bmartel.protocol.radiotap.inter.IRadiotapPackedData;
+import fr.bmartel.utils.DirectBufferUtils;
+
+/**
+ * Append only store of decoded radiotap fields kept off heap.<br/>
+ * 
+ * Frames are stored in chunks of a fixed number of rows, each chunk being a
+ * direct buffer where values are laid out column by column, so that a scan
+ * over one field reads contiguous memory and retained frames cost nothing to
+ * the garbage collector.<br/>
+ * 
+ * Memory is released by close(), store must not be used afterwards. A store
+ * is not thread safe.
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class RadioTapFrameStore implements Closeable {
+
+	/** TSFT in microseconds (-1 if absent), 8 bytes */
+	public final static int COLUMN_TSFT = 0;
+
+	/** fields present (see RadioTapCompactFrame.getPresentFlags()), 4 bytes */
+	public final static int COLUMN_PRESENT = 1;
+
+	/** data rate in kbps, 4 bytes */
+	public final static int COLUMN_DATA_RATE = 2;
+
+	/** MCS field packed (see RadioTapMCS.pack()), 4 bytes */
+	public final static int COLUMN_MCS = 3;
+
+	/** channel frequency in MHz, 2 bytes */
+	public final static int COLUMN_FREQUENCY = 4;
+
+	/** channel flags, 2 bytes */
+	public final static int COLUMN_CHANNEL_FLAGS = 5;
+
+	/** lock quality, 2 bytes */
+	public final static int COLUMN_LOCK_QUALITY = 6;
+
+	/** tx attenuation, 2 bytes */
+	public final static int COLUMN_TX_ATTENUATION = 7;
+
+	/** db tx attenuation, 2 bytes */
+	public final static int COLUMN_DB_TX_ATTENUATION = 8;
+
+	/** rx flags, 2 bytes */
+	public final static int COLUMN_RX_FLAGS = 9;
+
+	/** it_len, 2 bytes */
+	public final static int COLUMN_HEADER_LENGTH = 10;
+
+	/** flags, 1 byte */
+	public final static int COLUMN_FLAGS = 11;
+
+	/** FHSS, 1 byte */
+	public final static int COLUMN_FHSS = 12;
+
+	/** dBm antenna signal, 1 byte */
+	public final static int COLUMN_DBM_SIGNAL = 13;
+
+	/** dBm antenna noise, 1 byte */
+	public final static int COLUMN_DBM_NOISE = 14;
+
+	/** dBm tx power, 1 byte */
+	public final static int COLUMN_DBM_TX_POWER = 15;
+
+	/** antenna index, 1 byte */
+	public final static int COLUMN_ANTENNA = 16;
+
+	/** dB antenna signal, 1 byte */
+	public final static int COLUMN_DB_SIGNAL = 17;
+
+	/** dB antenna noise, 1 byte */
+	public final static int COLUMN_DB_NOISE = 18;
+
+	/** VHT known, flags, bandwidth and mcs_nss (see RadioTapVHT.getPacked()), 8 bytes */
+	public final static int COLUMN_VHT = 19;
+
+	/** VHT coding, group_id and partial_aid (see RadioTapVHT.getPackedExt()), 4 bytes */
+	public final static int COLUMN_VHT_EXT = 20;
+
+	/** A-MPDU reference number, 4 bytes */
+	public final static int COLUMN_AMPDU_REFERENCE = 21;
+
+	/** A-MPDU flags (bits 0-15) and delimiter CRC (bits 16-23), 4 bytes */
+	public final static int COLUMN_AMPDU_STATUS = 22;
+
+	/** value width in bytes indexed by column */
+	private final static int[] COLUMN_WIDTH = new int[] { 8, 4, 4, 4, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1, 1, 8, 4,
+			4, 4 };
+
+	/** number of columns */
+	public final static int COLUMN_COUNT = COLUMN_WIDTH.length;
+
+	/** number of bytes used by one frame */
+	public final static int ROW_LENGTH = rowLength();
+
+	/** default number of rows per chunk */
+	public final static int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+	/** direct buffer of each chunk */
+	private final ArrayList<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+
+	/** position of each column in a chunk */
+	private final int[] columnOffsets = new int[COLUMN_COUNT];
+
+	/** number of rows per chunk (power of 2) */
+	private final int chunkSize;
+
+	private final int chunkShift;
+
+	/** number of frames stored */
+	private long size = 0;
+
+	private boolean closed = false;
+
+	/**
+	 * Build an empty store with default chunk size
+	 */
+	public RadioTapFrameStore() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Build an empty store
+	 * 
+	 * @param chunkSize
+	 *            number of rows per chunk, rounded up to a power of 2
+	 */
+	public RadioTapFrameStore(int chunkSize) {
+		if (chunkSize <= 0 || chunkSize > (1 << 24)) {
+			throw new IllegalArgumentException("chunk size must be in [1, 2^24]");
+		}
+		int rows = Math.max(Integer.highestOneBit(chunkSize * 2 - 1), 8);
+		this.chunkSize = rows;
+		this.chunkShift = Integer.numberOfTrailingZeros(rows);
+		// widest columns first so that every column is naturally aligned
+		int position = 0;
+		for (int width = 8; width > 0; width >>= 1) {
+			for (int column = 0; column < COLUMN_COUNT; column++) {
+				if (COLUMN_WIDTH[column] == width) {
+					columnOffsets[column] = position;
+					position += width * rows;
+				}
+			}
+		}
+	}
+
+	private static int rowLength() {
+		int length = 0;
+		for (int column = 0; column < COLUMN_WIDTH.length; column++) {
+			length += COLUMN_WIDTH[column];
+		}
+		return length;
+	}
+
+	/**
+	 * Append a decoded frame : frames other than RadioTapCursor and
+	 * RadioTapCompactFrame are packed in a compact frame first
+	 * 
+	 * @param frame
+	 *            decoded frame (RadioTap, wrapped RadioTapCursor...)
+	 * @return index of this frame in store
+	 */
+	public long append(IRadioTapFrame frame) {
+		if (frame instanceof IRadiotapPackedData) {
+			return append(frame.getRadioTapDataLength(), (IRadiotapPackedData) frame);
+		}
+		return append(new RadioTapCompactFrame(frame));
+	}
+
+	/**
+	 * Append the frame a cursor is wrapped on, reading values in place without
+	 * building any object
+	 * 
+	 * @param cursor
+	 * @return index of this frame in store
+	 */
+	public long append(RadioTapCursor cursor) {
+		return append(cursor.getRadioTapDataLength(), cursor);
+	}
+
+	/**
+	 * Append a compact frame
+	 * 
+	 * @param frame
+	 * @return index of this frame in store
+	 */
+	public long append(RadioTapCompactFrame frame) {
+		return append(frame.getRadioTapDataLength(), frame);
+	}
+
+	private long append(int headerLength, IRadiotapPackedData frame) {
+		checkOpen();
+		long index = size;
+		int row = (int) (index & (chunkSize - 1));
+		if (row == 0) {
+			chunks.add(ByteBuffer.allocateDirect(chunkSize * ROW_LENGTH).order(ByteOrder.nativeOrder()));
+		}
+		ByteBuffer chunk = chunks.get(chunks.size() - 1);
+
+		chunk.putLong(position(COLUMN_TSFT, row), frame.getTFST());
+		chunk.putInt(position(COLUMN_PRESENT, row), frame.getPresentFlags());
+		chunk.putInt(position(COLUMN_DATA_RATE, row), frame.getDataRate());
+		chunk.putInt(position(COLUMN_MCS, row), frame.getMcsPacked());
+		chunk.putShort(position(COLUMN_FREQUENCY, row), (short) frame.getFrequency());
+		chunk.putShort(position(COLUMN_CHANNEL_FLAGS, row), (short) frame.getChannelFlags());
+		chunk.putShort(position(COLUMN_LOCK_QUALITY, row), (short) frame.getLockQuality());
+		chunk.putShort(position(COLUMN_TX_ATTENUATION, row), (short) frame.getTxAttenuation());
+		chunk.putShort(position(COLUMN_DB_TX_ATTENUATION, row), (short) frame.getDbTxAttenuation());
+		chunk.putShort(position(COLUMN_RX_FLAGS, row), (short) frame.getRxFlags());
+		chunk.putShort(position(COLUMN_HEADER_LENGTH, row), (short) headerLength);
+		chunk.put(position(COLUMN_FLAGS, row), (byte) frame.getFlags());
+		chunk.put(position(COLUMN_FHSS, row), frame.getFHSS());
+		chunk.put(position(COLUMN_DBM_SIGNAL, row), frame.getDbmAntSignal());
+		chunk.put(position(COLUMN_DBM_NOISE, row), frame.getDbmAntNoise());
+		chunk.put(position(COLUMN_DBM_TX_POWER, row), frame.getDbmTxPower());
+		chunk.put(position(COLUMN_ANTENNA, row), frame.getAntenna());
+		chunk.put(position(COLUMN_DB_SIGNAL, row), frame.getDbAntennaSignal());
+		chunk.put(position(COLUMN_DB_NOISE, row), frame.getDbAntennaNoise());
+		chunk.putLong(position(COLUMN_VHT, row), frame.getVhtPacked());
+		chunk.putInt(position(COLUMN_VHT_EXT, row), frame.getVhtPackedExt());
+		chunk.putInt(position(COLUMN_AMPDU_REFERENCE, row), frame.getAmpduReference());
+		chunk.putInt(position(COLUMN_AMPDU_STATUS, row), frame.getAmpduFlags() | (frame.getAmpduDelimiterCrc() << 16));
+
+		size++;
+		return index;
+	}
+
+	private int position(int column, int row) {
+		return columnOffsets[column] + row * COLUMN_WIDTH[column];
+	}
+
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("frame store is closed");
+		}
+	}
+
+	/**
+	 * Chunk holding a frame
+	 */
+	private ByteBuffer chunk(long index) {
+		checkOpen();
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("frame " + index + " not in store of " + size + " frames");
+		}
+		return chunks.get((int) (index >>> chunkShift));
+	}
+
+	private int row(long index) {
+		return (int) (index & (chunkSize - 1));
+	}
+
+	public long getTsft(long index) {
+		return chunk(index).getLong(position(COLUMN_TSFT, row(index)));
+	}
+
+	public int getPresentFlags(long index) {
+		return chunk(index).getInt(position(COLUMN_PRESENT, row(index)));
+	}
+
+	public int getDataRate(long index) {
+		return chunk(index).getInt(position(COLUMN_DATA_RATE, row(index)));
+	}
+
+	public int getMcs(long index) {
+		return chunk(index).getInt(position(COLUMN_MCS, row(index)));
+	}
+
+	public int getFrequency(long index) {
+		return chunk(index).getShort(position(COLUMN_FREQUENCY, row(index))) & 0xFFFF;
+	}
+
+	public int getChannelFlags(long index) {
+		return chunk(index).getShort(position(COLUMN_CHANNEL_FLAGS, row(index))) & 0xFFFF;
+	}
+
+	public int getLockQuality(long index) {
+		return chunk(index).getShort(position(COLUMN_LOCK_QUALITY, row(index))) & 0xFFFF;
+	}
+
+	public int getTxAttenuation(long index) {
+		return chunk(index).getShort(position(COLUMN_TX_ATTENUATION, row(index))) & 0xFFFF;
+	}
+
+	public int getDbTxAttenuation(long index) {
+		return chunk(index).getShort(position(COLUMN_DB_TX_ATTENUATION, row(index))) & 0xFFFF;
+	}
+
+	public int getRxFlags(long index) {
+		return chunk(index).getShort(position(COLUMN_RX_FLAGS, row(index))) & 0xFFFF;
+	}
+
+	public int getHeaderLength(long index) {
+		return chunk(index).getShort(position(COLUMN_HEADER_LENGTH, row(index))) & 0xFFFF;
+	}
+
+	public int getFlags(long index) {
+		return chunk(index).get(position(COLUMN_FLAGS, row(index)));
+	}
+
+	public byte getFHSS(long index) {
+		return chunk(index).get(position(COLUMN_FHSS, row(index)));
+	}
+
+	public byte getDbmAntSignal(long index) {
+		return chunk(index).get(position(COLUMN_DBM_SIGNAL, row(index)));
+	}
+
+	public byte getDbmAntNoise(long index) {
+		return chunk(index).get(position(COLUMN_DBM_NOISE, row(index)));
+	}
+
+	public byte getDbmTxPower(long index) {
+		return chunk(index).get(position(COLUMN_DBM_TX_POWER, row(index)));
+	}
+
+	public byte getAntenna(long index) {
+		return chunk(index).get(position(COLUMN_ANTENNA, row(index)));
+	}
+
+	public byte getDbAntennaSignal(long index) {
+		return chunk(index).get(position(COLUMN_DB_SIGNAL, row(index)));
+	}
+
+	public byte getDbAntennaNoise(long index) {
+		return chunk(index).get(position(COLUMN_DB_NOISE, row(index)));
+	}
+
+	/**
+	 * VHT field (see RadioTapVHT.getPacked())
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public long getVht(long index) {
+		return chunk(index).getLong(position(COLUMN_VHT, row(index)));
+	}
+
+	/**
+	 * VHT coding, group_id and partial_aid (see RadioTapVHT.getPackedExt())
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public int getVhtExt(long index) {
+		return chunk(index).getInt(position(COLUMN_VHT_EXT, row(index)));
+	}
+
+	public int getAmpduReference(long index) {
+		return chunk(index).getInt(position(COLUMN_AMPDU_REFERENCE, row(index)));
+	}
+
+	public int getAmpduFlags(long index) {
+		return chunk(index).getInt(position(COLUMN_AMPDU_STATUS, row(index))) & 0xFFFF;
+	}
+
+	public int getAmpduDelimiterCrc(long index) {
+		return (chunk(index).getInt(position(COLUMN_AMPDU_STATUS, row(index))) >> 16) & 0xFF;
+	}
+
+	/**
+	 * Values of a column for all frames of a chunk, to scan a store
+	 * sequentially chunk after chunk
+	 * 
+	 * @param chunk
+	 *            chunk number
+	 * @param column
+	 *            one of COLUMN_*
+	 * @return read only view from position 0 to getRowCount(chunk) values in
+	 *         native byte order
+	 */
+	public ByteBuffer getColumn(int chunk, int column) {
+		checkOpen();
+		ByteBuffer view = chunks.get(chunk).duplicate();
+		view.position(columnOffsets[column]);
+		view.limit(columnOffsets[column] + getRowCount(chunk) * COLUMN_WIDTH[column]);
+		return view.slice().asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Number of frames in a chunk
+	 * 
+	 * @param chunk
+	 *            chunk number
+	 * @return
+	 */
+	public int getRowCount(int chunk) {
+		long remaining = size - ((long) chunk << chunkShift);
+		return (int) Math.max(0, Math.min(remaining, chunkSize));
+	}
+
+	/**
+	 * Number of frames stored
+	 * 
+	 * @return
+	 */
+	public long size() {
+		return size;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public int getChunkCount() {
+		return chunks.size();
+	}
+
+	/**
+	 * Off heap memory allocated by this store
+	 * 
+	 * @return size in bytes
+	 */
+	public long getAllocatedBytes() {
+		return (long) chunks.size() * chunkSize * ROW_LENGTH;
+	}
+
+	/**
+	 * Off heap memory holding frames
+	 * 
+	 * @return size in bytes
+	 */
+	public long getUsedBytes() {
+		return size * ROW_LENGTH;
+	}
+
+	/**
+	 * Describe memory usage
+	 * 
+	 * @return
+	 */
+	public String getMemoryReport() {
+		return "frames : " + size + " chunks : " + chunks.size() + " (" + chunkSize + " frames each) allocated : "
+				+ getAllocatedBytes() + " bytes used : " + getUsedBytes() + " bytes (" + ROW_LENGTH + " bytes per frame)";
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Release off heap memory : store and column views returned by
+	 * getColumn() must not be used anymore
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		for (int i = 0; i < chunks.size(); i++) {
+			DirectBufferUtils.free(chunks.get(i));
+		}
+		chunks.clear();
+		size = 0;
+	}
+}
@@ -0,0 +1,30 @@
+package fr.bmartel.protocol.radiotap.inter;
+
+/**
+ * Listener notified of aggregates leaving an A-MPDU tracker
+ *
+ * @author Bertrand Martel
+ *
+ */
+public interface IAmpduListener {
+
+	/**
+	 * Called when an aggregate is evicted from tracker (expired, table full or
+	 * flushed)
+	 *
+	 * @param reference
+	 *            A-MPDU reference number
+	 * @param subframeCount
+	 *            number of subframes seen
+	 * @param crcErrorCount
+	 *            number of subframes with a delimiter CRC error
+	 * @param lastSeen
+	 *            true if last subframe of aggregate has been seen
+	 * @param firstTime
+	 *            time of first subframe
+	 * @param lastTime
+	 *            time of last subframe
+	 */
+	public void onAggregate(int reference, int subframeCount, int crcErrorCount, boolean lastSeen, long firstTime, long lastTime);
+
+}
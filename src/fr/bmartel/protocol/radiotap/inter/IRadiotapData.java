@@ -1,5 +1,6 @@
 package fr.bmartel.protocol.radiotap.inter;
 
+import fr.bmartel.protocol.radiotap.RadioTapAMPDU;
 import fr.bmartel.protocol.radiotap.RadioTapMCS;
 import fr.bmartel.protocol.radiotap.RadioTapVHT;
 
@@ -55,9 +56,9 @@ public interface IRadiotapData {
 	/**
 	 * Value in microseconds of the MAC's 64-bit 802.11 Time Synchronization
 	 * Function timer when the first bit of the MPDU arrived at the MAC. For
-	 * received frames only.
+	 * received frames only (-1 if absent).
 	 */
-	public Long getTFST();
+	public long getTFST();
 	
 	/**
 	 * Transmit power expressed as dBm (decibels from a 1 milliwatt reference).
@@ -99,6 +100,11 @@ public interface IRadiotapData {
 	 */
 	public RadioTapVHT getVht();
 	
+	/**
+	 * A-MPDU status shared by all subframes of an aggregate
+	 */
+	public RadioTapAMPDU getAmpdu();
+	
 	/**
 	 * Transmit power expressed as unitless distance from max power set at factory calibration
 	 * 
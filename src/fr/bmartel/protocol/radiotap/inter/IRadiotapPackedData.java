@@ -0,0 +1,83 @@
+package fr.bmartel.protocol.radiotap.inter;
+
+/**
+ * Radiotap data whose composite fields can also be read as primitive values,
+ * without building any MCS, VHT, A-MPDU or channel object
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public interface IRadiotapPackedData extends IRadiotapData {
+
+	/**
+	 * Fields present
+	 * 
+	 * @return bitmask of RadioTapFlags.INDEX_* positions
+	 */
+	public int getPresentFlags();
+
+	/**
+	 * Channel frequency in MHz (0 if absent)
+	 * 
+	 * @return
+	 */
+	public int getFrequency();
+
+	/**
+	 * 16 bit channel flags (0 if absent)
+	 * 
+	 * @return
+	 */
+	public int getChannelFlags();
+
+	/**
+	 * 16 bit rx flags (0 if absent)
+	 * 
+	 * @return
+	 */
+	public int getRxFlags();
+
+	/**
+	 * MCS field packed as RadioTapMCS.pack() does (0 if absent)
+	 * 
+	 * @return
+	 */
+	public int getMcsPacked();
+
+	/**
+	 * A-MPDU reference number (0 if absent)
+	 * 
+	 * @return
+	 */
+	public int getAmpduReference();
+
+	/**
+	 * A-MPDU flags, see RadioTapAMPDU.FLAG_* (0 if absent)
+	 * 
+	 * @return
+	 */
+	public int getAmpduFlags();
+
+	/**
+	 * A-MPDU delimiter CRC value (0 if absent)
+	 * 
+	 * @return
+	 */
+	public int getAmpduDelimiterCrc();
+
+	/**
+	 * VHT known, flags, bandwidth and mcs_nss packed as RadioTapVHT.getPacked()
+	 * (0 if absent)
+	 * 
+	 * @return
+	 */
+	public long getVhtPacked();
+
+	/**
+	 * VHT coding, group_id and partial_aid packed as
+	 * RadioTapVHT.getPackedExt() (0 if absent)
+	 * 
+	 * @return
+	 */
+	public int getVhtPackedExt();
+}
@@ -0,0 +1,290 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.radiotapdecoder.batch;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import fr.bmartel.protocol.radiotap.RadioTapCursor;
+import fr.bmartel.radiotapdecoder.io.IPacketListener;
+import fr.bmartel.radiotapdecoder.io.IPacketReader;
+import fr.bmartel.radiotapdecoder.io.PcapNgStreamReader;
+import fr.bmartel.utils.RadioTapStatus;
+
+/**
+ * Decode a set of capture files concurrently in a single JVM, one task per
+ * file.<br/>
+ * 
+ * Tasks run on virtual threads when the running JVM provides them (Java 21+),
+ * otherwise on a pool of maxOpenFiles threads. Whatever the executor, number
+ * of files open at once and memory used by read buffers are bounded by
+ * semaphores. A file that fails to decode is reported in its result without
+ * stopping other files.
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class CaptureBatchDecoder {
+
+	/** default number of files decoded at once */
+	public final static int DEFAULT_MAX_OPEN_FILES = 16;
+
+	/** default memory used by read buffers of all files decoded at once */
+	public final static long DEFAULT_MAX_MEMORY = 64L << 20;
+
+	/** memory accounted per semaphore permit */
+	private final static int MEMORY_UNIT = 1024;
+
+	private final int maxOpenFiles;
+
+	private final int bufferSize;
+
+	private final Semaphore openFiles;
+
+	private final Semaphore memory;
+
+	/** memory permits needed by a file */
+	private final int bufferPermits;
+
+	/**
+	 * Build a batch decoder with default limits
+	 */
+	public CaptureBatchDecoder() {
+		this(DEFAULT_MAX_OPEN_FILES, DEFAULT_MAX_MEMORY, PcapNgStreamReader.DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Build a batch decoder
+	 * 
+	 * @param maxOpenFiles
+	 *            maximum number of files decoded at once
+	 * @param maxMemory
+	 *            maximum number of bytes of read buffers allocated at once
+	 * @param bufferSize
+	 *            read buffer size of each file, which is the maximum size of a
+	 *            block
+	 */
+	public CaptureBatchDecoder(int maxOpenFiles, long maxMemory, int bufferSize) {
+		if (maxOpenFiles <= 0) {
+			throw new IllegalArgumentException("maximum number of open files must be positive");
+		}
+		if (maxMemory < bufferSize) {
+			throw new IllegalArgumentException("maximum memory is lower than buffer size");
+		}
+		this.maxOpenFiles = maxOpenFiles;
+		this.bufferSize = bufferSize;
+		this.openFiles = new Semaphore(maxOpenFiles, true);
+		this.memory = new Semaphore((int) Math.min(maxMemory / MEMORY_UNIT, Integer.MAX_VALUE), true);
+		this.bufferPermits = (bufferSize + MEMORY_UNIT - 1) / MEMORY_UNIT;
+	}
+
+	/**
+	 * List capture files to decode
+	 * 
+	 * @param pattern
+	 *            directory (all its *.pcapng files) or glob on file name such
+	 *            as /var/capture/wlan0-*.pcapng
+	 * @return files sorted by name
+	 * @throws IOException
+	 *             directory can't be read
+	 */
+	public static List<Path> listFiles(Path pattern) throws IOException {
+		Path directory;
+		String glob;
+		if (Files.isDirectory(pattern)) {
+			directory = pattern;
+			glob = "*.pcapng";
+		} else {
+			directory = pattern.getParent();
+			glob = pattern.getFileName().toString();
+			if (directory == null) {
+				directory = pattern.toAbsolutePath().getParent();
+			}
+		}
+		List<Path> files = new ArrayList<Path>();
+		DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob);
+		try {
+			for (Path path : stream) {
+				if (Files.isRegularFile(path)) {
+					files.add(path);
+				}
+			}
+		} finally {
+			stream.close();
+		}
+		Collections.sort(files);
+		return files;
+	}
+
+	/**
+	 * Decode all files, blocking until every file has been decoded
+	 * 
+	 * @param files
+	 *            capture files
+	 * @return results in files order
+	 * @throws InterruptedException
+	 */
+	public List<CaptureResult> decode(List<Path> files) throws InterruptedException {
+		ExecutorService executor = newExecutor(maxOpenFiles);
+		List<CaptureResult> results = new ArrayList<CaptureResult>(files.size());
+		try {
+			List<Future<CaptureResult>> futures = new ArrayList<Future<CaptureResult>>(files.size());
+			for (final Path path : files) {
+				futures.add(executor.submit(new Callable<CaptureResult>() {
+
+					@Override
+					public CaptureResult call() throws Exception {
+						return decode(path);
+					}
+				}));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					results.add(futures.get(i).get());
+				} catch (ExecutionException e) {
+					// decode(Path) reports its own errors, only unexpected ones land here
+					CaptureResult result = new CaptureResult(files.get(i));
+					result.error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+					results.add(result);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return results;
+	}
+
+	/**
+	 * Decode a single file once open file and memory permits are available
+	 * 
+	 * @param path
+	 *            capture file
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public CaptureResult decode(Path path) throws InterruptedException {
+		CaptureResult result = new CaptureResult(path);
+		openFiles.acquire();
+		try {
+			memory.acquire(bufferPermits);
+			try {
+				long startTime = System.currentTimeMillis();
+				decode(path, result);
+				result.duration = System.currentTimeMillis() - startTime;
+			} finally {
+				memory.release(bufferPermits);
+			}
+		} finally {
+			openFiles.release();
+		}
+		return result;
+	}
+
+	private void decode(Path path, final CaptureResult result) {
+		final RadioTapCursor cursor = new RadioTapCursor();
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(path, StandardOpenOption.READ);
+			PcapNgStreamReader reader = new PcapNgStreamReader(channel, bufferSize);
+			reader.read(new IPacketListener() {
+
+				@Override
+				public void onPacket(ByteBuffer buffer, int offset, int length, int linkType, long timestamp) {
+					if (linkType != IPacketReader.LINKTYPE_IEEE802_11_RADIOTAP) {
+						result.otherLinkCount++;
+						return;
+					}
+					int status = cursor.decode(buffer, offset, length);
+					if (status != RadioTapStatus.SUCCESS_STATUS) {
+						result.errorCount[-status]++;
+					}
+					if (RadioTapStatus.isDecoded(status)) {
+						result.frameCount++;
+					}
+				}
+			});
+			result.truncated = reader.isTruncated();
+			result.skippedBlockCount = reader.getSkippedBlockCount();
+		} catch (IOException e) {
+			result.error = e;
+		} catch (RuntimeException e) {
+			result.error = e;
+		} finally {
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check if tasks run on virtual threads
+	 * 
+	 * @return
+	 */
+	public static boolean isVirtualThreadAvailable() {
+		return getVirtualThreadFactory() != null;
+	}
+
+	/**
+	 * Executors.newVirtualThreadPerTaskExecutor() looked up by reflection so
+	 * that this class still runs on JVMs without virtual threads
+	 */
+	private static Method getVirtualThreadFactory() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static ExecutorService newExecutor(int threadCount) {
+		Method factory = getVirtualThreadFactory();
+		if (factory != null) {
+			try {
+				return (ExecutorService) factory.invoke(null);
+			} catch (Exception e) {
+				// fall back to platform threads
+			}
+		}
+		return Executors.newFixedThreadPool(threadCount);
+	}
+}
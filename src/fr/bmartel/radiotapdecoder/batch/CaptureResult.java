@@ -0,0 +1,143 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.radiotapdecoder.batch;
+
+import java.nio.file.Path;
+
+import fr.bmartel.utils.RadioTapStatus;
+
+/**
+ * Decoding result of a single capture file of a batch
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class CaptureResult {
+
+	private final Path path;
+
+	/** number of radiotap frames decoded */
+	long frameCount = 0;
+
+	/** number of packets that are not radiotap */
+	long otherLinkCount = 0;
+
+	/** number of malformed frames indexed by opposite of status */
+	final long[] errorCount = new long[RadioTapStatus.STATUS_COUNT];
+
+	boolean truncated = false;
+
+	long skippedBlockCount = 0;
+
+	/** error that stopped decoding of this file */
+	Exception error = null;
+
+	/** decoding time in milliseconds */
+	long duration = 0;
+
+	CaptureResult(Path path) {
+		this.path = path;
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Number of radiotap frames decoded (malformed ones with unknown fields
+	 * included)
+	 * 
+	 * @return
+	 */
+	public long getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * Number of packets whose link type is not radiotap
+	 * 
+	 * @return
+	 */
+	public long getOtherLinkCount() {
+		return otherLinkCount;
+	}
+
+	/**
+	 * Number of malformed frames for a decoding status
+	 * 
+	 * @param status
+	 *            decoding status (see RadioTapStatus)
+	 * @return
+	 */
+	public long getErrorCount(int status) {
+		if (status > 0 || -status >= errorCount.length) {
+			return 0;
+		}
+		return errorCount[-status];
+	}
+
+	/**
+	 * Number of malformed frames whatever the reason
+	 * 
+	 * @return
+	 */
+	public long getErrorCount() {
+		long count = 0;
+		for (int i = 1; i < errorCount.length; i++) {
+			count += errorCount[i];
+		}
+		return count;
+	}
+
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	public long getSkippedBlockCount() {
+		return skippedBlockCount;
+	}
+
+	/**
+	 * Error that stopped decoding of this file, counts holding what was
+	 * decoded before
+	 * 
+	 * @return null if file was decoded until its end
+	 */
+	public Exception getError() {
+		return error;
+	}
+
+	public boolean isSuccess() {
+		return error == null;
+	}
+
+	/**
+	 * Decoding time
+	 * 
+	 * @return time in milliseconds
+	 */
+	public long getDuration() {
+		return duration;
+	}
+}
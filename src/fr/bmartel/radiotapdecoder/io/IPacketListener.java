@@ -0,0 +1,34 @@
+package fr.bmartel.radiotapdecoder.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Listener receiving captured packets as they are read from a capture
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public interface IPacketListener {
+
+	/**
+	 * Called for each captured packet. Packet bytes are only valid during this
+	 * call : stream readers overwrite buffer content afterwards, mapped readers
+	 * keep it readable unless eager unmapping is enabled.
+	 * 
+	 * @param buffer
+	 *            heap or direct buffer holding packet data (position and limit
+	 *            are not significant)
+	 * @param offset
+	 *            absolute position of packet data in buffer
+	 * @param length
+	 *            captured length
+	 * @param linkType
+	 *            link type of interface packet was captured on (127 for
+	 *            radiotap)
+	 * @param timestamp
+	 *            capture timestamp in interface resolution units
+	 *            (microseconds by default)
+	 */
+	public void onPacket(ByteBuffer buffer, int offset, int length, int linkType, long timestamp);
+
+}
@@ -0,0 +1,46 @@
+package fr.bmartel.radiotapdecoder.io;
+
+import java.io.IOException;
+
+/**
+ * Template for capture readers handing packets to a listener one at a time
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public interface IPacketReader {
+
+	/** link type of radiotap frames */
+	public final static int LINKTYPE_IEEE802_11_RADIOTAP = 127;
+
+	/**
+	 * Read all packets until end of capture
+	 * 
+	 * @param listener
+	 *            listener receiving each packet
+	 * @return number of packets read
+	 * @throws IOException
+	 *             read error or invalid capture
+	 */
+	public long read(IPacketListener listener) throws IOException;
+
+	/**
+	 * Read until next packet
+	 * 
+	 * @param listener
+	 *            listener receiving packet
+	 * @return false if end of capture has been reached
+	 * @throws IOException
+	 *             read error or invalid capture
+	 */
+	public boolean next(IPacketListener listener) throws IOException;
+
+	/** Number of packets handed to listener */
+	public long getPacketCount();
+
+	/** Number of blocks or records skipped because they were too large */
+	public long getSkippedBlockCount();
+
+	/** Check if capture ended in the middle of a block or record */
+	public boolean isTruncated();
+}
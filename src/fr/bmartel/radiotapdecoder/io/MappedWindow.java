@@ -0,0 +1,141 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.radiotapdecoder.io;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import fr.bmartel.utils.DirectBufferUtils;
+
+/**
+ * Read only mapping of a file region moved along the file on demand, shared
+ * by mapped readers. Previous mapping is dropped when window moves and
+ * unmapped by garbage collector once no buffer refers to it anymore, unless
+ * eager unmapping has been requested.
+ * 
+ * @author Bertrand Martel
+ *
+ */
+class MappedWindow {
+
+	private final FileChannel channel;
+
+	private final int windowSize;
+
+	/** current mapping (null before first mapping or after release) */
+	MappedByteBuffer buffer = null;
+
+	/** file offset of current mapping */
+	long start = 0;
+
+	/** file size last time it was checked */
+	private long fileSize;
+
+	/** byte order kept when window moves */
+	private ByteOrder order = ByteOrder.BIG_ENDIAN;
+
+	private long mapCount = 0;
+
+	/** unmap previous mapping right away instead of leaving it to GC */
+	private boolean eagerUnmap = false;
+
+	MappedWindow(FileChannel channel, int windowSize) throws IOException {
+		this.channel = channel;
+		this.windowSize = windowSize;
+		this.fileSize = channel.size();
+	}
+
+	/**
+	 * Make sure count bytes starting at file offset are mapped, moving window
+	 * to offset if needed
+	 * 
+	 * @return false if file ends before
+	 */
+	boolean map(long offset, int count) throws IOException {
+		if (buffer != null && offset >= start && offset + count <= start + buffer.limit()) {
+			return true;
+		}
+		if (!isAvailable(offset, count)) {
+			return false;
+		}
+		release();
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(windowSize, fileSize - offset));
+		buffer.order(order);
+		start = offset;
+		mapCount++;
+		return true;
+	}
+
+	/**
+	 * Check if file holds count bytes at offset, file size being checked
+	 * again if it may have grown
+	 */
+	boolean isAvailable(long offset, long count) throws IOException {
+		if (offset + count > fileSize) {
+			fileSize = channel.size();
+		}
+		return offset + count <= fileSize;
+	}
+
+	/**
+	 * Position of a mapped file offset in buffer
+	 */
+	int position(long offset) {
+		return (int) (offset - start);
+	}
+
+	/**
+	 * Keep current buffer byte order for next mappings
+	 */
+	void saveOrder() {
+		order = buffer.order();
+	}
+
+	long getFileSize() {
+		return fileSize;
+	}
+
+	int getWindowSize() {
+		return windowSize;
+	}
+
+	long getMapCount() {
+		return mapCount;
+	}
+
+	void setEagerUnmap(boolean eagerUnmap) {
+		this.eagerUnmap = eagerUnmap;
+	}
+
+	void release() {
+		if (buffer != null) {
+			if (eagerUnmap) {
+				DirectBufferUtils.free(buffer);
+			}
+			buffer = null;
+		}
+	}
+}
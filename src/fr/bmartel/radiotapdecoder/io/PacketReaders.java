@@ -0,0 +1,133 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.radiotapdecoder.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Open a packet reader on a capture whose format (pcapng or classic pcap) is
+ * detected from its first bytes, so that captures can be read from channels
+ * that can't be rewound such as stdin or a named pipe
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class PacketReaders {
+
+	private PacketReaders() {
+	}
+
+	/**
+	 * Open a stream reader with default buffer size
+	 * 
+	 * @param channel
+	 *            channel capture is read from
+	 * @return
+	 * @throws IOException
+	 *             read error, empty or unknown capture format
+	 */
+	public static IPacketReader open(ReadableByteChannel channel) throws IOException {
+		return open(channel, PcapNgStreamReader.DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Open a stream reader, blocking until capture first 4 bytes are read
+	 * 
+	 * @param channel
+	 *            channel capture is read from
+	 * @param bufferSize
+	 *            buffer size, which is the maximum size of a block or record
+	 * @return
+	 * @throws IOException
+	 *             read error, empty or unknown capture format
+	 */
+	public static IPacketReader open(ReadableByteChannel channel, int bufferSize) throws IOException {
+		ByteBuffer magic = ByteBuffer.allocate(4);
+		while (magic.hasRemaining()) {
+			if (channel.read(magic) < 0) {
+				throw new EOFException("capture is empty or too short");
+			}
+		}
+		magic.flip();
+		int value = magic.getInt(0);
+		if (value == PcapNgSection.SECTION_HEADER_BLOCK) {
+			return new PcapNgStreamReader(channel, bufferSize, magic);
+		}
+		if (PcapFormat.isMagic(value)) {
+			return new PcapStreamReader(channel, bufferSize, magic);
+		}
+		throw new IOException("unknown capture format");
+	}
+
+	/**
+	 * Open a memory mapped reader on a capture file, handing packets to
+	 * listener without any copy
+	 * 
+	 * @param channel
+	 *            file channel opened for reading
+	 * @return a PcapNgMappedReader or a PcapMappedReader (both Closeable)
+	 * @throws IOException
+	 *             read error, empty or unknown capture format
+	 */
+	public static IPacketReader openMapped(FileChannel channel) throws IOException {
+		int value = getMagic(channel);
+		if (value == PcapNgSection.SECTION_HEADER_BLOCK) {
+			return new PcapNgMappedReader(channel);
+		}
+		if (PcapFormat.isMagic(value)) {
+			return new PcapMappedReader(channel);
+		}
+		throw new IOException("unknown capture format");
+	}
+
+	/**
+	 * Check if a capture file is a classic pcap file
+	 * 
+	 * @param channel
+	 *            file channel opened for reading
+	 * @return
+	 * @throws IOException
+	 *             read error
+	 */
+	public static boolean isPcap(FileChannel channel) throws IOException {
+		return channel.size() >= 4 && PcapFormat.isMagic(getMagic(channel));
+	}
+
+	/**
+	 * First 4 bytes of a file read without moving channel position
+	 */
+	private static int getMagic(FileChannel channel) throws IOException {
+		ByteBuffer magic = ByteBuffer.allocate(4);
+		while (magic.hasRemaining()) {
+			if (channel.read(magic, magic.position()) < 0) {
+				throw new EOFException("capture is empty or too short");
+			}
+		}
+		return magic.getInt(0);
+	}
+}
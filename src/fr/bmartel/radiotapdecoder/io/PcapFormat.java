@@ -0,0 +1,109 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.radiotapdecoder.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Classic libpcap file format : global header followed by records made of a
+ * 16 bytes header and packet data, shared by pcap readers
+ * 
+ * @author Bertrand Martel
+ *
+ */
+class PcapFormat {
+
+	/** magic of files with microsecond timestamps, written in writer byte order */
+	final static int MAGIC_MICROSECONDS = 0xA1B2C3D4;
+
+	/** magic of files with nanosecond timestamps, written in writer byte order */
+	final static int MAGIC_NANOSECONDS = 0xA1B23C4D;
+
+	final static int GLOBAL_HEADER_LENGTH = 24;
+
+	final static int RECORD_HEADER_LENGTH = 16;
+
+	/** link type bits of global header network field (upper bits hold FCS information) */
+	private final static int LINKTYPE_MASK = 0x03FFFFFF;
+
+	/**
+	 * Check if an int read in any byte order is a pcap magic
+	 */
+	static boolean isMagic(int magic) {
+		return magic == MAGIC_MICROSECONDS || magic == MAGIC_NANOSECONDS
+				|| magic == Integer.reverseBytes(MAGIC_MICROSECONDS) || magic == Integer.reverseBytes(MAGIC_NANOSECONDS);
+	}
+
+	/**
+	 * Set byte order of buffer from global header magic
+	 * 
+	 * @param buffer
+	 *            buffer holding global header
+	 * @param position
+	 *            position of global header
+	 * @return true if timestamps have nanosecond resolution
+	 */
+	static boolean readMagic(ByteBuffer buffer, int position) throws IOException {
+		int magic = buffer.getInt(position);
+		if (!isMagic(magic)) {
+			throw new IOException("invalid pcap magic");
+		}
+		if (magic != MAGIC_MICROSECONDS && magic != MAGIC_NANOSECONDS) {
+			buffer.order(buffer.order() == ByteOrder.BIG_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+			magic = buffer.getInt(position);
+		}
+		return magic == MAGIC_NANOSECONDS;
+	}
+
+	/**
+	 * Link type of global header
+	 */
+	static int readLinkType(ByteBuffer buffer, int position) {
+		return buffer.getInt(position + 20) & LINKTYPE_MASK;
+	}
+
+	/**
+	 * Captured length of a record
+	 */
+	static int readCapturedLength(ByteBuffer buffer, int position) throws IOException {
+		int capturedLength = buffer.getInt(position + 8);
+		if (capturedLength < 0) {
+			throw new IOException("invalid pcap record length " + (capturedLength & 0xFFFFFFFFL));
+		}
+		return capturedLength;
+	}
+
+	/**
+	 * Timestamp of a record
+	 * 
+	 * @return timestamp in microseconds or nanoseconds
+	 */
+	static long readTimestamp(ByteBuffer buffer, int position, boolean nanosecond) {
+		long seconds = buffer.getInt(position) & 0xFFFFFFFFL;
+		long fraction = buffer.getInt(position + 4) & 0xFFFFFFFFL;
+		return seconds * (nanosecond ? 1000000000L : 1000000L) + fraction;
+	}
+}
@@ -0,0 +1,216 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.radiotapdecoder.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read classic libpcap files mapped in memory : each record is handed to
+ * listener as a slice (offset and length) of the mapping, without any copy, so
+ * that it can be decoded in place with RadioTapCursor or RadioTap.<br/>
+ * 
+ * Both byte orders and both microsecond and nanosecond magics are supported.
+ * File is mapped through a sliding window moved to the record crossing window
+ * end, records larger than window being skipped.<br/>
+ * 
+ * Previous windows are unmapped by garbage collector, so that packet buffers
+ * retained by listener (lazy RadioTap...) stay readable after window has moved
+ * or reader has been closed. Callers that never retain them may release
+ * address space earlier with setEagerUnmap(true).
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class PcapMappedReader implements IPacketReader, Closeable {
+
+	/** mapped region of file */
+	private final MappedWindow window;
+
+	/** file offset of next record */
+	private long offset = 0;
+
+	private boolean headerRead = false;
+
+	private int linkType = -1;
+
+	private boolean nanosecond = false;
+
+	private boolean truncated = false;
+
+	private long packetCount = 0;
+
+	private long skippedBlockCount = 0;
+
+	/**
+	 * Build a reader with default window size
+	 * 
+	 * @param channel
+	 *            file channel opened for reading
+	 */
+	public PcapMappedReader(FileChannel channel) throws IOException {
+		this(channel, PcapNgMappedReader.DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Build a reader
+	 * 
+	 * @param channel
+	 *            file channel opened for reading
+	 * @param windowSize
+	 *            size of mapped window, which is the maximum size of a record
+	 */
+	public PcapMappedReader(FileChannel channel, int windowSize) throws IOException {
+		if (windowSize < 64) {
+			throw new IllegalArgumentException("window size must be at least 64 bytes");
+		}
+		this.window = new MappedWindow(channel, windowSize);
+	}
+
+	@Override
+	public long read(IPacketListener listener) throws IOException {
+		long count = 0;
+		while (next(listener)) {
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public boolean next(IPacketListener listener) throws IOException {
+		if (!headerRead) {
+			if (!window.map(0, PcapFormat.GLOBAL_HEADER_LENGTH)) {
+				truncated = window.getFileSize() > 0;
+				return false;
+			}
+			nanosecond = PcapFormat.readMagic(window.buffer, 0);
+			linkType = PcapFormat.readLinkType(window.buffer, 0);
+			window.saveOrder();
+			offset = PcapFormat.GLOBAL_HEADER_LENGTH;
+			headerRead = true;
+		}
+		while (true) {
+			if (!window.map(offset, PcapFormat.RECORD_HEADER_LENGTH)) {
+				truncated = offset < window.getFileSize();
+				return false;
+			}
+			int position = window.position(offset);
+			int capturedLength = PcapFormat.readCapturedLength(window.buffer, position);
+			long length = PcapFormat.RECORD_HEADER_LENGTH + (long) capturedLength;
+			if (length > window.getWindowSize()) {
+				if (!window.isAvailable(offset, length)) {
+					truncated = true;
+					return false;
+				}
+				offset += length;
+				skippedBlockCount++;
+				continue;
+			}
+			if (!window.map(offset, (int) length)) {
+				truncated = true;
+				return false;
+			}
+			position = window.position(offset);
+			offset += length;
+			packetCount++;
+			listener.onPacket(window.buffer, position + PcapFormat.RECORD_HEADER_LENGTH, capturedLength, linkType,
+					PcapFormat.readTimestamp(window.buffer, position, nanosecond));
+			return true;
+		}
+	}
+
+	/**
+	 * Drop current window (channel is left open), unmapping it right away if
+	 * eager unmapping is enabled
+	 */
+	@Override
+	public void close() {
+		window.release();
+	}
+
+	/**
+	 * Unmap previous window as soon as window moves or reader is closed
+	 * instead of leaving it to garbage collector (disabled by default).<br/>
+	 * 
+	 * Any buffer handed to listener must then not be accessed after next
+	 * window move or close : reading unmapped memory crashes the JVM.
+	 * 
+	 * @param eagerUnmap
+	 */
+	public void setEagerUnmap(boolean eagerUnmap) {
+		window.setEagerUnmap(eagerUnmap);
+	}
+
+	/**
+	 * Link type of all packets
+	 * 
+	 * @return link type (-1 before global header is read)
+	 */
+	public int getLinkType() {
+		return linkType;
+	}
+
+	/**
+	 * Check if timestamps are in nanoseconds (microseconds otherwise)
+	 * 
+	 * @return
+	 */
+	public boolean isNanosecond() {
+		return nanosecond;
+	}
+
+	/**
+	 * File offset of next record
+	 * 
+	 * @return
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Number of windows mapped since creation
+	 * 
+	 * @return
+	 */
+	public long getMapCount() {
+		return window.getMapCount();
+	}
+
+	@Override
+	public long getPacketCount() {
+		return packetCount;
+	}
+
+	@Override
+	public long getSkippedBlockCount() {
+		return skippedBlockCount;
+	}
+
+	@Override
+	public boolean isTruncated() {
+		return truncated;
+	}
+}
@@ -0,0 +1,288 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.radiotapdecoder.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Follow a pcapng capture still being written, like tail -f : packets are
+ * handed to listener as capture process appends them, reading waits when it
+ * reaches end of file or a block partially written, and no byte is read
+ * twice.<br/>
+ * 
+ * When files of a ring buffer are given (glob matching file names in
+ * directory of first file), reading switches to the next file of the ring
+ * once it has been created, file names being sorted as dumpcap numbers them.
+ * Current file is read until its end before switching.<br/>
+ * 
+ * Reading only ends when stop() is called or reading thread is interrupted.
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class PcapNgFollowReader implements IPacketReader, Closeable {
+
+	/** default time between two checks of file size */
+	public final static long DEFAULT_POLL_INTERVAL = 200;
+
+	private final Path directory;
+
+	/** glob matching ring file names (null if file is not rotated) */
+	private final String ringGlob;
+
+	private final long pollInterval;
+
+	private final int bufferSize;
+
+	/** file being read */
+	private volatile Path current;
+
+	private FileChannel channel = null;
+
+	/** reader of current file (null until file is opened) */
+	private PcapNgStreamReader reader = null;
+
+	/** file following current one in ring once it exists */
+	private Path nextFile = null;
+
+	private volatile boolean stopped = false;
+
+	private long packetCount = 0;
+
+	private long skippedBlockCount = 0;
+
+	private long fileCount = 0;
+
+	private long truncatedFileCount = 0;
+
+	/**
+	 * Follow a single file with default poll interval and buffer size
+	 * 
+	 * @param file
+	 *            pcapng file
+	 */
+	public PcapNgFollowReader(Path file) {
+		this(file, null, DEFAULT_POLL_INTERVAL, PcapNgStreamReader.DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Follow a ring of files
+	 * 
+	 * @param file
+	 *            first file read
+	 * @param ringGlob
+	 *            glob matching file names of ring in directory of first file
+	 *            (null to follow first file only)
+	 * @param pollInterval
+	 *            time in milliseconds between two checks of file size
+	 * @param bufferSize
+	 *            read buffer size, which is the maximum size of a block
+	 */
+	public PcapNgFollowReader(Path file, String ringGlob, long pollInterval, int bufferSize) {
+		if (pollInterval <= 0) {
+			throw new IllegalArgumentException("poll interval must be positive");
+		}
+		this.directory = file.toAbsolutePath().getParent();
+		this.current = file.toAbsolutePath();
+		this.ringGlob = ringGlob;
+		this.pollInterval = pollInterval;
+		this.bufferSize = bufferSize;
+	}
+
+	@Override
+	public long read(IPacketListener listener) throws IOException {
+		long count = 0;
+		while (next(listener)) {
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public boolean next(IPacketListener listener) throws IOException {
+		while (!stopped) {
+			if (reader == null) {
+				channel = FileChannel.open(current, StandardOpenOption.READ);
+				reader = new PcapNgStreamReader(new FollowChannel(), bufferSize);
+				fileCount++;
+			}
+			if (reader.next(listener)) {
+				packetCount++;
+				return true;
+			}
+			// current file is complete (rotated) or reading was stopped
+			if (reader.isTruncated()) {
+				truncatedFileCount++;
+			}
+			skippedBlockCount += reader.getSkippedBlockCount();
+			closeFile();
+			if (nextFile == null) {
+				return false;
+			}
+			current = nextFile;
+			nextFile = null;
+		}
+		return false;
+	}
+
+	/**
+	 * Make reading end as soon as possible : a blocked read returns at next
+	 * poll
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		stop();
+		closeFile();
+	}
+
+	private void closeFile() throws IOException {
+		reader = null;
+		if (channel != null) {
+			FileChannel closed = channel;
+			channel = null;
+			closed.close();
+		}
+	}
+
+	/**
+	 * First file of ring whose name sorts after current file name
+	 */
+	private Path findNextFile() throws IOException {
+		String currentName = current.getFileName().toString();
+		Path next = null;
+		DirectoryStream<Path> stream = Files.newDirectoryStream(directory, ringGlob);
+		try {
+			for (Path path : stream) {
+				String name = path.getFileName().toString();
+				if (name.compareTo(currentName) > 0
+						&& (next == null || name.compareTo(next.getFileName().toString()) < 0)) {
+					next = path;
+				}
+			}
+		} finally {
+			stream.close();
+		}
+		return next;
+	}
+
+	/**
+	 * Channel on current file waiting for data at end of file, ending only
+	 * when next file of ring exists or reading is stopped
+	 */
+	private final class FollowChannel implements ReadableByteChannel {
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			while (true) {
+				int count = channel.read(dst);
+				if (count >= 0) {
+					return count;
+				}
+				if (stopped) {
+					return -1;
+				}
+				if (ringGlob != null) {
+					nextFile = findNextFile();
+					if (nextFile != null) {
+						// data may have been appended before next file was created
+						count = channel.read(dst);
+						return count > 0 ? count : -1;
+					}
+				}
+				try {
+					Thread.sleep(pollInterval);
+				} catch (InterruptedException e) {
+					stopped = true;
+					Thread.currentThread().interrupt();
+					return -1;
+				}
+			}
+		}
+
+		@Override
+		public boolean isOpen() {
+			return channel != null && channel.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException {
+			closeFile();
+		}
+	}
+
+	/**
+	 * File being read
+	 * 
+	 * @return
+	 */
+	public Path getCurrentFile() {
+		return current;
+	}
+
+	/**
+	 * Number of files opened since creation
+	 * 
+	 * @return
+	 */
+	public long getFileCount() {
+		return fileCount;
+	}
+
+	/**
+	 * Number of files that ended in the middle of a block when next file of
+	 * ring was created
+	 * 
+	 * @return
+	 */
+	public long getTruncatedFileCount() {
+		return truncatedFileCount;
+	}
+
+	@Override
+	public long getPacketCount() {
+		return packetCount;
+	}
+
+	@Override
+	public long getSkippedBlockCount() {
+		return skippedBlockCount + (reader != null ? reader.getSkippedBlockCount() : 0);
+	}
+
+	@Override
+	public boolean isTruncated() {
+		return truncatedFileCount > 0;
+	}
+}
@@ -0,0 +1,162 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.radiotapdecoder.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Location of every packet of a pcapng file built by a single scan of block
+ * headers, so that packets can then be read in any order or split in ranges
+ * decoded concurrently.<br/>
+ * 
+ * Per packet data are kept in primitive arrays : file offset and length of
+ * packet data, link type and timestamp.
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class PcapNgIndex {
+
+	private final static int INITIAL_CAPACITY = 1024;
+
+	private long[] offsets = new long[INITIAL_CAPACITY];
+
+	private int[] lengths = new int[INITIAL_CAPACITY];
+
+	private int[] linkTypes = new int[INITIAL_CAPACITY];
+
+	private long[] timestamps = new long[INITIAL_CAPACITY];
+
+	private int size = 0;
+
+	private boolean truncated = false;
+
+	private long skippedBlockCount = 0;
+
+	private PcapNgIndex() {
+	}
+
+	/**
+	 * Scan a pcapng file and index its packets
+	 * 
+	 * @param channel
+	 *            file channel opened for reading
+	 * @return
+	 * @throws IOException
+	 *             read error or invalid pcapng file
+	 */
+	public static PcapNgIndex build(FileChannel channel) throws IOException {
+		final PcapNgIndex index = new PcapNgIndex();
+		final PcapNgMappedReader reader = new PcapNgMappedReader(channel);
+		try {
+			reader.read(new IPacketListener() {
+
+				@Override
+				public void onPacket(ByteBuffer buffer, int offset, int length, int linkType, long timestamp) {
+					index.add(reader.getFileOffset(offset), length, linkType, timestamp);
+				}
+			});
+		} finally {
+			reader.close();
+		}
+		index.truncated = reader.isTruncated();
+		index.skippedBlockCount = reader.getSkippedBlockCount();
+		return index;
+	}
+
+	private void add(long offset, int length, int linkType, long timestamp) {
+		if (size == offsets.length) {
+			int capacity = size * 2;
+			offsets = Arrays.copyOf(offsets, capacity);
+			lengths = Arrays.copyOf(lengths, capacity);
+			linkTypes = Arrays.copyOf(linkTypes, capacity);
+			timestamps = Arrays.copyOf(timestamps, capacity);
+		}
+		offsets[size] = offset;
+		lengths[size] = length;
+		linkTypes[size] = linkType;
+		timestamps[size] = timestamp;
+		size++;
+	}
+
+	/**
+	 * Number of packets indexed
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * File offset of packet data
+	 * 
+	 * @param index
+	 *            packet number
+	 * @return
+	 */
+	public long getOffset(int index) {
+		return offsets[index];
+	}
+
+	/**
+	 * Captured length of packet data
+	 * 
+	 * @param index
+	 *            packet number
+	 * @return
+	 */
+	public int getLength(int index) {
+		return lengths[index];
+	}
+
+	public int getLinkType(int index) {
+		return linkTypes[index];
+	}
+
+	public long getTimestamp(int index) {
+		return timestamps[index];
+	}
+
+	/**
+	 * Check if file ended in the middle of a block
+	 * 
+	 * @return
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * Number of blocks too large to be indexed
+	 * 
+	 * @return
+	 */
+	public long getSkippedBlockCount() {
+		return skippedBlockCount;
+	}
+}
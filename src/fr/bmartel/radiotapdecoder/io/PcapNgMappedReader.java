@@ -0,0 +1,237 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.radiotapdecoder.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read pcapng blocks from a file mapped in memory : packets are handed to
+ * listener straight from the mapping without being copied to heap.<br/>
+ * 
+ * File is mapped through a sliding window so that files larger than address
+ * space or than 2GB can be read. When a block crosses window end, a new window
+ * starting at this block is mapped. Blocks larger than window are skipped.<br/>
+ * 
+ * Previous windows are unmapped by garbage collector, so that packet buffers
+ * retained by listener (lazy RadioTap...) stay readable after window has moved
+ * or reader has been closed. Callers that never retain them may release
+ * address space earlier with setEagerUnmap(true).
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class PcapNgMappedReader implements IPacketReader, Closeable {
+
+	/** default size of mapped window */
+	public final static int DEFAULT_WINDOW_SIZE = 1 << 28;
+
+	/** mapped region of file */
+	private final MappedWindow window;
+
+	/** file offset of next block */
+	private long offset = 0;
+
+	/** interfaces of current section */
+	private final PcapNgSection section = new PcapNgSection();
+
+	private boolean truncated = false;
+
+	private long blockCount = 0;
+
+	private long packetCount = 0;
+
+	private long skippedBlockCount = 0;
+
+	/**
+	 * Build a reader with default window size
+	 * 
+	 * @param channel
+	 *            file channel opened for reading
+	 */
+	public PcapNgMappedReader(FileChannel channel) throws IOException {
+		this(channel, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Build a reader
+	 * 
+	 * @param channel
+	 *            file channel opened for reading
+	 * @param windowSize
+	 *            size of mapped window, which is the maximum size of a block
+	 */
+	public PcapNgMappedReader(FileChannel channel, int windowSize) throws IOException {
+		if (windowSize < 64) {
+			throw new IllegalArgumentException("window size must be at least 64 bytes");
+		}
+		this.window = new MappedWindow(channel, windowSize);
+	}
+
+	@Override
+	public long read(IPacketListener listener) throws IOException {
+		long count = 0;
+		while (next(listener)) {
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public boolean next(IPacketListener listener) throws IOException {
+		while (true) {
+			if (!window.map(offset, 8)) {
+				truncated = offset < window.getFileSize();
+				return false;
+			}
+			int position = window.position(offset);
+			int type = window.buffer.getInt(position);
+
+			if (type == PcapNgSection.SECTION_HEADER_BLOCK) {
+				if (!window.map(offset, 12)) {
+					truncated = true;
+					return false;
+				}
+				position = window.position(offset);
+				section.start(window.buffer, position);
+				window.saveOrder();
+			}
+
+			int length = window.buffer.getInt(position + 4);
+			PcapNgSection.checkLength(length);
+			if (length > window.getWindowSize()) {
+				if (type == PcapNgSection.INTERFACE_DESCRIPTION_BLOCK && window.map(offset, 12)) {
+					// keep interface numbering even if its options are skipped
+					section.addInterface(window.buffer.getShort(window.position(offset) + 8) & 0xFFFF);
+				}
+				if (!window.isAvailable(offset, length)) {
+					truncated = true;
+					return false;
+				}
+				offset += length;
+				skippedBlockCount++;
+				continue;
+			}
+			if (!window.map(offset, length)) {
+				truncated = true;
+				return false;
+			}
+			position = window.position(offset);
+			offset += length;
+			blockCount++;
+
+			if (section.readBlock(window.buffer, type, position, length, listener)) {
+				packetCount++;
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Drop current window (channel is left open), unmapping it right away if
+	 * eager unmapping is enabled
+	 */
+	@Override
+	public void close() {
+		window.release();
+	}
+
+	/**
+	 * Unmap previous window as soon as window moves or reader is closed
+	 * instead of leaving it to garbage collector (disabled by default).<br/>
+	 * 
+	 * Any buffer handed to listener must then not be accessed after next
+	 * window move or close : reading unmapped memory crashes the JVM.
+	 * 
+	 * @param eagerUnmap
+	 */
+	public void setEagerUnmap(boolean eagerUnmap) {
+		window.setEagerUnmap(eagerUnmap);
+	}
+
+	/**
+	 * Link type of an interface of current section
+	 * 
+	 * @param interfaceId
+	 *            interface number
+	 * @return link type (-1 if interface is not defined)
+	 */
+	public int getLinkType(int interfaceId) {
+		return section.getLinkType(interfaceId);
+	}
+
+	/**
+	 * File offset of a position of the buffer last handed to listener
+	 * 
+	 * @param bufferOffset
+	 *            absolute position in buffer
+	 * @return
+	 */
+	public long getFileOffset(int bufferOffset) {
+		return window.start + bufferOffset;
+	}
+
+	/**
+	 * File offset of next block
+	 * 
+	 * @return
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Number of blocks read
+	 * 
+	 * @return
+	 */
+	public long getBlockCount() {
+		return blockCount;
+	}
+
+	/**
+	 * Number of windows mapped since creation
+	 * 
+	 * @return
+	 */
+	public long getMapCount() {
+		return window.getMapCount();
+	}
+
+	@Override
+	public long getPacketCount() {
+		return packetCount;
+	}
+
+	@Override
+	public long getSkippedBlockCount() {
+		return skippedBlockCount;
+	}
+
+	@Override
+	public boolean isTruncated() {
+		return truncated;
+	}
+}
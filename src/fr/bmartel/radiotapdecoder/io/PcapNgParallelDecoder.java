@@ -0,0 +1,204 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.radiotapdecoder.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import fr.bmartel.protocol.radiotap.RadioTapCompactFrame;
+import fr.bmartel.protocol.radiotap.RadioTapCursor;
+import fr.bmartel.protocol.radiotap.RadioTapLayoutCache;
+import fr.bmartel.utils.RadioTapStatus;
+
+/**
+ * Decode radiotap headers of an indexed pcapng file on a fork/join pool.<br/>
+ * 
+ * Packet range is split in halves until ranges are small enough, idle workers
+ * stealing pending halves from busy ones. Each leaf range is read with a
+ * single positional read and decoded by its own cursor. Results are stored at
+ * their packet number so that they come out in capture order without any
+ * merge step.
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class PcapNgParallelDecoder {
+
+	/** default maximum number of packets decoded by a leaf task */
+	public final static int DEFAULT_GRAIN = 1024;
+
+	/** maximum number of bytes read by a leaf task */
+	private final static int MAX_SPAN = 1 << 24;
+
+	private final ForkJoinPool pool;
+
+	private final RadioTapLayoutCache layoutCache;
+
+	private final int grain;
+
+	/**
+	 * Build a decoder using default layout cache and grain
+	 * 
+	 * @param pool
+	 *            pool decoding tasks are run on
+	 */
+	public PcapNgParallelDecoder(ForkJoinPool pool) {
+		this(pool, RadioTapLayoutCache.getDefaultCache(), DEFAULT_GRAIN);
+	}
+
+	/**
+	 * Build a decoder
+	 * 
+	 * @param pool
+	 *            pool decoding tasks are run on
+	 * @param layoutCache
+	 *            cache shared by all tasks to locate fields
+	 * @param grain
+	 *            maximum number of packets decoded by a leaf task
+	 */
+	public PcapNgParallelDecoder(ForkJoinPool pool, RadioTapLayoutCache layoutCache, int grain) {
+		if (grain <= 0) {
+			throw new IllegalArgumentException("grain must be positive");
+		}
+		this.pool = pool;
+		this.layoutCache = layoutCache;
+		this.grain = grain;
+	}
+
+	/**
+	 * Decode radiotap packets of an indexed file
+	 * 
+	 * @param channel
+	 *            file channel index was built from
+	 * @param index
+	 *            packet index
+	 * @param status
+	 *            array receiving decoding status of each radiotap packet (see
+	 *            RadioTapStatus), at least index.size() long
+	 * @return frames indexed by packet number (null for packets that are not
+	 *         radiotap or could not be decoded)
+	 * @throws IOException
+	 *             read error
+	 */
+	public RadioTapCompactFrame[] decode(FileChannel channel, PcapNgIndex index, int[] status) throws IOException {
+		if (status.length < index.size()) {
+			throw new IllegalArgumentException("status array is too small");
+		}
+		Job job = new Job(channel, index, new RadioTapCompactFrame[index.size()], status);
+		pool.invoke(new DecodeTask(job, 0, index.size()));
+		if (job.error != null) {
+			throw job.error;
+		}
+		return job.frames;
+	}
+
+	/**
+	 * State shared by all tasks of a decoding
+	 */
+	private final static class Job {
+
+		private final FileChannel channel;
+
+		private final PcapNgIndex index;
+
+		private final RadioTapCompactFrame[] frames;
+
+		private final int[] status;
+
+		/** first read error, remaining tasks stop as soon as it is set */
+		private volatile IOException error = null;
+
+		private Job(FileChannel channel, PcapNgIndex index, RadioTapCompactFrame[] frames, int[] status) {
+			this.channel = channel;
+			this.index = index;
+			this.frames = frames;
+			this.status = status;
+		}
+	}
+
+	/**
+	 * Decode packets from (inclusive) to (exclusive)
+	 */
+	private final class DecodeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Job job;
+
+		private final int from;
+
+		private final int to;
+
+		private DecodeTask(Job job, int from, int to) {
+			this.job = job;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (job.error != null || from == to) {
+				return;
+			}
+			long span = job.index.getOffset(to - 1) + job.index.getLength(to - 1) - job.index.getOffset(from);
+			if (to - from > 1 && (to - from > grain || span > MAX_SPAN)) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new DecodeTask(job, from, middle), new DecodeTask(job, middle, to));
+				return;
+			}
+			try {
+				decodeRange((int) span);
+			} catch (IOException e) {
+				job.error = e;
+			}
+		}
+
+		private void decodeRange(int span) throws IOException {
+			long start = job.index.getOffset(from);
+			byte[] data = new byte[span];
+			ByteBuffer buffer = ByteBuffer.wrap(data);
+			while (buffer.hasRemaining()) {
+				if (job.channel.read(buffer, start + buffer.position()) < 0) {
+					throw new EOFException("file is shorter than indexed");
+				}
+			}
+
+			RadioTapCursor cursor = new RadioTapCursor(layoutCache);
+			for (int i = from; i < to; i++) {
+				if (job.index.getLinkType(i) != IPacketReader.LINKTYPE_IEEE802_11_RADIOTAP) {
+					continue;
+				}
+				int status = cursor.decode(data, (int) (job.index.getOffset(i) - start), job.index.getLength(i));
+				job.status[i] = status;
+				if (RadioTapStatus.isDecoded(status)) {
+					job.frames[i] = new RadioTapCompactFrame(cursor);
+				}
+			}
+		}
+	}
+}
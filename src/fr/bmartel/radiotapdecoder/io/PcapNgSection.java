@@ -0,0 +1,163 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.radiotapdecoder.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * State of current pcapng section (byte order and interfaces) and decoding
+ * of blocks lying in a buffer, shared by pcapng readers
+ * 
+ * @author Bertrand Martel
+ *
+ */
+class PcapNgSection {
+
+	final static int SECTION_HEADER_BLOCK = 0x0A0D0D0A;
+	final static int INTERFACE_DESCRIPTION_BLOCK = 0x00000001;
+	final static int PACKET_BLOCK = 0x00000002;
+	final static int SIMPLE_PACKET_BLOCK = 0x00000003;
+	final static int ENHANCED_PACKET_BLOCK = 0x00000006;
+
+	/** byte order magic of section header block */
+	private final static int BYTE_ORDER_MAGIC = 0x1A2B3C4D;
+
+	/** block type, block total length and trailing block total length */
+	final static int BLOCK_OVERHEAD = 12;
+
+	/** link type of each interface of current section */
+	private int[] linkTypes = new int[4];
+
+	private int interfaceCount = 0;
+
+	/**
+	 * Start a new section : set byte order of buffer from section header block
+	 * byte order magic and forget interfaces of previous section
+	 * 
+	 * @param buffer
+	 *            buffer holding at least 12 bytes of section header block
+	 * @param position
+	 *            position of section header block
+	 */
+	void start(ByteBuffer buffer, int position) throws IOException {
+		if (buffer.getInt(position + 8) != BYTE_ORDER_MAGIC) {
+			buffer.order(buffer.order() == ByteOrder.BIG_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+			if (buffer.getInt(position + 8) != BYTE_ORDER_MAGIC) {
+				throw new IOException("invalid pcapng byte order magic");
+			}
+		}
+		interfaceCount = 0;
+	}
+
+	/**
+	 * Check block total length
+	 */
+	static void checkLength(int length) throws IOException {
+		if (length < BLOCK_OVERHEAD || (length & 3) != 0) {
+			throw new IOException("invalid pcapng block length " + (length & 0xFFFFFFFFL));
+		}
+	}
+
+	void addInterface(int linkType) {
+		if (interfaceCount == linkTypes.length) {
+			int[] types = new int[linkTypes.length * 2];
+			System.arraycopy(linkTypes, 0, types, 0, interfaceCount);
+			linkTypes = types;
+		}
+		linkTypes[interfaceCount++] = linkType;
+	}
+
+	/**
+	 * Link type of an interface of current section
+	 * 
+	 * @param interfaceId
+	 *            interface number
+	 * @return link type (-1 if interface is not defined)
+	 */
+	int getLinkType(int interfaceId) {
+		if (interfaceId < 0 || interfaceId >= interfaceCount) {
+			return -1;
+		}
+		return linkTypes[interfaceId];
+	}
+
+	/**
+	 * Decode a block fully held in buffer
+	 * 
+	 * @param buffer
+	 *            buffer in section byte order
+	 * @param type
+	 *            block type
+	 * @param position
+	 *            absolute position of block
+	 * @param length
+	 *            block total length
+	 * @param listener
+	 *            listener receiving packet
+	 * @return true if block was a packet handed to listener
+	 */
+	boolean readBlock(ByteBuffer buffer, int type, int position, int length, IPacketListener listener) throws IOException {
+		switch (type) {
+		case INTERFACE_DESCRIPTION_BLOCK:
+			addInterface(buffer.getShort(position + 8) & 0xFFFF);
+			return false;
+		case ENHANCED_PACKET_BLOCK: {
+			int interfaceId = buffer.getInt(position + 8);
+			int capturedLength = buffer.getInt(position + 20);
+			checkPacket(capturedLength, length - 32);
+			listener.onPacket(buffer, position + 28, capturedLength, getLinkType(interfaceId), readTimestamp(buffer, position + 12));
+			return true;
+		}
+		case PACKET_BLOCK: {
+			int interfaceId = buffer.getShort(position + 8) & 0xFFFF;
+			int capturedLength = buffer.getInt(position + 20);
+			checkPacket(capturedLength, length - 32);
+			listener.onPacket(buffer, position + 28, capturedLength, getLinkType(interfaceId), readTimestamp(buffer, position + 12));
+			return true;
+		}
+		case SIMPLE_PACKET_BLOCK: {
+			int originalLength = buffer.getInt(position + 8);
+			int capturedLength = length - 16;
+			if (originalLength >= 0 && originalLength < capturedLength) {
+				capturedLength = originalLength;
+			}
+			listener.onPacket(buffer, position + 12, capturedLength, getLinkType(0), 0);
+			return true;
+		}
+		}
+		return false;
+	}
+
+	private static long readTimestamp(ByteBuffer buffer, int position) {
+		return ((buffer.getInt(position) & 0xFFFFFFFFL) << 32) | (buffer.getInt(position + 4) & 0xFFFFFFFFL);
+	}
+
+	private static void checkPacket(int capturedLength, int available) throws IOException {
+		if (capturedLength < 0 || capturedLength > available) {
+			throw new IOException("invalid pcapng packet length " + (capturedLength & 0xFFFFFFFFL));
+		}
+	}
+}
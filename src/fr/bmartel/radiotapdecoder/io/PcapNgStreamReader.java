@@ -0,0 +1,190 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.radiotapdecoder.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Read pcapng blocks incrementally from a channel through a single fixed size
+ * buffer, each packet being handed to a listener as soon as its block is
+ * read. Memory used doesn't depend on capture size.<br/>
+ * 
+ * Blocks larger than buffer are skipped. A truncated last block (capture still
+ * being written) ends reading without error.
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class PcapNgStreamReader implements IPacketReader {
+
+	/** default buffer size : maximum size of a block read */
+	public final static int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+	private final StreamBuffer input;
+
+	/** data not consumed yet lies between position and limit */
+	private final ByteBuffer buffer;
+
+	/** byte order and interfaces of current section */
+	private final PcapNgSection section = new PcapNgSection();
+
+	private boolean truncated = false;
+
+	private long blockCount = 0;
+
+	private long packetCount = 0;
+
+	private long skippedBlockCount = 0;
+
+	/**
+	 * Build a reader with default buffer size
+	 * 
+	 * @param channel
+	 *            channel pcapng stream is read from
+	 */
+	public PcapNgStreamReader(ReadableByteChannel channel) {
+		this(channel, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Build a reader
+	 * 
+	 * @param channel
+	 *            channel pcapng stream is read from
+	 * @param bufferSize
+	 *            buffer size, which is the maximum size of a block
+	 */
+	public PcapNgStreamReader(ReadableByteChannel channel, int bufferSize) {
+		this(channel, bufferSize, null);
+	}
+
+	/**
+	 * Build a reader on a channel whose first bytes have already been read
+	 * 
+	 * @param prefix
+	 *            bytes already read from channel (may be null)
+	 */
+	PcapNgStreamReader(ReadableByteChannel channel, int bufferSize, ByteBuffer prefix) {
+		if (bufferSize < 64) {
+			throw new IllegalArgumentException("buffer size must be at least 64 bytes");
+		}
+		input = new StreamBuffer(channel, bufferSize, prefix);
+		buffer = input.buffer;
+	}
+
+	@Override
+	public long read(IPacketListener listener) throws IOException {
+		long count = 0;
+		while (next(listener)) {
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public boolean next(IPacketListener listener) throws IOException {
+		while (true) {
+			if (!input.fill(8)) {
+				truncated = buffer.hasRemaining();
+				return false;
+			}
+			int position = buffer.position();
+			int type = buffer.getInt(position);
+
+			if (type == PcapNgSection.SECTION_HEADER_BLOCK) {
+				if (!input.fill(12)) {
+					truncated = true;
+					return false;
+				}
+				// buffer content may have been moved
+				position = buffer.position();
+				section.start(buffer, position);
+			}
+
+			int length = buffer.getInt(position + 4);
+			PcapNgSection.checkLength(length);
+			if (length > buffer.capacity()) {
+				if (type == PcapNgSection.INTERFACE_DESCRIPTION_BLOCK && input.fill(12)) {
+					// keep interface numbering even if its options are skipped
+					section.addInterface(buffer.getShort(buffer.position() + 8) & 0xFFFF);
+				}
+				if (!input.skip(length & 0xFFFFFFFFL)) {
+					truncated = true;
+					return false;
+				}
+				skippedBlockCount++;
+				continue;
+			}
+			if (!input.fill(length)) {
+				truncated = true;
+				return false;
+			}
+			position = buffer.position();
+			buffer.position(position + length);
+			blockCount++;
+
+			if (section.readBlock(buffer, type, position, length, listener)) {
+				packetCount++;
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Link type of an interface of current section
+	 * 
+	 * @param interfaceId
+	 *            interface number
+	 * @return link type (-1 if interface is not defined)
+	 */
+	public int getLinkType(int interfaceId) {
+		return section.getLinkType(interfaceId);
+	}
+
+	/**
+	 * Number of blocks read
+	 * 
+	 * @return
+	 */
+	public long getBlockCount() {
+		return blockCount;
+	}
+
+	@Override
+	public long getPacketCount() {
+		return packetCount;
+	}
+
+	@Override
+	public long getSkippedBlockCount() {
+		return skippedBlockCount;
+	}
+
+	@Override
+	public boolean isTruncated() {
+		return truncated;
+	}
+}
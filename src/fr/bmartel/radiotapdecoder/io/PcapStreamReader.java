@@ -0,0 +1,179 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.radiotapdecoder.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Read classic libpcap records incrementally from a channel (file, pipe,
+ * stdin) through a single fixed size buffer, each packet being handed to a
+ * listener as soon as its record is complete.<br/>
+ * 
+ * Both byte orders and both microsecond and nanosecond magics are supported.
+ * Records larger than buffer are skipped. A truncated last record ends
+ * reading without error.
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class PcapStreamReader implements IPacketReader {
+
+	private final StreamBuffer input;
+
+	/** data not consumed yet lies between position and limit */
+	private final ByteBuffer buffer;
+
+	private boolean headerRead = false;
+
+	private int linkType = -1;
+
+	private boolean nanosecond = false;
+
+	private boolean truncated = false;
+
+	private long packetCount = 0;
+
+	private long skippedBlockCount = 0;
+
+	/**
+	 * Build a reader with default buffer size
+	 * 
+	 * @param channel
+	 *            channel pcap stream is read from
+	 */
+	public PcapStreamReader(ReadableByteChannel channel) {
+		this(channel, PcapNgStreamReader.DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Build a reader
+	 * 
+	 * @param channel
+	 *            channel pcap stream is read from
+	 * @param bufferSize
+	 *            buffer size, which is the maximum size of a record
+	 */
+	public PcapStreamReader(ReadableByteChannel channel, int bufferSize) {
+		this(channel, bufferSize, null);
+	}
+
+	/**
+	 * Build a reader on a channel whose first bytes have already been read
+	 * 
+	 * @param prefix
+	 *            bytes already read from channel (may be null)
+	 */
+	PcapStreamReader(ReadableByteChannel channel, int bufferSize, ByteBuffer prefix) {
+		if (bufferSize < 64) {
+			throw new IllegalArgumentException("buffer size must be at least 64 bytes");
+		}
+		input = new StreamBuffer(channel, bufferSize, prefix);
+		buffer = input.buffer;
+	}
+
+	@Override
+	public long read(IPacketListener listener) throws IOException {
+		long count = 0;
+		while (next(listener)) {
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public boolean next(IPacketListener listener) throws IOException {
+		if (!headerRead) {
+			if (!input.fill(PcapFormat.GLOBAL_HEADER_LENGTH)) {
+				truncated = buffer.hasRemaining();
+				return false;
+			}
+			int position = buffer.position();
+			nanosecond = PcapFormat.readMagic(buffer, position);
+			linkType = PcapFormat.readLinkType(buffer, position);
+			buffer.position(position + PcapFormat.GLOBAL_HEADER_LENGTH);
+			headerRead = true;
+		}
+		while (true) {
+			if (!input.fill(PcapFormat.RECORD_HEADER_LENGTH)) {
+				truncated = buffer.hasRemaining();
+				return false;
+			}
+			int capturedLength = PcapFormat.readCapturedLength(buffer, buffer.position());
+			int length = PcapFormat.RECORD_HEADER_LENGTH + capturedLength;
+			if (capturedLength > buffer.capacity() - PcapFormat.RECORD_HEADER_LENGTH) {
+				if (!input.skip((long) PcapFormat.RECORD_HEADER_LENGTH + capturedLength)) {
+					truncated = true;
+					return false;
+				}
+				skippedBlockCount++;
+				continue;
+			}
+			if (!input.fill(length)) {
+				truncated = true;
+				return false;
+			}
+			int position = buffer.position();
+			buffer.position(position + length);
+			packetCount++;
+			listener.onPacket(buffer, position + PcapFormat.RECORD_HEADER_LENGTH, capturedLength, linkType,
+					PcapFormat.readTimestamp(buffer, position, nanosecond));
+			return true;
+		}
+	}
+
+	/**
+	 * Link type of all packets
+	 * 
+	 * @return link type (-1 before global header is read)
+	 */
+	public int getLinkType() {
+		return linkType;
+	}
+
+	/**
+	 * Check if timestamps are in nanoseconds (microseconds otherwise)
+	 * 
+	 * @return
+	 */
+	public boolean isNanosecond() {
+		return nanosecond;
+	}
+
+	@Override
+	public long getPacketCount() {
+		return packetCount;
+	}
+
+	@Override
+	public long getSkippedBlockCount() {
+		return skippedBlockCount;
+	}
+
+	@Override
+	public boolean isTruncated() {
+		return truncated;
+	}
+}
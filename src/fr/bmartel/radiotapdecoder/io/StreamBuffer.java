@@ -0,0 +1,104 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.radiotapdecoder.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Fixed size buffer refilled from a channel, shared by stream readers : data
+ * not consumed yet lies between buffer position and limit
+ * 
+ * @author Bertrand Martel
+ *
+ */
+class StreamBuffer {
+
+	private final ReadableByteChannel channel;
+
+	final ByteBuffer buffer;
+
+	private boolean endOfStream = false;
+
+	/**
+	 * Build a stream buffer
+	 * 
+	 * @param channel
+	 *            channel data is read from
+	 * @param size
+	 *            buffer size
+	 * @param prefix
+	 *            data already read from channel (may be null)
+	 */
+	StreamBuffer(ReadableByteChannel channel, int size, ByteBuffer prefix) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocate(size);
+		if (prefix != null) {
+			buffer.put(prefix);
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Make sure at least count bytes are available in buffer, blocking only
+	 * until they are
+	 * 
+	 * @return false if end of stream was reached before
+	 */
+	boolean fill(int count) throws IOException {
+		if (buffer.remaining() >= count) {
+			return true;
+		}
+		buffer.compact();
+		try {
+			while (buffer.position() < count && !endOfStream) {
+				if (channel.read(buffer) < 0) {
+					endOfStream = true;
+				}
+			}
+		} finally {
+			buffer.flip();
+		}
+		return buffer.remaining() >= count;
+	}
+
+	/**
+	 * Skip data larger than buffer
+	 * 
+	 * @return false if end of stream was reached before
+	 */
+	boolean skip(long count) throws IOException {
+		long remaining = count;
+		while (remaining > 0) {
+			if (!fill(1)) {
+				return false;
+			}
+			int step = (int) Math.min(remaining, buffer.remaining());
+			buffer.position(buffer.position() + step);
+			remaining -= step;
+		}
+		return true;
+	}
+}
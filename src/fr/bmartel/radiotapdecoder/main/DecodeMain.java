@@ -23,18 +23,47 @@
  */
 package fr.bmartel.radiotapdecoder.main;
 
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import fr.bmartel.pcapdecoder.PcapDecoder;
+import fr.bmartel.pcapdecoder.constant.LinkLayerConstants;
+import fr.bmartel.pcapdecoder.structure.types.inter.IDescriptionBlock;
 import fr.bmartel.pcapdecoder.structure.types.inter.IEnhancedPacketBLock;
+import fr.bmartel.pcapdecoder.structure.types.inter.ISectionHeaderBlock;
 import fr.bmartel.pcapdecoder.utils.DecoderStatus;
-import fr.bmartel.protocol.radiotap.RadioTap;
+import fr.bmartel.protocol.radiotap.RadioTapCompactFrame;
+import fr.bmartel.protocol.radiotap.RadioTapCursor;
 import fr.bmartel.protocol.radiotap.inter.IRadioTapFrame;
-import fr.bmartel.utils.RadioTapException;
+import fr.bmartel.radiotapdecoder.batch.CaptureBatchDecoder;
+import fr.bmartel.radiotapdecoder.batch.CaptureResult;
+import fr.bmartel.radiotapdecoder.io.IPacketListener;
+import fr.bmartel.radiotapdecoder.io.IPacketReader;
+import fr.bmartel.radiotapdecoder.io.PacketReaders;
+import fr.bmartel.radiotapdecoder.io.PcapMappedReader;
+import fr.bmartel.radiotapdecoder.io.PcapNgFollowReader;
+import fr.bmartel.radiotapdecoder.io.PcapNgIndex;
+import fr.bmartel.radiotapdecoder.io.PcapNgParallelDecoder;
+import fr.bmartel.radiotapdecoder.io.PcapNgStreamReader;
+import fr.bmartel.radiotapdecoder.net.ISensorFrameSink;
+import fr.bmartel.radiotapdecoder.net.RadioTapUdpServer;
+import fr.bmartel.radiotapdecoder.net.SensorStats;
+import fr.bmartel.utils.RadioTapStatus;
 
 /**
  * @mainpage  PCAP NG JAVA File parser
@@ -43,10 +72,26 @@ import fr.bmartel.utils.RadioTapException;
 
 java -cp ../lib/pcapngdecoder-1.0.jar:radiotapdecoder-1.0.jar  fr.bmartel.radiotapdecoder.main.DecodeMain -f ../radiotap_file/exemple.pcapng  -v
 
--f <file.pcapng> : input file
+-f <file.pcapng> : input file (pcapng or classic pcap), - to read pcapng or pcap stream from stdin (implies -s)
 
 -v               : verbose, will show all section parsing content
 
+-s               : streaming, decode and display each frame while file is read with constant memory (pcapng or pcap, works on named pipes)
+
+-m               : same as -s but file (pcapng or pcap) is memory mapped and frames are decoded in place (stdin and fifos fall back to -s)
+
+-p               : parallel, index packets then decode them on all cores, frames being displayed in capture order
+
+-t <file|glob>   : follow a capture still being written like tail -f, switching to next file of ring when a glob such as 'ring_*.pcapng' is given (starting from its last file)
+
+-u <[host:]port> : listen for radiotap frames forwarded by sensors over UDP, displaying each frame (verbose) or per sensor statistics each second
+
+-d <dir|glob>    : batch, decode all *.pcapng files of a directory or files matching a glob concurrently and display a result per file
+
+-j <count>       : maximum number of files decoded at once in batch mode (16 by default)
+
+-M <megabytes>   : maximum memory used by read buffers in batch mode (64 by default)
+
 This exemple is launched from release folder
 
 <hr/>
@@ -94,83 +139,700 @@ public class DecodeMain {
 
 		long startTime = System.currentTimeMillis();
 		boolean verbose = false;
+		boolean streaming = false;
+		boolean mapped = false;
+		boolean parallel = false;
+		String inputFile = null;
+		String batchPattern = null;
+		String followPattern = null;
+		String udpAddress = null;
+		int maxOpenFiles = CaptureBatchDecoder.DEFAULT_MAX_OPEN_FILES;
+		long maxMemory = CaptureBatchDecoder.DEFAULT_MAX_MEMORY;
 		
-		if (args.length > 1) {
-			
-			byte[] dataFromFile= new byte[]{};
-			
-			if (args[0].equals("-f"))
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-f"))
+			{
+				if (i + 1 >= args.length)
+				{
+					System.err.println("Insufficient argument");
+					return;
+				}
+				inputFile = args[++i];
+			}
+			else if (args[i].equals("-v"))
+			{
+				verbose = true;
+			}
+			else if (args[i].equals("-s"))
+			{
+				streaming = true;
+			}
+			else if (args[i].equals("-m"))
+			{
+				streaming = true;
+				mapped = true;
+			}
+			else if (args[i].equals("-p"))
+			{
+				parallel = true;
+			}
+			else if (args[i].equals("-u"))
 			{
-				dataFromFile = readFile(args[1]);
-				if (args.length>2 && args[2].equals("-v"))
+				if (i + 1 >= args.length)
 				{
-					verbose=true;
+					System.err.println("Insufficient argument");
+					return;
 				}
+				udpAddress = args[++i];
 			}
-			else if (args[0].equals("-v"))
+			else if (args[i].equals("-t"))
 			{
-				verbose=true;
-				if (args.length>2)
+				if (i + 1 >= args.length)
 				{
-					if (args[1].equals("-f"))
-						dataFromFile = readFile(args[2]);
-					else
-					{
-						System.err.println("Insufficient argument");
-						return;
-					}
+					System.err.println("Insufficient argument");
+					return;
 				}
-				else
+				followPattern = args[++i];
+			}
+			else if (args[i].equals("-d") || args[i].equals("-j") || args[i].equals("-M"))
+			{
+				if (i + 1 >= args.length)
 				{
 					System.err.println("Insufficient argument");
 					return;
 				}
+				String option = args[i++];
+				try {
+					if (option.equals("-d"))
+						batchPattern = args[i];
+					else if (option.equals("-j"))
+						maxOpenFiles = Integer.parseInt(args[i]);
+					else
+						maxMemory = Long.parseLong(args[i]) << 20;
+				} catch (NumberFormatException e) {
+					System.err.println("Invalid argument");
+					return;
+				}
 			}
 			else
 			{
 				System.err.println("Invalid argument");
 				return;
 			}
+		}
+		
+		if (udpAddress != null)
+		{
+			listenUdp(udpAddress, verbose);
+			return;
+		}
+		
+		if (followPattern != null)
+		{
+			decodeFollow(followPattern, verbose);
+			return;
+		}
+		
+		if (batchPattern != null)
+		{
+			decodeBatch(batchPattern, maxOpenFiles, maxMemory, startTime);
+			return;
+		}
+		
+		if (inputFile == null)
+		{
+			System.err.println("Insufficient argument");
+			return;
+		}
+		
+		if (parallel)
+		{
+			decodeParallel(inputFile, verbose, startTime);
+			return;
+		}
+		
+		if (streaming || inputFile.equals("-"))
+		{
+			decodeStream(inputFile, verbose, mapped, startTime);
+			return;
+		}
+		
+		if (isPcapFile(inputFile))
+		{
+			// bundled decoder only reads pcapng
+			decodePcap(inputFile, verbose, startTime);
+			return;
+		}
+		
+		byte[] dataFromFile = readFile(inputFile);
+		
+		if (dataFromFile.length > 0) {
+			PcapDecoder pcapNgDecoder = new PcapDecoder(dataFromFile);
+			int status = pcapNgDecoder.decode();
 			
-			if (dataFromFile.length > 0) {
-				PcapDecoder pcapNgDecoder = new PcapDecoder(dataFromFile);
-				int status = pcapNgDecoder.decode();
+			if (status == DecoderStatus.SUCCESS_STATUS)
+			{
+				ArrayList<IRadioTapFrame> radiotapFrame = new ArrayList<IRadioTapFrame>();
 				
-				if (status == DecoderStatus.SUCCESS_STATUS)
+				// malformed frames are counted by status, undecodable ones are skipped
+				int[] errorCount = new int[RadioTapStatus.STATUS_COUNT];
+				
+				RadioTapCursor cursor = new RadioTapCursor();
+				
+				// link type of each interface of current section, indexed by interface id
+				String radiotapLinkType = LinkLayerConstants.LINK_LAYER_LIST.get(IPacketReader.LINKTYPE_IEEE802_11_RADIOTAP);
+				List<String> linkTypes = new ArrayList<String>();
+				long otherLinkCount = 0;
+				
+				for (int i = 0; i  < pcapNgDecoder.getSectionList().size();i++)
 				{
-					ArrayList<IRadioTapFrame> radiotapFrame = new ArrayList<IRadioTapFrame>();
-					
-					for (int i = 0; i  < pcapNgDecoder.getSectionList().size();i++)
+					if (pcapNgDecoder.getSectionList().get(i) instanceof ISectionHeaderBlock)
+					{
+						linkTypes.clear();
+					}
+					else if (pcapNgDecoder.getSectionList().get(i) instanceof IDescriptionBlock)
+					{
+						linkTypes.add(((IDescriptionBlock) pcapNgDecoder.getSectionList().get(i)).getLinkType());
+					}
+					else if (pcapNgDecoder.getSectionList().get(i) instanceof IEnhancedPacketBLock)
 					{
-						if (pcapNgDecoder.getSectionList().get(i) instanceof IEnhancedPacketBLock)
+						IEnhancedPacketBLock packet = (IEnhancedPacketBLock) pcapNgDecoder.getSectionList().get(i);
+						
+						int interfaceId = packet.getInterfaceId();
+						if (interfaceId < 0 || interfaceId >= linkTypes.size() || !radiotapLinkType.equals(linkTypes.get(interfaceId)))
 						{
-							IEnhancedPacketBLock packet = (IEnhancedPacketBLock) pcapNgDecoder.getSectionList().get(i);
-							
-							try {
-								// decode radiotap frame for this packet data
-								RadioTap radioTap = new RadioTap(packet.getPacketData());
-								radiotapFrame.add(radioTap);
-							} catch (RadioTapException e) {
-								e.printStackTrace();
-								return;
-							}
+							otherLinkCount++;
+							continue;
 						}
+						
+						byte[] packetData = packet.getPacketData();
+						
+						// decode radiotap frame for this packet data
+						int frameStatus = cursor.decode(packetData, 0, packetData.length);
+						if (frameStatus != RadioTapStatus.SUCCESS_STATUS)
+						{
+							errorCount[-frameStatus]++;
+							if (!RadioTapStatus.isDecoded(frameStatus))
+								continue;
+						}
+						
+						// only a compact copy of each frame is retained
+						radiotapFrame.add(new RadioTapCompactFrame(cursor));
 					}
+				}
+				
+				long endTime   = System.currentTimeMillis();
+				long totalTime = endTime - startTime;
+				
+				System.out.println("decoding time : " + totalTime + " ms");
+				displayErrors(errorCount);
+				if (otherLinkCount > 0)
+					System.err.println("non radiotap packets : " + otherLinkCount);
+				if (verbose)
+				{
+					DisplayPacket.decode(radiotapFrame);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Decode radiotap frames while pcapng file is read, each frame being
+	 * displayed and dropped as soon as it is decoded
+	 * 
+	 * @param path
+	 *            file path (- for stdin), pcapng or pcap format being detected
+	 * @param verbose
+	 *            display each frame
+	 * @param mapped
+	 *            decode frames from a memory mapping of file instead of
+	 *            reading it through a buffer (pcapng or pcap)
+	 * @param startTime
+	 *            time decoding started
+	 */
+	static void decodeStream(String path, final boolean verbose, boolean mapped, long startTime) {
+		
+		final RadioTapCursor cursor = new RadioTapCursor();
+		final int[] errorCount = new int[RadioTapStatus.STATUS_COUNT];
+		final long[] otherLinkCount = new long[1];
+		
+		if (verbose)
+			DisplayPacket.displayHeader();
+		
+		FileChannel channel = null;
+		IPacketReader mappedReader = null;
+		try {
+			if (path.equals("-"))
+				channel = new FileInputStream(FileDescriptor.in).getChannel();
+			else
+				channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+			IPacketReader reader;
+			if (mapped && (path.equals("-") || !Files.isRegularFile(Paths.get(path))))
+			{
+				// stdin and fifos can't be mapped
+				System.err.println("memory mapping not supported on " + (path.equals("-") ? "stdin" : path) + ", reading as stream");
+				mapped = false;
+			}
+			if (mapped)
+			{
+				mappedReader = PacketReaders.openMapped(channel);
+				reader = mappedReader;
+			}
+			else
+			{
+				// blocks until format is known from first bytes
+				reader = PacketReaders.open(channel);
+			}
+			
+			reader.read(new IPacketListener() {
+				
+				@Override
+				public void onPacket(ByteBuffer buffer, int offset, int length, int linkType, long timestamp) {
 					
-					long endTime   = System.currentTimeMillis();
-					long totalTime = endTime - startTime;
+					if (linkType != IPacketReader.LINKTYPE_IEEE802_11_RADIOTAP)
+					{
+						otherLinkCount[0]++;
+						return;
+					}
+					int frameStatus = cursor.decode(buffer, offset, length);
+					if (frameStatus != RadioTapStatus.SUCCESS_STATUS)
+					{
+						errorCount[-frameStatus]++;
+						if (!RadioTapStatus.isDecoded(frameStatus))
+							return;
+					}
+					if (verbose)
+						DisplayPacket.display(cursor);
+				}
+			});
+			if (reader.isTruncated())
+				System.err.println("capture file is truncated");
+			if (reader.getSkippedBlockCount() > 0)
+				System.err.println("skipped oversized blocks : " + reader.getSkippedBlockCount());
+		} catch (IOException e) {
+			System.err.println("Error while reading file : " + e.getMessage());
+		} finally {
+			try {
+				if (mappedReader != null)
+					((Closeable) mappedReader).close();
+				if (channel != null)
+					channel.close();
+			} catch (IOException e) {
+			}
+		}
+		
+		System.out.println("decoding time : " + (System.currentTimeMillis() - startTime) + " ms");
+		if (otherLinkCount[0] > 0)
+			System.err.println("non radiotap packets : " + otherLinkCount[0]);
+		displayErrors(errorCount);
+	}
+	
+	/**
+	 * Decode all radiotap frames of a classic pcap file in place from a memory
+	 * mapping of file, keeping a compact copy of each frame
+	 * 
+	 * @param path
+	 *            file path
+	 * @param verbose
+	 *            display all frames
+	 * @param startTime
+	 *            time decoding started
+	 */
+	static void decodePcap(String path, boolean verbose, long startTime) {
+		
+		final RadioTapCursor cursor = new RadioTapCursor();
+		final ArrayList<IRadioTapFrame> radiotapFrame = new ArrayList<IRadioTapFrame>();
+		final int[] errorCount = new int[RadioTapStatus.STATUS_COUNT];
+		final long[] otherLinkCount = new long[1];
+		
+		FileChannel channel = null;
+		PcapMappedReader reader = null;
+		try {
+			channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+			reader = new PcapMappedReader(channel);
+			reader.read(new IPacketListener() {
+				
+				@Override
+				public void onPacket(ByteBuffer buffer, int offset, int length, int linkType, long timestamp) {
 					
-					System.out.println("decoding time : " + totalTime + " ms");
+					if (linkType != IPacketReader.LINKTYPE_IEEE802_11_RADIOTAP)
+					{
+						otherLinkCount[0]++;
+						return;
+					}
+					int frameStatus = cursor.decode(buffer, offset, length);
+					if (frameStatus != RadioTapStatus.SUCCESS_STATUS)
+					{
+						errorCount[-frameStatus]++;
+						if (!RadioTapStatus.isDecoded(frameStatus))
+							return;
+					}
+					radiotapFrame.add(new RadioTapCompactFrame(cursor));
+				}
+			});
+			
+			System.out.println("decoding time : " + (System.currentTimeMillis() - startTime) + " ms");
+			if (reader.isTruncated())
+				System.err.println("capture file is truncated");
+			if (otherLinkCount[0] > 0)
+				System.err.println("non radiotap packets : " + otherLinkCount[0]);
+			displayErrors(errorCount);
+			if (verbose)
+			{
+				DisplayPacket.decode(radiotapFrame);
+			}
+		} catch (IOException e) {
+			System.err.println("Error while reading file : " + e.getMessage());
+		} finally {
+			if (reader != null)
+				reader.close();
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Check if a file is a classic pcap file
+	 * 
+	 * @param path
+	 *            file path
+	 */
+	static boolean isPcapFile(String path) {
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+			return PacketReaders.isPcap(channel);
+		} catch (IOException e) {
+			return false;
+		} finally {
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Decode radiotap frames of a pcapng file on all available cores : packets
+	 * are indexed by a first scan then decoded by ranges on a fork/join pool
+	 * 
+	 * @param path
+	 *            file path
+	 * @param verbose
+	 *            display all frames in capture order
+	 * @param startTime
+	 *            time decoding started
+	 */
+	static void decodeParallel(String path, boolean verbose, long startTime) {
+		
+		FileChannel channel = null;
+		ForkJoinPool pool = new ForkJoinPool();
+		try {
+			channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+			PcapNgIndex index = PcapNgIndex.build(channel);
+			
+			int[] status = new int[index.size()];
+			RadioTapCompactFrame[] frames = new PcapNgParallelDecoder(pool).decode(channel, index, status);
+			
+			ArrayList<IRadioTapFrame> radiotapFrame = new ArrayList<IRadioTapFrame>(frames.length);
+			int[] errorCount = new int[RadioTapStatus.STATUS_COUNT];
+			long otherLinkCount = 0;
+			
+			for (int i = 0; i < frames.length; i++)
+			{
+				if (index.getLinkType(i) != IPacketReader.LINKTYPE_IEEE802_11_RADIOTAP)
+				{
+					otherLinkCount++;
+					continue;
+				}
+				if (status[i] != RadioTapStatus.SUCCESS_STATUS)
+					errorCount[-status[i]]++;
+				if (frames[i] != null)
+					radiotapFrame.add(frames[i]);
+			}
+			
+			System.out.println("decoding time : " + (System.currentTimeMillis() - startTime) + " ms");
+			if (index.isTruncated())
+				System.err.println("capture file is truncated");
+			if (index.getSkippedBlockCount() > 0)
+				System.err.println("skipped oversized blocks : " + index.getSkippedBlockCount());
+			if (otherLinkCount > 0)
+				System.err.println("non radiotap packets : " + otherLinkCount);
+			displayErrors(errorCount);
+			if (verbose)
+			{
+				DisplayPacket.decode(radiotapFrame);
+			}
+		} catch (IOException e) {
+			System.err.println("Error while reading file : " + e.getMessage());
+		} finally {
+			pool.shutdown();
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Receive radiotap frames forwarded over UDP until JVM is stopped,
+	 * displaying each frame (verbose) or per sensor statistics each second
+	 * 
+	 * @param address
+	 *            [host:]port to listen on (all interfaces by default)
+	 * @param verbose
+	 *            display each frame
+	 */
+	static void listenUdp(String address, final boolean verbose) {
+		
+		InetSocketAddress bindAddress;
+		try {
+			int separator = address.lastIndexOf(':');
+			if (separator < 0)
+				bindAddress = new InetSocketAddress(Integer.parseInt(address));
+			else
+				bindAddress = new InetSocketAddress(address.substring(0, separator),
+						Integer.parseInt(address.substring(separator + 1)));
+		} catch (IllegalArgumentException e) {
+			System.err.println("Invalid argument");
+			return;
+		}
+		
+		if (verbose)
+			DisplayPacket.displayHeader();
+		
+		final RadioTapUdpServer server;
+		try {
+			server = new RadioTapUdpServer(bindAddress, new ISensorFrameSink() {
+				
+				@Override
+				public void onFrame(SensorStats sensor, IRadioTapFrame frame, ByteBuffer buffer, int offset, int length) {
 					if (verbose)
+						DisplayPacket.display(frame);
+				}
+			});
+		} catch (IOException e) {
+			System.err.println("Error while opening socket : " + e.getMessage());
+			return;
+		}
+		
+		Timer timer = null;
+		if (!verbose)
+		{
+			timer = new Timer("statistics", true);
+			timer.schedule(new TimerTask() {
+				
+				private long lastDatagramCount = 0;
+				
+				@Override
+				public void run() {
+					if (server.getDatagramCount() == lastDatagramCount)
+						return;
+					lastDatagramCount = server.getDatagramCount();
+					for (SensorStats sensor : server.getSensors())
 					{
-						DisplayPacket.decode(radiotapFrame);
+						System.out.println(sensor.getAddress().getHostAddress() + " : " + sensor.getFrameCount()
+								+ " frames, " + sensor.getDroppedCount() + " dropped, " + sensor.getByteCount() + " bytes");
 					}
+					if (server.getRejectedCount() > 0)
+						System.out.println("rejected sensors datagrams : " + server.getRejectedCount());
 				}
+			}, 1000, 1000);
+		}
+		
+		try {
+			System.err.println("listening on " + server.getLocalAddress());
+			server.run();
+		} catch (IOException e) {
+			System.err.println("Error while receiving : " + e.getMessage());
+		} finally {
+			if (timer != null)
+				timer.cancel();
+			try {
+				server.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+	
+	/**
+	 * Follow a capture being written, displaying each new frame (verbose) or a
+	 * statistics line each second frames have been added. Only ends when JVM
+	 * is stopped.
+	 * 
+	 * @param pattern
+	 *            file, or glob matching files of a ring (last file being
+	 *            followed first)
+	 * @param verbose
+	 *            display each frame
+	 */
+	static void decodeFollow(String pattern, final boolean verbose) {
+		
+		Path file = Paths.get(pattern);
+		String ringGlob = null;
+		if (pattern.indexOf('*') >= 0 || pattern.indexOf('?') >= 0 || pattern.indexOf('[') >= 0)
+		{
+			try {
+				List<Path> files = CaptureBatchDecoder.listFiles(file);
+				if (files.isEmpty())
+				{
+					System.err.println("No file matching " + pattern);
+					return;
+				}
+				ringGlob = file.getFileName().toString();
+				file = files.get(files.size() - 1);
+			} catch (IOException e) {
+				System.err.println("Error while listing files : " + e.getMessage());
+				return;
 			}
 		}
+		
+		final PcapNgFollowReader reader = new PcapNgFollowReader(file, ringGlob,
+				PcapNgFollowReader.DEFAULT_POLL_INTERVAL, PcapNgStreamReader.DEFAULT_BUFFER_SIZE);
+		final RadioTapCursor cursor = new RadioTapCursor();
+		// frames, malformed frames, non radiotap packets
+		final AtomicLongArray counts = new AtomicLongArray(3);
+		
+		Timer timer = null;
+		if (verbose)
+		{
+			DisplayPacket.displayHeader();
+		}
 		else
 		{
-			System.err.println("Insufficient argument");
+			timer = new Timer("statistics", true);
+			timer.schedule(new TimerTask() {
+				
+				private long lastFrameCount = -1;
+				
+				@Override
+				public void run() {
+					long frameCount = counts.get(0);
+					if (frameCount != lastFrameCount)
+					{
+						lastFrameCount = frameCount;
+						System.out.println(reader.getCurrentFile().getFileName() + " : " + frameCount + " frames, "
+								+ counts.get(1) + " malformed, " + counts.get(2) + " non radiotap");
+					}
+				}
+			}, 1000, 1000);
+		}
+		
+		try {
+			reader.read(new IPacketListener() {
+				
+				@Override
+				public void onPacket(ByteBuffer buffer, int offset, int length, int linkType, long timestamp) {
+					
+					if (linkType != IPacketReader.LINKTYPE_IEEE802_11_RADIOTAP)
+					{
+						counts.incrementAndGet(2);
+						return;
+					}
+					int frameStatus = cursor.decode(buffer, offset, length);
+					if (frameStatus != RadioTapStatus.SUCCESS_STATUS)
+					{
+						counts.incrementAndGet(1);
+						if (!RadioTapStatus.isDecoded(frameStatus))
+							return;
+					}
+					counts.incrementAndGet(0);
+					if (verbose)
+						DisplayPacket.display(cursor);
+				}
+			});
+		} catch (IOException e) {
+			System.err.println("Error while reading file : " + e.getMessage());
+		} finally {
+			if (timer != null)
+				timer.cancel();
+			try {
+				reader.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+	
+	/**
+	 * Decode all capture files of a directory or matching a glob concurrently,
+	 * displaying a summary line per file
+	 * 
+	 * @param pattern
+	 *            directory or glob
+	 * @param maxOpenFiles
+	 *            maximum number of files decoded at once
+	 * @param maxMemory
+	 *            maximum memory used by read buffers
+	 * @param startTime
+	 *            time decoding started
+	 */
+	static void decodeBatch(String pattern, int maxOpenFiles, long maxMemory, long startTime) {
+		
+		List<CaptureResult> results;
+		try {
+			List<Path> files = CaptureBatchDecoder.listFiles(Paths.get(pattern));
+			CaptureBatchDecoder decoder = new CaptureBatchDecoder(maxOpenFiles, maxMemory,
+					PcapNgStreamReader.DEFAULT_BUFFER_SIZE);
+			results = decoder.decode(files);
+		} catch (IOException e) {
+			System.err.println("Error while listing files : " + e.getMessage());
+			return;
+		} catch (IllegalArgumentException e) {
+			System.err.println("Invalid argument : " + e.getMessage());
+			return;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		
+		int failedCount = 0;
+		long frameCount = 0;
+		for (int i = 0; i < results.size(); i++)
+		{
+			CaptureResult result = results.get(i);
+			StringBuilder line = new StringBuilder();
+			line.append(result.getPath()).append(" : ").append(result.getFrameCount()).append(" frames");
+			if (result.getErrorCount() > 0)
+				line.append(", ").append(result.getErrorCount()).append(" malformed");
+			if (result.getOtherLinkCount() > 0)
+				line.append(", ").append(result.getOtherLinkCount()).append(" non radiotap");
+			if (result.isTruncated())
+				line.append(", truncated");
+			line.append(", ").append(result.getDuration()).append(" ms");
+			if (!result.isSuccess())
+			{
+				failedCount++;
+				line.append(", error : ").append(result.getError().getMessage());
+			}
+			frameCount += result.getFrameCount();
+			System.out.println(line);
+		}
+		
+		System.out.println("decoding time : " + (System.currentTimeMillis() - startTime) + " ms");
+		System.out.println("files : " + results.size() + ", frames : " + frameCount + ", failed : " + failedCount
+				+ (CaptureBatchDecoder.isVirtualThreadAvailable() ? " (virtual threads)" : ""));
+	}
+	
+	/**
+	 * Display number of malformed frames for each reason
+	 * 
+	 * @param errorCount
+	 *            number of frames indexed by opposite of decoding status
+	 */
+	static void displayErrors(int[] errorCount) {
+		for (int j = 1; j < errorCount.length; j++)
+		{
+			if (errorCount[j] > 0)
+				System.err.println("malformed frames (" + RadioTapStatus.getReason(-j) + ") : " + errorCount[j]);
 		}
 	}
 	
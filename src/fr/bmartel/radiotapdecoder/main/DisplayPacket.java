@@ -2,6 +2,9 @@ package fr.bmartel.radiotapdecoder.main;
 
 import java.util.ArrayList;
 
+import fr.bmartel.protocol.radiotap.RadioTapAMPDU;
+import fr.bmartel.protocol.radiotap.RadioTapMCS;
+import fr.bmartel.protocol.radiotap.RadioTapVHT;
 import fr.bmartel.protocol.radiotap.inter.IRadioTapFrame;
 
 /**
@@ -20,71 +23,134 @@ public class DisplayPacket {
 	 */
 	public static void decode(ArrayList<IRadioTapFrame> radiotapFrame)
 	{
-		System.out.println("###############################################################################################");
+		displayHeader();
 		for (int i = 0; i < radiotapFrame.size();i++)
 		{
-			System.out.println("RadioTap Version : " + radiotapFrame.get(i).getRadiotapVersion());
-			System.out.println("RadioTap length  : " + radiotapFrame.get(i).getRadioTapDataLength());
-			System.out.println("RadioTap data    : ");
-			
-			if (radiotapFrame.get(i).getRadioTapFlagList().isTFST())
-				System.out.println("\tTFST                 : " + radiotapFrame.get(i).getRadioTapData().getTFST() + "ms");
-			if (radiotapFrame.get(i).getRadioTapFlagList().isFlags())
-				System.out.println("\tflags                : " + radiotapFrame.get(i).getRadioTapData().getFlags());
-			if (radiotapFrame.get(i).getRadioTapFlagList().isDataRate())
-				System.out.println("\tdata rate            : " + radiotapFrame.get(i).getRadioTapData().getDataRate()+"kbps");
-			if (radiotapFrame.get(i).getRadioTapFlagList().isDbmAntSignal())
-				System.out.println("\tant signal in dbm    : " + radiotapFrame.get(i).getRadioTapData().getDbmAntSignal()+" dbm");
-			if (radiotapFrame.get(i).getRadioTapFlagList().isDbmAntNoise())
-				System.out.println("\tant noise in dbm     : " + radiotapFrame.get(i).getRadioTapData().getDbmAntNoise()+" dbm");
-			if (radiotapFrame.get(i).getRadioTapFlagList().isLockQuality())
-				System.out.println("\tlock quality         : " + radiotapFrame.get(i).getRadioTapData().getLockQuality()+" (unitless)");
-			if (radiotapFrame.get(i).getRadioTapFlagList().isDbTxAttenuation())
-				System.out.println("\ttx Attenuation       : " + radiotapFrame.get(i).getRadioTapData().getDbTxAttenuation()+" db");
-			if (radiotapFrame.get(i).getRadioTapFlagList().isTxAttenuation())
-				System.out.println("\ttx Attenuation       : " + radiotapFrame.get(i).getRadioTapData().getTxAttenuation()+" (unitless) (max power emitted)");
-			if (radiotapFrame.get(i).getRadioTapFlagList().isDbmTxPower())
-				System.out.println("\ttx power in dbm      : " + radiotapFrame.get(i).getRadioTapData().getDbmTxPower()+" dbm (absolute power level measured at the antenna port)");
-			if (radiotapFrame.get(i).getRadioTapFlagList().isAntenna())
-				System.out.println("\tantenna              : " + radiotapFrame.get(i).getRadioTapData().getAntenna()+" (unitless) (indication of the Rx/Tx antenna for this packet. The first antenna is antenna 0)");
-			if (radiotapFrame.get(i).getRadioTapFlagList().isDbAntennaSignal())
-				System.out.println("\tantenna signal in db : " + radiotapFrame.get(i).getRadioTapData().getDbAntennaSignal()+" db (RF signal power at the antenna, decibel difference from an arbitrary, fixed reference)");
-			if (radiotapFrame.get(i).getRadioTapFlagList().isDbAntennaNoise())
-				System.out.println("\tantenna noise in db  : " + radiotapFrame.get(i).getRadioTapData().getDbAntennaNoise()+" db (RF noise power at the antenna, decibel difference from an arbitrary, fixed reference)");
-			if (radiotapFrame.get(i).getRadioTapFlagList().isRxFlags())
-				System.out.println("\tPLCP CRC error       : " + radiotapFrame.get(i).getRadioTapData().isPlcpCrcErrors());
-			
-			if (radiotapFrame.get(i).getRadioTapFlagList().isChannel())
-			{
-				System.out.println("\t\tchannel number         : " + radiotapFrame.get(i).getRadioTapData().getChannel().getChannelNum());
-				System.out.println("\t\tfrequency used         : " + radiotapFrame.get(i).getRadioTapData().getChannel().getFrequency()+"MHz");
-				System.out.println("\t\tCCK channel            : " + radiotapFrame.get(i).getRadioTapData().getChannel().isCckChannel());
-				System.out.println("\t\tDYNAMIC CCK channel    : " + radiotapFrame.get(i).getRadioTapData().getChannel().isDynamicCckOfdmChannel());
-				System.out.println("\t\tGFSK channel           : " + radiotapFrame.get(i).getRadioTapData().getChannel().isGfskChannel());
-				System.out.println("\t\tOFDM channel           : " + radiotapFrame.get(i).getRadioTapData().getChannel().isOfdmChannel());
-				System.out.println("\t\tonly passive scan      : " + radiotapFrame.get(i).getRadioTapData().getChannel().isOnlyPassiveScanAllowed());
-				System.out.println("\t\tspectrum channel 2GHZ  : " + radiotapFrame.get(i).getRadioTapData().getChannel().isSpectrumChannel2GHZ());
-				System.out.println("\t\tspectrum channel 5GHZ  : " + radiotapFrame.get(i).getRadioTapData().getChannel().isSpectrumChannel5GHZ());
-				System.out.println("\t\tturbo channel          : " + radiotapFrame.get(i).getRadioTapData().getChannel().isTurboChannel());
-			}
-			
-			if (radiotapFrame.get(i).getRadioTapFlagList().isFHSS())
-			{
-				System.out.print("FHSS NOT DECODED !!!!");
-			}
-			if (radiotapFrame.get(i).getRadioTapFlagList().isVht())
-			{
-				System.out.print("VHT NOT DECODED !!!!");
-			}
-			if (radiotapFrame.get(i).getRadioTapFlagList().isMcs())
-			{
-				System.out.print("MCS NOT DECODED !!!!");
-			}
-			if (radiotapFrame.get(i).getRadioTapFlagList().isAmpdu())
+			display(radiotapFrame.get(i));
+		}
+	}
+	
+	/**
+	 * Display separator printed before first packet
+	 */
+	public static void displayHeader()
+	{
+		System.out.println("###############################################################################################");
+	}
+	
+	/**
+	 * Display one packet info followed by a separator
+	 * 
+	 * @param frame
+	 */
+	public static void display(IRadioTapFrame frame)
+	{
+		System.out.println("RadioTap Version : " + frame.getRadiotapVersion());
+		System.out.println("RadioTap length  : " + frame.getRadioTapDataLength());
+		System.out.println("RadioTap data    : ");
+		
+		if (frame.getRadioTapFlagList().isTFST())
+			System.out.println("\tTFST                 : " + frame.getRadioTapData().getTFST() + "ms");
+		if (frame.getRadioTapFlagList().isFlags())
+			System.out.println("\tflags                : " + frame.getRadioTapData().getFlags());
+		if (frame.getRadioTapFlagList().isDataRate())
+			System.out.println("\tdata rate            : " + frame.getRadioTapData().getDataRate()+"kbps");
+		if (frame.getRadioTapFlagList().isDbmAntSignal())
+			System.out.println("\tant signal in dbm    : " + frame.getRadioTapData().getDbmAntSignal()+" dbm");
+		if (frame.getRadioTapFlagList().isDbmAntNoise())
+			System.out.println("\tant noise in dbm     : " + frame.getRadioTapData().getDbmAntNoise()+" dbm");
+		if (frame.getRadioTapFlagList().isLockQuality())
+			System.out.println("\tlock quality         : " + frame.getRadioTapData().getLockQuality()+" (unitless)");
+		if (frame.getRadioTapFlagList().isDbTxAttenuation())
+			System.out.println("\ttx Attenuation       : " + frame.getRadioTapData().getDbTxAttenuation()+" db");
+		if (frame.getRadioTapFlagList().isTxAttenuation())
+			System.out.println("\ttx Attenuation       : " + frame.getRadioTapData().getTxAttenuation()+" (unitless) (max power emitted)");
+		if (frame.getRadioTapFlagList().isDbmTxPower())
+			System.out.println("\ttx power in dbm      : " + frame.getRadioTapData().getDbmTxPower()+" dbm (absolute power level measured at the antenna port)");
+		if (frame.getRadioTapFlagList().isAntenna())
+			System.out.println("\tantenna              : " + frame.getRadioTapData().getAntenna()+" (unitless) (indication of the Rx/Tx antenna for this packet. The first antenna is antenna 0)");
+		if (frame.getRadioTapFlagList().isDbAntennaSignal())
+			System.out.println("\tantenna signal in db : " + frame.getRadioTapData().getDbAntennaSignal()+" db (RF signal power at the antenna, decibel difference from an arbitrary, fixed reference)");
+		if (frame.getRadioTapFlagList().isDbAntennaNoise())
+			System.out.println("\tantenna noise in db  : " + frame.getRadioTapData().getDbAntennaNoise()+" db (RF noise power at the antenna, decibel difference from an arbitrary, fixed reference)");
+		if (frame.getRadioTapFlagList().isRxFlags())
+			System.out.println("\tPLCP CRC error       : " + frame.getRadioTapData().isPlcpCrcErrors());
+		
+		if (frame.getRadioTapFlagList().isChannel())
+		{
+			System.out.println("\t\tchannel number         : " + frame.getRadioTapData().getChannel().getChannelNum());
+			System.out.println("\t\tfrequency used         : " + frame.getRadioTapData().getChannel().getFrequency()+"MHz");
+			System.out.println("\t\tCCK channel            : " + frame.getRadioTapData().getChannel().isCckChannel());
+			System.out.println("\t\tDYNAMIC CCK channel    : " + frame.getRadioTapData().getChannel().isDynamicCckOfdmChannel());
+			System.out.println("\t\tGFSK channel           : " + frame.getRadioTapData().getChannel().isGfskChannel());
+			System.out.println("\t\tOFDM channel           : " + frame.getRadioTapData().getChannel().isOfdmChannel());
+			System.out.println("\t\tonly passive scan      : " + frame.getRadioTapData().getChannel().isOnlyPassiveScanAllowed());
+			System.out.println("\t\tspectrum channel 2GHZ  : " + frame.getRadioTapData().getChannel().isSpectrumChannel2GHZ());
+			System.out.println("\t\tspectrum channel 5GHZ  : " + frame.getRadioTapData().getChannel().isSpectrumChannel5GHZ());
+			System.out.println("\t\tturbo channel          : " + frame.getRadioTapData().getChannel().isTurboChannel());
+		}
+		
+		if (frame.getRadioTapFlagList().isFHSS())
+		{
+			System.out.print("FHSS NOT DECODED !!!!");
+		}
+		if (frame.getRadioTapFlagList().isVht())
+		{
+			RadioTapVHT vht = frame.getRadioTapData().getVht();
+			System.out.println("\tVHT : ");
+			if (vht.isKnown(RadioTapVHT.KNOWN_BANDWIDTH))
+				System.out.println("\t\tbandwidth              : " + vht.getBandwidthMHz() + "MHz");
+			if (vht.isKnown(RadioTapVHT.KNOWN_GUARD_INTERVAL))
+				System.out.println("\t\tshort guard interval   : " + vht.isShortGuardInterval());
+			if (vht.isKnown(RadioTapVHT.KNOWN_STBC))
+				System.out.println("\t\tSTBC                   : " + vht.isStbc());
+			if (vht.isKnown(RadioTapVHT.KNOWN_BEAMFORMED))
+				System.out.println("\t\tbeamformed             : " + vht.isBeamformed());
+			if (vht.isKnown(RadioTapVHT.KNOWN_GROUP_ID))
+				System.out.println("\t\tgroup id               : " + vht.getGroupId());
+			if (vht.isKnown(RadioTapVHT.KNOWN_PARTIAL_AID))
+				System.out.println("\t\tpartial aid            : " + vht.getPartialAid());
+			for (int user = 0; user < RadioTapVHT.USER_COUNT; user++)
 			{
-				System.out.print("AMPDU NOT DECODED !!!!");
+				if (vht.getNss(user) == 0)
+					continue;
+				System.out.println("\t\tuser " + user + "                 : MCS " + vht.getMcs(user) + " NSS " + vht.getNss(user)
+						+ (vht.isLdpc(user) ? " LDPC" : " BCC")
+						+ (vht.getDataRate(user) > 0 ? " " + vht.getDataRate(user) + "kbps" : ""));
 			}
-			System.out.println("###############################################################################################");
 		}
+		if (frame.getRadioTapFlagList().isMcs())
+		{
+			RadioTapMCS mcs = frame.getRadioTapData().getMcs();
+			System.out.println("\tMCS : ");
+			if (mcs.isKnown(RadioTapMCS.KNOWN_MCS_INDEX))
+				System.out.println("\t\tMCS index              : " + mcs.getMcsIndex());
+			if (mcs.isKnown(RadioTapMCS.KNOWN_BANDWIDTH))
+				System.out.println("\t\tbandwidth              : " + mcs.getBandwidthMHz() + "MHz");
+			if (mcs.isKnown(RadioTapMCS.KNOWN_GUARD_INTERVAL))
+				System.out.println("\t\tshort guard interval   : " + mcs.isShortGuardInterval());
+			if (mcs.isKnown(RadioTapMCS.KNOWN_HT_FORMAT))
+				System.out.println("\t\tgreenfield             : " + mcs.isGreenfield());
+			if (mcs.isKnown(RadioTapMCS.KNOWN_FEC_TYPE))
+				System.out.println("\t\tLDPC                   : " + mcs.isLdpc());
+			if (mcs.isKnown(RadioTapMCS.KNOWN_STBC))
+				System.out.println("\t\tSTBC streams           : " + mcs.getStbcStreams());
+			if (mcs.isKnown(RadioTapMCS.KNOWN_NESS))
+				System.out.println("\t\tNess                   : " + mcs.getNess());
+			if (mcs.getDataRate() > 0)
+				System.out.println("\t\tHT rate                : " + mcs.getDataRate() + "kbps");
+		}
+		if (frame.getRadioTapFlagList().isAmpdu())
+		{
+			RadioTapAMPDU ampdu = frame.getRadioTapData().getAmpdu();
+			System.out.println("\tA-MPDU : ");
+			System.out.println("\t\treference              : " + (ampdu.getReference() & 0xFFFFFFFFL));
+			if (ampdu.isLastKnown())
+				System.out.println("\t\tlast subframe          : " + ampdu.isLast());
+			if (ampdu.isDelimiterCrcKnown())
+				System.out.println("\t\tdelimiter CRC          : " + ampdu.getDelimiterCrc());
+			System.out.println("\t\tdelimiter CRC error    : " + ampdu.isDelimiterCrcError());
+		}
+		System.out.println("###############################################################################################");
 	}
 }
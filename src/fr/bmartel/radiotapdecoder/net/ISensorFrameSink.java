@@ -0,0 +1,33 @@
+package fr.bmartel.radiotapdecoder.net;
+
+import java.nio.ByteBuffer;
+
+import fr.bmartel.protocol.radiotap.inter.IRadioTapFrame;
+
+/**
+ * Sink receiving radiotap frames decoded by an ingest server
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public interface ISensorFrameSink {
+
+	/**
+	 * Called from server thread for each decoded frame. Frame and buffer are
+	 * reused as soon as this call returns.
+	 * 
+	 * @param sensor
+	 *            sensor frame was received from
+	 * @param frame
+	 *            decoded radiotap header
+	 * @param buffer
+	 *            receive buffer holding the whole datagram (position and
+	 *            limit are not significant)
+	 * @param offset
+	 *            absolute position of datagram in buffer
+	 * @param length
+	 *            datagram length (radiotap header followed by 802.11 frame)
+	 */
+	public void onFrame(SensorStats sensor, IRadioTapFrame frame, ByteBuffer buffer, int offset, int length);
+
+}
@@ -0,0 +1,311 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.radiotapdecoder.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fr.bmartel.protocol.radiotap.RadioTapCursor;
+import fr.bmartel.utils.RadioTapStatus;
+
+/**
+ * Receive radiotap frames forwarded by sensors over UDP, each datagram
+ * holding a radiotap header followed by the 802.11 frame.<br/>
+ * 
+ * A single thread runs a non blocking channel : all pending datagrams are
+ * received into the same direct buffer and their radiotap header is decoded
+ * in place by a single cursor before being handed to sink, so that nothing
+ * but the source address is allocated per datagram.<br/>
+ * 
+ * Counters are kept per sensor (source IP address). Datagrams not handed to
+ * sink are accounted as drops : undecodable header, datagram larger than
+ * receive buffer, or new sensor once maximum number of sensors is reached.
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class RadioTapUdpServer implements Runnable, Closeable {
+
+	/** largest UDP payload over IPv4 */
+	public final static int MAX_DATAGRAM_SIZE = 65507;
+
+	/**
+	 * default socket receive buffer size absorbing bursts (capped by system,
+	 * net.core.rmem_max on Linux)
+	 */
+	public final static int DEFAULT_RECEIVE_BUFFER_SIZE = 8 << 20;
+
+	/** default maximum number of sensors tracked */
+	public final static int DEFAULT_MAX_SENSORS = 1024;
+
+	private final DatagramChannel channel;
+
+	private final Selector selector;
+
+	/** receive buffer, one byte larger than maximum datagram size to detect truncation */
+	private final ByteBuffer buffer;
+
+	private final int maxDatagramSize;
+
+	private final int maxSensors;
+
+	private final RadioTapCursor cursor = new RadioTapCursor();
+
+	private final ISensorFrameSink sink;
+
+	private final ConcurrentHashMap<InetAddress, SensorStats> sensors = new ConcurrentHashMap<InetAddress, SensorStats>();
+
+	private volatile boolean running = false;
+
+	private volatile boolean stopped = false;
+
+	private volatile long datagramCount = 0;
+
+	/** datagrams of sensors not tracked because maximum was reached */
+	private volatile long rejectedCount = 0;
+
+	/**
+	 * Build a server accepting datagrams up to maximum UDP size from up to
+	 * DEFAULT_MAX_SENSORS sensors, with a large socket receive buffer
+	 * 
+	 * @param address
+	 *            address to listen on (port 0 for any free port)
+	 * @param sink
+	 *            sink receiving decoded frames
+	 * @throws IOException
+	 *             socket can't be bound
+	 */
+	public RadioTapUdpServer(InetSocketAddress address, ISensorFrameSink sink) throws IOException {
+		this(address, sink, MAX_DATAGRAM_SIZE, DEFAULT_MAX_SENSORS, DEFAULT_RECEIVE_BUFFER_SIZE);
+	}
+
+	/**
+	 * Build a server
+	 * 
+	 * @param address
+	 *            address to listen on (port 0 for any free port)
+	 * @param sink
+	 *            sink receiving decoded frames
+	 * @param maxDatagramSize
+	 *            largest datagram accepted, larger ones being dropped
+	 * @param maxSensors
+	 *            maximum number of sensors tracked
+	 * @param receiveBufferSize
+	 *            socket receive buffer size absorbing bursts (0 for system
+	 *            default)
+	 * @throws IOException
+	 *             socket can't be bound
+	 */
+	public RadioTapUdpServer(InetSocketAddress address, ISensorFrameSink sink, int maxDatagramSize, int maxSensors,
+			int receiveBufferSize) throws IOException {
+		if (maxDatagramSize <= 0 || maxDatagramSize > MAX_DATAGRAM_SIZE) {
+			throw new IllegalArgumentException("invalid maximum datagram size");
+		}
+		if (maxSensors <= 0) {
+			throw new IllegalArgumentException("maximum number of sensors must be positive");
+		}
+		this.sink = sink;
+		this.maxDatagramSize = maxDatagramSize;
+		this.maxSensors = maxSensors;
+		this.buffer = ByteBuffer.allocateDirect(maxDatagramSize + 1);
+
+		channel = DatagramChannel.open();
+		try {
+			channel.configureBlocking(false);
+			if (receiveBufferSize > 0) {
+				channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+			}
+			channel.bind(address);
+			selector = Selector.open();
+			channel.register(selector, SelectionKey.OP_READ);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Receive datagrams until stop() or close() is called (a stopped server
+	 * can't be run again). Exceptions thrown by sink stop the server.
+	 */
+	@Override
+	public void run() {
+		running = true;
+		try {
+			while (!stopped) {
+				selector.select();
+				if (stopped) {
+					break;
+				}
+				selector.selectedKeys().clear();
+				receive();
+			}
+		} catch (IOException e) {
+			if (!stopped) {
+				throw new IllegalStateException("receive failed", e);
+			}
+		} catch (ClosedSelectorException e) {
+			// closed while stopping
+		} finally {
+			running = false;
+		}
+	}
+
+	/**
+	 * Receive and decode all pending datagrams
+	 */
+	private void receive() throws IOException {
+		long now = System.currentTimeMillis();
+		while (!stopped) {
+			buffer.clear();
+			SocketAddress source = channel.receive(buffer);
+			if (source == null) {
+				return;
+			}
+			datagramCount++;
+
+			InetAddress address = ((InetSocketAddress) source).getAddress();
+			SensorStats sensor = sensors.get(address);
+			if (sensor == null) {
+				if (sensors.size() >= maxSensors) {
+					rejectedCount++;
+					continue;
+				}
+				sensor = new SensorStats(address);
+				sensors.put(address, sensor);
+			}
+			int length = buffer.position();
+			sensor.datagramCount++;
+			sensor.byteCount += length;
+			sensor.lastSeen = now;
+
+			if (length > maxDatagramSize) {
+				sensor.truncatedCount++;
+				continue;
+			}
+			if (!RadioTapStatus.isDecoded(cursor.decode(buffer, 0, length))) {
+				sensor.malformedCount++;
+				continue;
+			}
+			sensor.frameCount++;
+			sink.onFrame(sensor, cursor, buffer, 0, length);
+		}
+	}
+
+	/**
+	 * Make run() return : pending datagrams are left in socket
+	 */
+	public void stop() {
+		stopped = true;
+		selector.wakeup();
+	}
+
+	/**
+	 * Stop server and release socket
+	 */
+	@Override
+	public void close() throws IOException {
+		stop();
+		selector.close();
+		channel.close();
+	}
+
+	/**
+	 * Address server listens on
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public InetSocketAddress getLocalAddress() throws IOException {
+		return (InetSocketAddress) channel.getLocalAddress();
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Counters of all sensors seen
+	 * 
+	 * @return live view of sensors
+	 */
+	public Collection<SensorStats> getSensors() {
+		return Collections.unmodifiableCollection(sensors.values());
+	}
+
+	/**
+	 * Counters of a sensor
+	 * 
+	 * @param address
+	 *            sensor address
+	 * @return null if no datagram has been received from this sensor
+	 */
+	public SensorStats getSensor(InetAddress address) {
+		return sensors.get(address);
+	}
+
+	/**
+	 * Number of datagrams received from all sensors
+	 * 
+	 * @return
+	 */
+	public long getDatagramCount() {
+		return datagramCount;
+	}
+
+	/**
+	 * Number of datagrams of sensors not tracked because maximum number of
+	 * sensors was reached
+	 * 
+	 * @return
+	 */
+	public long getRejectedCount() {
+		return rejectedCount;
+	}
+
+	/**
+	 * Number of datagrams received but not handed to sink, whatever the reason
+	 * 
+	 * @return
+	 */
+	public long getDroppedCount() {
+		long count = rejectedCount;
+		for (SensorStats sensor : sensors.values()) {
+			count += sensor.getDroppedCount();
+		}
+		return count;
+	}
+}
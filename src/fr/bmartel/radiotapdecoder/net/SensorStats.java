@@ -0,0 +1,120 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.radiotapdecoder.net;
+
+import java.net.InetAddress;
+
+/**
+ * Counters of a sensor sending radiotap frames to an ingest server.<br/>
+ * 
+ * Counters are only written by server thread and can be read from any
+ * thread.
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class SensorStats {
+
+	private final InetAddress address;
+
+	volatile long datagramCount = 0;
+
+	volatile long byteCount = 0;
+
+	volatile long frameCount = 0;
+
+	volatile long malformedCount = 0;
+
+	volatile long truncatedCount = 0;
+
+	/** time of last datagram in milliseconds */
+	volatile long lastSeen = 0;
+
+	SensorStats(InetAddress address) {
+		this.address = address;
+	}
+
+	/**
+	 * Address datagrams are sent from (whatever their source port)
+	 * 
+	 * @return
+	 */
+	public InetAddress getAddress() {
+		return address;
+	}
+
+	public long getDatagramCount() {
+		return datagramCount;
+	}
+
+	public long getByteCount() {
+		return byteCount;
+	}
+
+	/**
+	 * Number of frames decoded and handed to sink
+	 * 
+	 * @return
+	 */
+	public long getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * Number of datagrams dropped because their radiotap header could not be
+	 * decoded
+	 * 
+	 * @return
+	 */
+	public long getMalformedCount() {
+		return malformedCount;
+	}
+
+	/**
+	 * Number of datagrams dropped because they were larger than receive buffer
+	 * 
+	 * @return
+	 */
+	public long getTruncatedCount() {
+		return truncatedCount;
+	}
+
+	/**
+	 * Number of datagrams received but not handed to sink
+	 * 
+	 * @return
+	 */
+	public long getDroppedCount() {
+		return malformedCount + truncatedCount;
+	}
+
+	/**
+	 * Time of last datagram
+	 * 
+	 * @return time in milliseconds (System.currentTimeMillis())
+	 */
+	public long getLastSeen() {
+		return lastSeen;
+	}
+}
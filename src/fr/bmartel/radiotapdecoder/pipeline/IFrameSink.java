@@ -0,0 +1,32 @@
+package fr.bmartel.radiotapdecoder.pipeline;
+
+import fr.bmartel.protocol.radiotap.inter.IRadioTapFrame;
+
+/**
+ * Last pipeline stage receiving decoded frames in capture order
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public interface IFrameSink {
+
+	/**
+	 * Called from sink thread for each packet read. Frame is a cursor owned by
+	 * pipeline slot which is reused as soon as this call returns.
+	 * 
+	 * @param sequence
+	 *            packet number since pipeline start
+	 * @param frame
+	 *            decoded frame (null if packet is not radiotap, empty if it
+	 *            could not be decoded)
+	 * @param status
+	 *            decoding status (see RadioTapStatus), success for packets that
+	 *            are not radiotap
+	 * @param linkType
+	 *            link type of packet
+	 * @param timestamp
+	 *            capture timestamp
+	 */
+	public void onFrame(long sequence, IRadioTapFrame frame, int status, int linkType, long timestamp);
+
+}
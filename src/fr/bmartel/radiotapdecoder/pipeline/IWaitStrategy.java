@@ -0,0 +1,21 @@
+package fr.bmartel.radiotapdecoder.pipeline;
+
+/**
+ * Define how a pipeline stage waits for its ring buffer to become ready
+ * (packet published, slot decoded or freed)
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public interface IWaitStrategy {
+
+	/**
+	 * Called each time a stage checked its ring buffer in vain
+	 * 
+	 * @param attempt
+	 *            number of previous vain checks for this wait (0 on first
+	 *            call)
+	 */
+	public void idle(int attempt);
+
+}
@@ -0,0 +1,403 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2015 Bertrand Martel
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package fr.bmartel.radiotapdecoder.pipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import fr.bmartel.protocol.radiotap.RadioTapCursor;
+import fr.bmartel.protocol.radiotap.RadioTapLayoutCache;
+import fr.bmartel.radiotapdecoder.io.IPacketListener;
+import fr.bmartel.radiotapdecoder.io.IPacketReader;
+import fr.bmartel.utils.RadioTapStatus;
+
+/**
+ * Decode packets in a three stage pipeline : a reader thread copies packets
+ * into a ring buffer, decoder threads decode radiotap headers in place and a
+ * sink thread hands decoded frames to a sink in capture order.<br/>
+ * 
+ * All stages share a single ring preallocated at creation : slot data, packet
+ * information and one cursor per slot. Stages only exchange sequence numbers,
+ * so that no object is created or queued per packet. Decoder n handles
+ * sequences n, n + decoderCount... and sink follows decoders, reader waiting
+ * for sink to free a slot before overwriting it (backpressure).<br/>
+ * 
+ * Packets longer than slot size are truncated to slot size, radiotap header
+ * being at their start.
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class RadioTapPipeline {
+
+	/** default number of slots */
+	public final static int DEFAULT_CAPACITY = 1024;
+
+	/** default maximum number of bytes kept per packet */
+	public final static int DEFAULT_SLOT_SIZE = 2048;
+
+	/** longs between two sequences so that each one has its own cache line */
+	private final static int PADDING = 16;
+
+	/** index of sequence published by reader */
+	private final static int PUBLISHED = 0;
+
+	/** index of sequence consumed by sink */
+	private final static int CONSUMED = 1;
+
+	/** index of sequence decoded by first decoder */
+	private final static int DECODED = 2;
+
+	private final IPacketReader reader;
+
+	private final IFrameSink sink;
+
+	private final IWaitStrategy waitStrategy;
+
+	private final int decoderCount;
+
+	private final int capacity;
+
+	private final int mask;
+
+	private final int slotSize;
+
+	/** packet data, slot i starting at i * slotSize */
+	private final byte[] data;
+
+	/** number of bytes copied in each slot */
+	private final int[] lengths;
+
+	private final int[] linkTypes;
+
+	private final long[] timestamps;
+
+	private final int[] status;
+
+	/** cursor decoding each slot */
+	private final RadioTapCursor[] cursors;
+
+	/**
+	 * next sequence to be written by reader / read by sink / decoded by each
+	 * decoder, every PADDING longs
+	 */
+	private final AtomicLongArray sequences;
+
+	private Thread[] threads = null;
+
+	private volatile boolean running = false;
+
+	/** number of packets published once reader has stopped */
+	private volatile long endSequence = Long.MAX_VALUE;
+
+	/** first error of any stage, which stops all stages */
+	private volatile Throwable error = null;
+
+	/**
+	 * Build a pipeline with default capacity, slot size and parking stages
+	 * 
+	 * @param reader
+	 *            reader packets are pulled from
+	 * @param sink
+	 *            sink receiving decoded frames
+	 * @param decoderCount
+	 *            number of decoder threads
+	 */
+	public RadioTapPipeline(IPacketReader reader, IFrameSink sink, int decoderCount) {
+		this(reader, sink, decoderCount, DEFAULT_CAPACITY, DEFAULT_SLOT_SIZE, WaitStrategies.PARK);
+	}
+
+	/**
+	 * Build a pipeline
+	 * 
+	 * @param reader
+	 *            reader packets are pulled from
+	 * @param sink
+	 *            sink receiving decoded frames
+	 * @param decoderCount
+	 *            number of decoder threads
+	 * @param capacity
+	 *            number of slots of ring buffer (power of 2)
+	 * @param slotSize
+	 *            maximum number of bytes kept per packet
+	 * @param waitStrategy
+	 *            how stages wait for ring buffer
+	 */
+	public RadioTapPipeline(IPacketReader reader, IFrameSink sink, int decoderCount, int capacity, int slotSize,
+			IWaitStrategy waitStrategy) {
+		if (decoderCount <= 0) {
+			throw new IllegalArgumentException("decoder count must be positive");
+		}
+		if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+			throw new IllegalArgumentException("capacity must be a power of 2");
+		}
+		if (slotSize <= 0 || (long) slotSize * capacity > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("invalid slot size");
+		}
+		this.reader = reader;
+		this.sink = sink;
+		this.waitStrategy = waitStrategy;
+		this.decoderCount = decoderCount;
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		this.slotSize = slotSize;
+
+		data = new byte[capacity * slotSize];
+		lengths = new int[capacity];
+		linkTypes = new int[capacity];
+		timestamps = new long[capacity];
+		status = new int[capacity];
+		cursors = new RadioTapCursor[capacity];
+		RadioTapLayoutCache layoutCache = RadioTapLayoutCache.getDefaultCache();
+		for (int i = 0; i < capacity; i++) {
+			cursors[i] = new RadioTapCursor(layoutCache);
+		}
+
+		sequences = new AtomicLongArray((DECODED + decoderCount + 1) * PADDING);
+		for (int i = 0; i < decoderCount; i++) {
+			sequences.set((DECODED + i) * PADDING, i);
+		}
+	}
+
+	/**
+	 * Start reader, decoder and sink threads
+	 */
+	public synchronized void start() {
+		if (threads != null) {
+			throw new IllegalStateException("pipeline already started");
+		}
+		running = true;
+		threads = new Thread[decoderCount + 2];
+		threads[0] = new Thread(new ReaderStage(), "radiotap-reader");
+		for (int i = 0; i < decoderCount; i++) {
+			threads[i + 1] = new Thread(new DecoderStage(i), "radiotap-decoder-" + i);
+		}
+		threads[decoderCount + 1] = new Thread(new SinkStage(), "radiotap-sink");
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+	}
+
+	/**
+	 * Stop reading packets : packets already read are still decoded and handed
+	 * to sink
+	 */
+	public void stop() {
+		running = false;
+	}
+
+	/**
+	 * Wait until all stages have ended
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void join() throws InterruptedException {
+		Thread[] started;
+		synchronized (this) {
+			started = threads;
+		}
+		if (started == null) {
+			return;
+		}
+		for (int i = 0; i < started.length; i++) {
+			started[i].join();
+		}
+	}
+
+	/**
+	 * Number of packets handed to sink
+	 * 
+	 * @return
+	 */
+	public long getProcessedCount() {
+		return sequences.get(CONSUMED * PADDING);
+	}
+
+	/**
+	 * Number of packets read
+	 * 
+	 * @return
+	 */
+	public long getReadCount() {
+		return sequences.get(PUBLISHED * PADDING);
+	}
+
+	/**
+	 * Error that stopped pipeline (IOException of reader or exception thrown by
+	 * sink)
+	 * 
+	 * @return null if no error occurred
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+	private void fail(Throwable e) {
+		if (error == null) {
+			error = e;
+		}
+		running = false;
+	}
+
+	/**
+	 * Pull packets from reader and copy them into free slots
+	 */
+	private final class ReaderStage implements Runnable, IPacketListener {
+
+		private long sequence = 0;
+
+		/** sequence up to which slots are known to be free */
+		private long wrapLimit = capacity;
+
+		/** buffer whose view is used to copy packets */
+		private ByteBuffer source = null;
+
+		/** view with independent position on source */
+		private ByteBuffer view = null;
+
+		@Override
+		public void run() {
+			try {
+				while (running && error == null && reader.next(this)) {
+				}
+			} catch (IOException e) {
+				fail(e);
+			} catch (RuntimeException e) {
+				fail(e);
+			} finally {
+				endSequence = sequence;
+			}
+		}
+
+		@Override
+		public void onPacket(ByteBuffer buffer, int offset, int length, int linkType, long timestamp) {
+			int attempt = 0;
+			while (sequence >= wrapLimit) {
+				wrapLimit = sequences.get(CONSUMED * PADDING) + capacity;
+				if (sequence < wrapLimit) {
+					break;
+				}
+				if (!running || error != null) {
+					return;
+				}
+				waitStrategy.idle(attempt++);
+			}
+
+			int slot = (int) sequence & mask;
+			int count = Math.min(length, slotSize);
+			if (buffer.hasArray()) {
+				System.arraycopy(buffer.array(), buffer.arrayOffset() + offset, data, slot * slotSize, count);
+			} else {
+				if (buffer != source) {
+					source = buffer;
+					view = buffer.duplicate();
+					view.clear();
+				}
+				view.position(offset);
+				view.get(data, slot * slotSize, count);
+			}
+			lengths[slot] = count;
+			linkTypes[slot] = linkType;
+			timestamps[slot] = timestamp;
+
+			sequence++;
+			sequences.lazySet(PUBLISHED * PADDING, sequence);
+		}
+	}
+
+	/**
+	 * Decode every decoderCount-th slot in place
+	 */
+	private final class DecoderStage implements Runnable {
+
+		private final int index;
+
+		private DecoderStage(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public void run() {
+			long sequence = index;
+			long available = 0;
+			while (true) {
+				int attempt = 0;
+				while (sequence >= available) {
+					available = sequences.get(PUBLISHED * PADDING);
+					if (sequence < available) {
+						break;
+					}
+					if (sequence >= endSequence || error != null) {
+						return;
+					}
+					waitStrategy.idle(attempt++);
+				}
+				// decode all published slots of this decoder before signaling
+				while (sequence < available) {
+					int slot = (int) sequence & mask;
+					if (linkTypes[slot] == IPacketReader.LINKTYPE_IEEE802_11_RADIOTAP) {
+						status[slot] = cursors[slot].decode(data, slot * slotSize, lengths[slot]);
+					} else {
+						status[slot] = RadioTapStatus.SUCCESS_STATUS;
+					}
+					sequence += decoderCount;
+				}
+				sequences.lazySet((DECODED + index) * PADDING, sequence);
+			}
+		}
+	}
+
+	/**
+	 * Hand decoded slots to sink in sequence order and free them
+	 */
+	private final class SinkStage implements Runnable {
+
+		@Override
+		public void run() {
+			long sequence = 0;
+			try {
+				while (true) {
+					int decoded = (DECODED + (int) (sequence % decoderCount)) * PADDING;
+					int attempt = 0;
+					while (sequences.get(decoded) <= sequence) {
+						if (sequence >= endSequence || error != null) {
+							return;
+						}
+						waitStrategy.idle(attempt++);
+					}
+					int slot = (int) sequence & mask;
+					boolean radiotap = linkTypes[slot] == IPacketReader.LINKTYPE_IEEE802_11_RADIOTAP;
+					sink.onFrame(sequence, radiotap ? cursors[slot] : null, status[slot], linkTypes[slot],
+							timestamps[slot]);
+					sequence++;
+					sequences.lazySet(CONSUMED * PADDING, sequence);
+				}
+			} catch (RuntimeException e) {
+				fail(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package fr.bmartel.radiotapdecoder.pipeline;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Wait strategies of pipeline stages, from lowest latency / highest CPU usage
+ * to highest latency / lowest CPU usage
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class WaitStrategies {
+
+	/** number of vain checks before yielding */
+	private final static int SPIN_COUNT = 100;
+
+	/** number of vain checks before parking */
+	private final static int YIELD_COUNT = 200;
+
+	/** park duration once stage is idle */
+	private final static long PARK_NANOS = 50000;
+
+	/**
+	 * Check ring buffer continuously : a core is dedicated to each stage
+	 */
+	public final static IWaitStrategy BUSY_SPIN = new IWaitStrategy() {
+
+		@Override
+		public void idle(int attempt) {
+		}
+	};
+
+	/**
+	 * Spin a while then yield processor to other threads between checks
+	 */
+	public final static IWaitStrategy YIELD = new IWaitStrategy() {
+
+		@Override
+		public void idle(int attempt) {
+			if (attempt >= SPIN_COUNT) {
+				Thread.yield();
+			}
+		}
+	};
+
+	/**
+	 * Spin, yield then park for a short time between checks : idle stages
+	 * barely use any CPU
+	 */
+	public final static IWaitStrategy PARK = new IWaitStrategy() {
+
+		@Override
+		public void idle(int attempt) {
+			if (attempt >= YIELD_COUNT) {
+				LockSupport.parkNanos(PARK_NANOS);
+			} else if (attempt >= SPIN_COUNT) {
+				Thread.yield();
+			}
+		}
+	};
+
+	private WaitStrategies() {
+	}
+}
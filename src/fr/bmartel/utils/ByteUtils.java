@@ -28,10 +28,10 @@ public class ByteUtils {
 	 * @param array
 	 * @return
 	 */
-	public static Long convertByteArrayToLong(byte[] array) {
-		Long ret = 0l;
+	public static long convertByteArrayToLong(byte[] array) {
+		long ret = 0;
 		for (int i = 0; i < array.length; i++) {
-			ret += ((long) (array[i] & 0x0000000000FF)) << ((array.length - 1 - i) * 8);
+			ret |= ((long) (array[i] & 0xFF)) << ((array.length - 1 - i) * 8);
 		}
 		return ret;
 	}
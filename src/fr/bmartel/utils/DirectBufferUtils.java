@@ -0,0 +1,67 @@
+package fr.bmartel.utils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Release native memory of direct buffers before they are garbage
+ * collected.<br/>
+ *
+ * No public API does this : JDK internal cleaner is invoked by reflection
+ * when reachable, otherwise memory is released when buffer is collected.
+ *
+ * @author Bertrand Martel
+ */
+public class DirectBufferUtils {
+
+	/** Unsafe.invokeCleaner(ByteBuffer) on Java 9+ */
+	private static Method invokeCleaner = null;
+
+	private static Object unsafe = null;
+
+	static {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (Exception e) {
+			invokeCleaner = null;
+		}
+	}
+
+	/**
+	 * Release native memory of a direct buffer : buffer must not be accessed
+	 * anymore
+	 *
+	 * @param buffer
+	 * @return true if memory has been released now, false if it will be
+	 *         released by garbage collector
+	 */
+	public static boolean free(ByteBuffer buffer) {
+		if (buffer == null || !buffer.isDirect()) {
+			return false;
+		}
+		try {
+			if (invokeCleaner != null) {
+				invokeCleaner.invoke(unsafe, buffer);
+				return true;
+			}
+			// Java 7/8 : DirectByteBuffer.cleaner().clean()
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner == null) {
+				return false;
+			}
+			Method cleanMethod = cleaner.getClass().getMethod("clean");
+			cleanMethod.setAccessible(true);
+			cleanMethod.invoke(cleaner);
+			return true;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package fr.bmartel.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Read little endian unsigned values in place from a byte array or a byte
+ * buffer without any allocation.<br/>
+ * 
+ * Byte buffer position and byte order are left untouched : all reads use
+ * absolute positions.
+ * 
+ * @author Bertrand Martel
+ */
+public class LittleEndianReader {
+
+	/**
+	 * Read unsigned 8 bit value
+	 * 
+	 * @param array
+	 * @param offset
+	 * @return value in [0, 255]
+	 */
+	public static int readUInt8(byte[] array, int offset) {
+		return array[offset] & 0xFF;
+	}
+
+	/**
+	 * Read unsigned 16 bit little endian value
+	 * 
+	 * @param array
+	 * @param offset
+	 * @return value in [0, 65535]
+	 */
+	public static int readUInt16(byte[] array, int offset) {
+		return (array[offset] & 0xFF) | (array[offset + 1] & 0xFF) << 8;
+	}
+
+	/**
+	 * Read 32 bit little endian value as raw int bits (bitmasks)
+	 * 
+	 * @param array
+	 * @param offset
+	 * @return
+	 */
+	public static int readInt32(byte[] array, int offset) {
+		return (array[offset] & 0xFF) | (array[offset + 1] & 0xFF) << 8
+				| (array[offset + 2] & 0xFF) << 16 | (array[offset + 3] & 0xFF) << 24;
+	}
+
+	/**
+	 * Read unsigned 32 bit little endian value
+	 * 
+	 * @param array
+	 * @param offset
+	 * @return value in [0, 2^32 - 1]
+	 */
+	public static long readUInt32(byte[] array, int offset) {
+		return readInt32(array, offset) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Read unsigned 64 bit little endian value (values above 2^63 - 1 are
+	 * negative, use Long unsigned helpers to display them)
+	 * 
+	 * @param array
+	 * @param offset
+	 * @return
+	 */
+	public static long readUInt64(byte[] array, int offset) {
+		return readUInt32(array, offset) | (long) readInt32(array, offset + 4) << 32;
+	}
+
+	/**
+	 * Read unsigned 8 bit value
+	 * 
+	 * @param buffer
+	 * @param offset
+	 *            absolute position
+	 * @return value in [0, 255]
+	 */
+	public static int readUInt8(ByteBuffer buffer, int offset) {
+		return buffer.get(offset) & 0xFF;
+	}
+
+	/**
+	 * Read unsigned 16 bit little endian value
+	 * 
+	 * @param buffer
+	 * @param offset
+	 *            absolute position
+	 * @return value in [0, 65535]
+	 */
+	public static int readUInt16(ByteBuffer buffer, int offset) {
+		return (buffer.get(offset) & 0xFF) | (buffer.get(offset + 1) & 0xFF) << 8;
+	}
+
+	/**
+	 * Read 32 bit little endian value as raw int bits (bitmasks)
+	 * 
+	 * @param buffer
+	 * @param offset
+	 *            absolute position
+	 * @return
+	 */
+	public static int readInt32(ByteBuffer buffer, int offset) {
+		return (buffer.get(offset) & 0xFF) | (buffer.get(offset + 1) & 0xFF) << 8
+				| (buffer.get(offset + 2) & 0xFF) << 16 | (buffer.get(offset + 3) & 0xFF) << 24;
+	}
+
+	/**
+	 * Read unsigned 32 bit little endian value
+	 * 
+	 * @param buffer
+	 * @param offset
+	 *            absolute position
+	 * @return value in [0, 2^32 - 1]
+	 */
+	public static long readUInt32(ByteBuffer buffer, int offset) {
+		return readInt32(buffer, offset) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Read unsigned 64 bit little endian value (values above 2^63 - 1 are
+	 * negative, use Long unsigned helpers to display them)
+	 * 
+	 * @param buffer
+	 * @param offset
+	 *            absolute position
+	 * @return
+	 */
+	public static long readUInt64(ByteBuffer buffer, int offset) {
+		return readUInt32(buffer, offset) | (long) readInt32(buffer, offset + 4) << 32;
+	}
+}
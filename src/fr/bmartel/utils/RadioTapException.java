@@ -15,6 +15,11 @@ public class RadioTapException extends Exception{
 		super(message);
 	}
 	
+	public RadioTapException(String message, Throwable cause)
+	{
+		super(message, cause);
+	}
+	
 	public RadioTapException()
 	{
 		super();
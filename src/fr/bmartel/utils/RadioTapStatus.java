@@ -0,0 +1,63 @@
+package fr.bmartel.utils;
+
+/**
+ * Status returned by exception free radiotap decoding
+ * 
+ * @author Bertrand Martel
+ *
+ */
+public class RadioTapStatus {
+
+	/** frame has been decoded */
+	public final static int SUCCESS_STATUS = 0;
+
+	/** fewer bytes than the radiotap header fixed part or than it_len */
+	public final static int TRUNCATED_HEADER_STATUS = -1;
+
+	/** it_version is not 0 */
+	public final static int BAD_VERSION_STATUS = -2;
+
+	/** it_len is inconsistent with it_present chain and present fields */
+	public final static int BAD_LENGTH_STATUS = -3;
+
+	/**
+	 * a present bit has an unknown layout and following fields can't be
+	 * located : fields preceding this bit are still decoded
+	 */
+	public final static int UNKNOWN_FIELD_STATUS = -4;
+
+	/** number of distinct status, usable to size counter arrays indexed by -status */
+	public final static int STATUS_COUNT = 5;
+
+	/**
+	 * Check if fields of a frame can be retrieved
+	 * 
+	 * @param status
+	 * @return true if frame has been decoded, maybe partially
+	 */
+	public static boolean isDecoded(int status) {
+		return status == SUCCESS_STATUS || status == UNKNOWN_FIELD_STATUS;
+	}
+
+	/**
+	 * Describe a decoding status
+	 * 
+	 * @param status
+	 * @return reason of failure
+	 */
+	public static String getReason(int status) {
+		switch (status) {
+		case SUCCESS_STATUS:
+			return "success";
+		case TRUNCATED_HEADER_STATUS:
+			return "truncated header";
+		case BAD_VERSION_STATUS:
+			return "bad version";
+		case BAD_LENGTH_STATUS:
+			return "bad length";
+		case UNKNOWN_FIELD_STATUS:
+			return "unknown field";
+		}
+		return "unknown status";
+	}
+}